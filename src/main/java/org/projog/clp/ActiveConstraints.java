@@ -0,0 +1,106 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+/**
+ * The IDs of the constraints of a {@link ClpConstraintStore} that have not yet been proven to always be satisfied.
+ * <p>
+ * Represented as a sparse set - the first {@link #size} elements of {@code dense} are the active IDs and, indexed by
+ * ID, {@code sparse} contains the position of each ID in {@code dense}. An ID is deactivated by swapping it with the
+ * last active ID and decrementing {@link #size}, so both deactivating an ID and checking if an ID is active are O(1).
+ * </p>
+ * <p>
+ * Copies share the same arrays, so creating a copy is also O(1). As deactivating only reorders the elements before
+ * {@code size}, it does not alter the active IDs of another set sharing the arrays as long as that set's size is not
+ * less than the size of the set being altered. The arrays record the lowest size of any set that is sharing them - a
+ * set with that size updates the arrays in place, any other set first creates its own copy of the arrays. With a
+ * depth-first search, where a copy is altered before the store it was copied from is copied again, the arrays are
+ * only copied when a branch that has deactivated IDs is backtracked over.
+ * </p>
+ */
+final class ActiveConstraints {
+   private SharedArrays arrays;
+   private int size;
+
+   ActiveConstraints(int constraintCtr) {
+      this.arrays = new SharedArrays(constraintCtr);
+      this.size = constraintCtr;
+   }
+
+   private ActiveConstraints(ActiveConstraints original) {
+      this.arrays = original.arrays;
+      this.size = original.size;
+   }
+
+   ActiveConstraints copy() {
+      return new ActiveConstraints(this);
+   }
+
+   boolean isActive(int constraintId) {
+      return arrays.sparse[constraintId] < size;
+   }
+
+   /** Deactivates the given constraint. Has no effect if the constraint is already inactive. */
+   void deactivate(int constraintId) {
+      if (!isActive(constraintId)) {
+         return;
+      }
+      if (arrays.lowestSize != size) {
+         // another set sharing the arrays has fewer active IDs, so swapping could alter its active IDs
+         arrays = arrays.copy(size);
+      }
+      int[] dense = arrays.dense;
+      int[] sparse = arrays.sparse;
+      int position = sparse[constraintId];
+      int last = dense[--size];
+      dense[position] = last;
+      sparse[last] = position;
+      dense[size] = constraintId;
+      sparse[constraintId] = size;
+      arrays.lowestSize = size;
+   }
+
+   /** Returns the number of active constraints. */
+   int size() {
+      return size;
+   }
+
+   private static final class SharedArrays {
+      private final int[] dense;
+      private final int[] sparse;
+      private int lowestSize;
+
+      SharedArrays(int constraintCtr) {
+         this.dense = new int[constraintCtr];
+         this.sparse = new int[constraintCtr];
+         for (int i = 0; i < constraintCtr; i++) {
+            dense[i] = i;
+            sparse[i] = i;
+         }
+         this.lowestSize = constraintCtr;
+      }
+
+      private SharedArrays(SharedArrays original, int size) {
+         this.dense = original.dense.clone();
+         this.sparse = original.sparse.clone();
+         this.lowestSize = size;
+      }
+
+      SharedArrays copy(int size) {
+         return new SharedArrays(this, size);
+      }
+   }
+}
@@ -20,26 +20,168 @@ package org.projog.clp;
  * <p>
  * Tries all possible values in search of a valid solution. When a solution is found it backtracks to find alternative
  * solutions.
+ * </p>
+ * <p>
+ * By default a copy of the store is kept for every level of the search. A recomputation distance greater than one can
+ * be specified to reduce memory usage for deep searches of large models - copies are then only kept every
+ * <i>distance</i> levels, and the stores of the levels in between are recomputed, when they are backtracked to, by
+ * copying the nearest kept store and replaying the values selected since. With adaptive recomputation the distance is
+ * reduced, down to a minimum of one, as the proportion of selected values that fail increases - as failures cause
+ * backtracking, and so recomputation, more copies are kept when there are many failures.
+ * </p>
+ * <p>
+ * By default the variable with the fewest possible values is selected first. A {@link VariableSelection} can be
+ * specified to instead select variables using {@link SearchStatistics} that are gathered as the search proceeds.
+ * </p>
  */
 public final class BruteForceSearch {
+   /** How much weight each new outcome has when updating {@link #failureRate}. */
+   private static final double FAILURE_RATE_WEIGHT = 0.1;
+
    private final ClpConstraintStore original;
    private final ClpConstraintStore[] copies;
+   /** Indexed by level, {@code true} if the copy at that level should be kept when the search goes deeper. */
+   private final boolean[] kept;
+   /** Indexed by level, the value most recently selected at that level. */
+   private final long[] values;
    private final Possibilities[] p;
    private final int[] indexes;
+   /** Indexed by variable, the position of the variable in {@link #indexes}. */
+   private final int[] positions;
+   /** Indexed by variable, {@code true} if the variable is searched - or {@code null} if every variable is searched. */
+   private final boolean[] candidates;
+   private final int maxRecomputationDistance;
+   private final boolean adaptive;
+   private final VariableSelection selection;
+   /** Updated as the search proceeds, or {@code null} if not used. */
+   private final SearchStatistics statistics;
+   /**
+    * Indexed by level, the logarithm of the size of the search space before a value was selected at that level. Only
+    * used when selecting by {@link VariableSelection#IMPACT}.
+    */
+   private final double[] searchSpaces;
+   private int recomputationDistance;
+   /** The number of selected values that have failed. */
+   private long failures;
+   /** The number of failures after which the search stops looking for solutions. */
+   private long failureLimit = Long.MAX_VALUE;
+   /** A moving average of the proportion of selected values that failed. */
+   private double failureRate;
    private int idx = 0;
 
    public BruteForceSearch(ClpConstraintStore environment) {
-      this.original = environment;
-      int variablesCount = environment.getVariablesCount();
+      this(environment, 1, false);
+   }
+
+   /**
+    * @param maxRecomputationDistance the maximum number of levels between the copies of the store that are kept
+    * @param adaptive {@code true} if the recomputation distance should be reduced as the failure rate increases
+    */
+   public BruteForceSearch(ClpConstraintStore environment, int maxRecomputationDistance, boolean adaptive) {
+      this(environment, allVariables(environment), maxRecomputationDistance, adaptive, VariableSelection.SMALLEST_DOMAIN, null);
+   }
+
+   /** Creates a search that selects variables using new statistics. */
+   public BruteForceSearch(ClpConstraintStore environment, VariableSelection selection) {
+      this(environment, selection, new SearchStatistics(environment.getModel()));
+   }
+
+   /**
+    * Creates a search that selects variables using, and updates, the given statistics.
+    * <p>
+    * To restart a search, while keeping what it has learnt, create a new search using the statistics of the old one.
+    *
+    * @throws IllegalArgumentException if the statistics were created for a different model than the store's
+    */
+   public BruteForceSearch(ClpConstraintStore environment, VariableSelection selection, SearchStatistics statistics) {
+      this(environment, allVariables(environment), 1, false, selection, statistics);
+   }
+
+   /**
+    * Creates a search that only selects values for the variables with the given indexes.
+    *
+    * @see ComponentSearch
+    */
+   BruteForceSearch(ClpConstraintStore environment, int[] variableIndexes) {
+      this(environment, variableIndexes, 1, false, VariableSelection.SMALLEST_DOMAIN, null);
+   }
+
+   private BruteForceSearch(ClpConstraintStore environment, int[] variableIndexes, int maxRecomputationDistance, boolean adaptive, VariableSelection selection,
+            SearchStatistics statistics) {
+      if (maxRecomputationDistance < 1) {
+         throw new IllegalArgumentException("Recomputation distance must be at least 1 but got: " + maxRecomputationDistance);
+      }
+      if (statistics == null && selection != VariableSelection.SMALLEST_DOMAIN) {
+         throw new IllegalArgumentException("Statistics are required to select by " + selection);
+      }
+      if (statistics != null && statistics.getModel() != environment.getModel()) {
+         throw new IllegalArgumentException("Statistics were created for a different model");
+      }
+      this.original = statistics == null ? environment : environment.copy(statistics);
+      int variablesCount = variableIndexes.length;
       if (variablesCount == 0) {
          throw new IllegalStateException();
       }
       this.copies = new ClpConstraintStore[variablesCount];
+      this.kept = new boolean[variablesCount];
+      this.values = new long[variablesCount];
       this.p = new Possibilities[variablesCount];
-      this.indexes = new int[variablesCount];
+      this.indexes = variableIndexes.clone();
+      this.positions = new int[environment.getVariablesCount()];
       for (int i = 0; i < variablesCount; i++) {
+         positions[indexes[i]] = i;
+      }
+      if (variablesCount == positions.length) {
+         this.candidates = null;
+      } else {
+         this.candidates = new boolean[positions.length];
+         for (int i : indexes) {
+            candidates[i] = true;
+         }
+      }
+      this.maxRecomputationDistance = maxRecomputationDistance;
+      this.recomputationDistance = maxRecomputationDistance;
+      this.adaptive = adaptive;
+      this.selection = selection;
+      this.statistics = statistics;
+      this.searchSpaces = selection == VariableSelection.IMPACT ? new double[variablesCount] : null;
+   }
+
+   /** Returns the statistics updated by this search, or {@code null} if it does not gather statistics. */
+   public SearchStatistics getStatistics() {
+      return statistics;
+   }
+
+   /**
+    * Sets the number of selected values that can fail before {@link #next()} stops searching and returns {@code null}.
+    * <p>
+    * Once the limit has been reached, subsequent calls to {@code next()} also return {@code null}.
+    *
+    * @see #isFailureLimitReached()
+    */
+   public void setFailureLimit(long failureLimit) {
+      if (failureLimit < 0) {
+         throw new IllegalArgumentException("Failure limit must not be negative but got: " + failureLimit);
+      }
+      this.failureLimit = failureLimit;
+   }
+
+   /** Returns the number of selected values that have failed. */
+   public long getFailures() {
+      return failures;
+   }
+
+   /** Returns {@code true} if the search was stopped, before every solution was found, by the failure limit. */
+   public boolean isFailureLimitReached() {
+      return failures >= failureLimit && idx != -1;
+   }
+
+   private static int[] allVariables(ClpConstraintStore environment) {
+      int[] indexes = new int[environment.getVariablesCount()];
+      for (int i = 0; i < indexes.length; i++) {
          indexes[i] = i;
       }
+      return indexes;
    }
 
    /**
@@ -52,22 +194,80 @@ public final class BruteForceSearch {
     */
    public ClpConstraintStore next() {
       Possibilities current;
-      while ((current = getCurrent()) != null) {
+      while (failures < failureLimit && (current = getCurrent()) != null) {
          long next = current.next();
-         copies[idx] = (idx == 0 ? original : copies[idx - 1]).copy();
+         values[idx] = next;
+         copies[idx] = getParent().copy();
+         if (statistics != null) {
+            statistics.decayActivities();
+         }
          if (copies[idx].getVariable(indexes[idx]).setValue(copies[idx], next) == ExpressionResult.INVALID) {
-            // do nothing
+            recordOutcome(true);
          } else if (!copies[idx].resolve()) {
-            // do nothing
+            recordOutcome(true);
          } else if (idx == p.length - 1) {
+            recordOutcome(false);
             return copies[idx];
          } else {
+            recordOutcome(false);
+            kept[idx] = idx - getKeptLevel(idx - 1) >= recomputationDistance;
+            // the store of the previous level is no longer needed until the search backtracks to it
+            if (idx > 0 && !kept[idx - 1]) {
+               copies[idx - 1] = null;
+            }
             idx++;
          }
       }
       return null;
    }
 
+   private void recordOutcome(boolean failed) {
+      if (failed) {
+         failures++;
+      }
+      if (searchSpaces != null) {
+         // the impact of an assignment is the proportion of the search space it removed - all of it, if it failed
+         double impact = failed ? 1 : 1 - Math.exp(SearchStatistics.getSearchSpace(copies[idx], indexes) - searchSpaces[idx]);
+         statistics.recordImpact(original.getVariable(indexes[idx]), impact);
+      }
+      if (adaptive) {
+         failureRate = failureRate * (1 - FAILURE_RATE_WEIGHT) + (failed ? FAILURE_RATE_WEIGHT : 0);
+         recomputationDistance = Math.max(1, (int) Math.round(maxRecomputationDistance * (1 - failureRate)));
+      }
+   }
+
+   /** Returns the deepest level, at or above the given level, whose copy is kept, or -1 if none. */
+   private int getKeptLevel(int level) {
+      while (level >= 0 && !kept[level]) {
+         level--;
+      }
+      return level;
+   }
+
+   /** Returns the store to copy when selecting a value for the current level, recomputing it if necessary. */
+   private ClpConstraintStore getParent() {
+      if (idx == 0) {
+         return original;
+      } else if (copies[idx - 1] != null) {
+         return copies[idx - 1];
+      }
+
+      int level = idx - 1;
+      while (level >= 0 && copies[level] == null) {
+         level--;
+      }
+      ClpConstraintStore store = level == -1 ? original : copies[level];
+      while (++level < idx) {
+         store = store.copy();
+         // replaying a value that previously succeeded will succeed again, as propagation is deterministic
+         if (store.getVariable(indexes[level]).setValue(store, values[level]) == ExpressionResult.INVALID || !store.resolve()) {
+            throw new IllegalStateException("Failed to recompute level " + level);
+         }
+      }
+      copies[idx - 1] = store;
+      return store;
+   }
+
    private Possibilities getCurrent() {
       if (idx == -1) {
          return null;
@@ -75,20 +275,20 @@ public final class BruteForceSearch {
 
       Possibilities result = p[idx];
       if (result == null) {
-         ClpConstraintStore copy = (idx == 0 ? original : copies[idx - 1]).copy();
+         ClpConstraintStore copy = getParent().copy();
          copies[idx] = copy;
 
-         // sort in ascending order of least possibilities
-         long min = copy.getVariableState(indexes[idx]).count();
-         int minIdx = idx;
-         for (int i = idx + 1; i < indexes.length; i++) {
-            long count = copy.getVariableState(indexes[i]).count();
-            if (count < min) {
-               min = count;
-               minIdx = i;
-            }
+         // select the variable with the least possibilities - variables that have already been selected have a single
+         // possible value, so if every remaining variable has a single possible value then any of them can be selected
+         int minIdx;
+         if (selection == VariableSelection.SMALLEST_DOMAIN) {
+            int selected = copy.getSmallestDomain(candidates);
+            minIdx = selected == -1 ? idx : positions[selected];
+         } else {
+            int selected = statistics.select(selection, copy, indexes, idx);
+            minIdx = selected == -1 ? idx : selected;
          }
-         if (min > Integer.MAX_VALUE) {
+         if (copy.getVariableState(indexes[minIdx]).count() > Integer.MAX_VALUE) {
             // exit to avoid thread spending long time in search
             // TODO what max value to use? TODO throw projog-clp specific subclass of IllegalStateException
             throw new IllegalStateException("Variables not sufficiently bound. Too many possibilities.");
@@ -97,8 +297,13 @@ public final class BruteForceSearch {
             int tmp = indexes[idx];
             indexes[idx] = indexes[minIdx];
             indexes[minIdx] = tmp;
+            positions[indexes[idx]] = idx;
+            positions[indexes[minIdx]] = minIdx;
          }
 
+         if (searchSpaces != null) {
+            searchSpaces[idx] = SearchStatistics.getSearchSpace(copy, indexes);
+         }
          result = copy.getVariableState(indexes[idx]).getPossibilities();
          p[idx] = result;
       }
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Wraps a composite {@code Expression} so its minimum and maximum values are only calculated once for each state of
+ * the variables of a {@link ClpConstraintStore}.
+ * <p>
+ * Each instance is allocated a slot in the bounds cache of the store. When the possible values of a variable are
+ * altered the store only clears the slots of the expressions that refer to that variable, so the cached bounds of an
+ * expression are reused until one of its own variables changes - across the enforcement of many constraints, rather
+ * than only until the next change to any variable. The bounds of a sub-expression that are requested several times
+ * while a constraint is enforced (e.g. by {@code Multiply.setMin}, which calls {@code getMax} and then requests the
+ * bounds of its arguments again) are also only calculated once. The cached bounds are also used to avoid visiting the sub-expression when
+ * {@link #setMin(ConstraintStore, long)} or {@link #setMax(ConstraintStore, long)} would not restrict it.
+ * </p>
+ * <p>
+ * Created by {@link ClpConstraintStore.Builder} when {@link ClpConstraintStore.Builder#setCacheBounds(boolean)} is
+ * enabled. When used with any other {@code ReadConstraintStore} the bounds are calculated every time.
+ * </p>
+ */
+public final class CachedExpression implements Expression {
+   private final int slot;
+   private final Expression e;
+
+   CachedExpression(int slot, Expression e) {
+      this.slot = slot;
+      this.e = e;
+   }
+
+   public Expression getExpression() {
+      return e;
+   }
+
+   int getSlot() {
+      return slot;
+   }
+
+   @Override
+   public long getMin(ReadConstraintStore s) {
+      if (s instanceof ClpConstraintStore) {
+         ClpConstraintStore c = (ClpConstraintStore) s;
+         int idx = fill(c);
+         return c.getBoundsCache()[idx + 1];
+      } else {
+         return e.getMin(s);
+      }
+   }
+
+   @Override
+   public long getMax(ReadConstraintStore s) {
+      if (s instanceof ClpConstraintStore) {
+         ClpConstraintStore c = (ClpConstraintStore) s;
+         int idx = fill(c);
+         return c.getBoundsCache()[idx + 2];
+      } else {
+         return e.getMax(s);
+      }
+   }
+
+   @Override
+   public boolean contains(ReadConstraintStore s, long value) {
+      return e.contains(s, value);
+   }
+
+   @Override
+   public ExpressionResult setNot(ConstraintStore s, long not) {
+      return e.setNot(s, not);
+   }
+
+   @Override
+   public ExpressionResult setMin(ConstraintStore s, long min) {
+      if (s instanceof ClpConstraintStore) {
+         ClpConstraintStore c = (ClpConstraintStore) s;
+         int idx = fill(c);
+         long[] cache = c.getBoundsCache();
+         if (min <= cache[idx + 1]) {
+            return ExpressionResult.VALID;
+         } else if (min > cache[idx + 2]) {
+            return ExpressionResult.INVALID;
+         }
+      }
+      return e.setMin(s, min);
+   }
+
+   @Override
+   public ExpressionResult setMax(ConstraintStore s, long max) {
+      if (s instanceof ClpConstraintStore) {
+         ClpConstraintStore c = (ClpConstraintStore) s;
+         int idx = fill(c);
+         long[] cache = c.getBoundsCache();
+         if (max >= cache[idx + 2]) {
+            return ExpressionResult.VALID;
+         } else if (max < cache[idx + 1]) {
+            return ExpressionResult.INVALID;
+         }
+      }
+      return e.setMax(s, max);
+   }
+
+   /**
+    * Ensures the bounds cache of the given store contains the current bounds of this expression.
+    *
+    * @return the index in the bounds cache of the flag recording whether the bounds of this expression are current -
+    * the minimum and maximum values are stored at the two following indexes
+    */
+   private int fill(ClpConstraintStore s) {
+      long[] cache = s.getBoundsCache();
+      int idx = slot * 3;
+      if (cache[idx] == ClpConstraintStore.BOUNDS_NOT_CACHED) {
+         // calculating the bounds does not clear the slot, as the possible values of variables are not altered
+         cache[idx + 1] = e.getMin(s);
+         cache[idx + 2] = e.getMax(s);
+         cache[idx] = ClpConstraintStore.BOUNDS_CACHED;
+      }
+      return idx;
+   }
+
+   @Override
+   public void walk(Consumer<Expression> r) {
+      r.accept(this);
+      e.walk(r);
+   }
+
+   @Override
+   public CachedExpression replace(Function<LeafExpression, LeafExpression> r) {
+      return new CachedExpression(slot, e.replace(r));
+   }
+
+   @Override
+   public Expression rewrite(Function<Expression, Expression> f) {
+      Expression r = e.rewrite(f);
+      Expression rewritten = r == e ? this : new CachedExpression(slot, r);
+      Expression result = f.apply(rewritten);
+      return result == null ? rewritten : result;
+   }
+
+   @Override
+   public String toString() {
+      return "CachedExpression [slot=" + slot + ", e=" + e + "]";
+   }
+}
@@ -16,12 +16,14 @@
 package org.projog.clp;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.LinkedList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Queue;
+import java.util.Objects;
 import java.util.Set;
 
 import org.projog.clp.bool.Equivalent;
@@ -30,59 +32,217 @@ import org.projog.clp.compare.EqualTo;
 import org.projog.clp.compare.LessThan;
 import org.projog.clp.compare.LessThanOrEqualTo;
 import org.projog.clp.compare.NotEqualTo;
+import org.projog.clp.math.LinearExpression;
+import org.projog.clp.math.MathUtils;
+import org.projog.clp.math.VariableView;
 
 /** A collection of constraints and variables that represent a problem domain. */
 public final class ClpConstraintStore implements ConstraintStore {
-   // variables
+   /**
+    * The maximum difference between the minimum and maximum of a variable for every value to be tried by
+    * {@link #enforceSingletonConsistency(boolean)}.
+    */
+   static final int MAX_SINGLETON_VALUES = 1024;
+   /** Stored in the bounds cache when the bounds of a {@link CachedExpression} need to be calculated. */
+   static final long BOUNDS_NOT_CACHED = 0;
+   /** Stored in the bounds cache when the cached bounds of a {@link CachedExpression} are current. */
+   static final long BOUNDS_CACHED = 1;
+   private final Model model;
+   // variables - shared with the model
    private final int variableCtr;
+   /** The number of variables, at the end of {@link #variables}, that were created to represent common sub-expressions. */
+   private final int auxiliaryVariableCtr;
    private final Variable[] variables;
+   /**
+    * Indexed by variable ID, the index in {@link #variableStates} of the state used by each variable.
+    * <p>
+    * Variables that have been declared equal to each other share the same state.
+    */
+   private final int[] aliases;
+   /** The state of each variable. Only populated at the indexes referred to by {@link #aliases}. */
    private final VariableState[] variableStates;
-   // constraints
+   /** The searchable variables grouped by number of possible values. Created when first used, then shared by copies. */
+   private DomainSizeIndex domainSizes;
+   /** The version of {@link #domainSizes} that reflects the variable states of this store. */
+   private int domainSizesVersion;
+   /**
+    * {@code true} if {@link #domainSizesVersion} may also be used by another store or a checkpoint, so a new version
+    * must be created before {@link #domainSizes} is altered.
+    */
+   private boolean domainSizesShared;
+   // constraints - the constraints and the index of them by variable are shared with the model
    private final int constraintCtr;
    private final Constraint[] constraints;
-   private final Map<Variable, List<Integer>> constraintsByVariable;
-   private final Queue<Integer> constraintQueue;
+   /** The constraints that have not been proven to always be satisfied, and so still need to be enforced. */
+   private ActiveConstraints active;
+   /** The constraints to enforce again when a variable raises an event, indexed by event and then variable. */
+   private final Map<VariableEvent, Map<Variable, List<Integer>>> constraintsByVariable;
+   private final ConstraintQueue constraintQueue;
+   /** The constraints added by {@link #post(Constraint)}, or {@code null} if none have been added. */
+   private PostedConstraints posted;
+   /** {@code true} if {@link #posted} may also be used by another store, so must be copied before being altered. */
+   private boolean postedShared;
+   /** The posted constraints waiting to be enforced, in the order they were scheduled. Created when first used. */
+   private Set<Integer> postedQueue;
+   // checkpoints
+   /** The checkpoint created by the most recent call to {@link #push()} that has not been undone by {@link #pop()}. */
+   private Checkpoint checkpoint;
+   private int checkpointCtr;
+   /** Indexed by variable state, the serial of the checkpoint the state was last recorded in. Created when first used. */
+   private int[] trailedAt;
+   // bounds cache
+   /** The number of {@link CachedExpression}s contained in {@link #constraints}. */
+   private final int cachedExpressionCtr;
+   /**
+    * Whether the bounds are current, followed by the minimum and maximum, of each {@link CachedExpression}. Created
+    * when first used.
+    */
+   private long[] boundsCache;
+   /** Updated with the failures and reductions that occur when constraints are enforced, or {@code null} if not used. */
+   private SearchStatistics statistics;
 
-   private ClpConstraintStore(Builder b) {
-      this.variableCtr = b.variables.size();
-      this.variables = b.variables.toArray(new Variable[variableCtr]);
-      this.variableStates = new VariableState[variableCtr];
+   ClpConstraintStore(Model model) {
+      this(model, new VariableState[model.variableCtr]);
       for (int i = 0; i < variableCtr; i++) {
-         variableStates[i] = new VariableState();
+         if (aliases[i] == i) {
+            variableStates[i] = new VariableState();
+         }
       }
-
-      this.constraintCtr = b.constraints.size();
-      this.constraints = b.constraints.toArray(new Constraint[constraintCtr]);
-      this.constraintsByVariable = b.constraintsByVariable;
-      this.constraintQueue = new LinkedList<>();
       for (int i = 0; i < constraintCtr; i++) {
          constraintQueue.add(i);
       }
    }
 
+   /** Creates a store for the given model that uses the given variable states and has no constraints scheduled. */
+   private ClpConstraintStore(Model model, VariableState[] variableStates) {
+      this.model = model;
+      this.variableCtr = model.variableCtr;
+      this.auxiliaryVariableCtr = model.auxiliaryVariableCtr;
+      this.variables = model.variables;
+      this.aliases = model.aliases;
+      this.variableStates = variableStates;
+
+      this.constraintCtr = model.constraints.length;
+      this.constraints = model.constraints;
+      this.active = new ActiveConstraints(constraintCtr);
+      this.constraintsByVariable = model.constraintsByVariable;
+      this.constraintQueue = model.constraintQueue.emptyCopy();
+      this.cachedExpressionCtr = model.cachedExpressionCtr;
+   }
+
    private ClpConstraintStore(ClpConstraintStore original) {
+      this.model = original.model;
       this.variableCtr = original.variableCtr;
-      this.variables = original.variables; // TODO copy?
+      this.auxiliaryVariableCtr = original.auxiliaryVariableCtr;
+      this.variables = original.variables;
+      this.aliases = original.aliases;
       this.variableStates = new VariableState[variableCtr];
       for (int i = 0; i < variableCtr; i++) {
-         this.variableStates[i] = original.variableStates[i].copy();
+         if (original.variableStates[i] != null) {
+            this.variableStates[i] = original.variableStates[i].copy();
+         }
       }
 
       this.constraintCtr = original.constraintCtr;
-      this.constraints = new Constraint[constraintCtr];
-      for (int i = 0; i < constraintCtr; i++) {
-         this.constraints[i] = original.constraints[i];
+      this.constraints = original.constraints;
+      this.active = original.active.copy();
+      this.constraintsByVariable = original.constraintsByVariable;
+      this.constraintQueue = original.constraintQueue.emptyCopy();
+      this.posted = original.posted;
+      if (posted != null) {
+         this.postedShared = true;
+         original.postedShared = true;
+      }
+      this.domainSizes = original.domainSizes;
+      this.domainSizesVersion = original.domainSizesVersion;
+      if (domainSizes != null) {
+         this.domainSizesShared = true;
+         original.domainSizesShared = true;
       }
-      this.constraintsByVariable = original.constraintsByVariable; // TODO copy?
-      this.constraintQueue = new LinkedList<>();
+      this.cachedExpressionCtr = original.cachedExpressionCtr;
+      this.statistics = original.statistics;
    }
 
    ClpConstraintStore copy() {
       return new ClpConstraintStore(this);
    }
 
+   /** Returns a copy of this store that, along with any copies of it, updates the given statistics. */
+   ClpConstraintStore copy(SearchStatistics statistics) {
+      ClpConstraintStore copy = new ClpConstraintStore(this);
+      copy.statistics = statistics;
+      return copy;
+   }
+
+   /** Returns the model this store was created from. */
+   public Model getModel() {
+      return model;
+   }
+
+   /**
+    * Returns the number of variables created by {@link Builder#createVariable()}.
+    * <p>
+    * Auxiliary variables, created when {@link Builder#setEliminateCommonSubexpressions(boolean)} is enabled, are not
+    * included. Their values are determined by the variables they were created from, so they do not need to be searched.
+    */
    public int getVariablesCount() {
-      return variableCtr;
+      return variableCtr - auxiliaryVariableCtr;
+   }
+
+   /**
+    * Returns the indexes of the variables created by {@link Builder#createVariable()}, grouped so that no active
+    * constraint refers to variables from more than one group.
+    * <p>
+    * The groups are the connected components of the graph where variables are nodes and two variables are connected if
+    * a constraint refers to both of them. Each group is sorted in ascending order, and the groups are in ascending order
+    * of their first index.
+    */
+   List<int[]> getComponents() {
+      int[] parents = new int[variableCtr];
+      for (int i = 0; i < variableCtr; i++) {
+         parents[i] = aliases[i];
+      }
+      for (int i = 0; i < getConstraintCount(); i++) {
+         if (isActive(i)) {
+            int[] first = {-1};
+            getConstraint(i).walk(e -> {
+               if (e instanceof Variable) {
+                  int id = ((Variable) e).getId();
+                  if (first[0] == -1) {
+                     first[0] = id;
+                  } else {
+                     union(parents, first[0], id);
+                  }
+               }
+            });
+         }
+      }
+
+      Map<Integer, List<Integer>> groups = new LinkedHashMap<>();
+      for (int i = 0; i < getVariablesCount(); i++) {
+         groups.computeIfAbsent(find(parents, i), k -> new ArrayList<>()).add(i);
+      }
+      List<int[]> components = new ArrayList<>(groups.size());
+      for (List<Integer> group : groups.values()) {
+         components.add(group.stream().mapToInt(Integer::intValue).toArray());
+      }
+      return components;
+   }
+
+   private static void union(int[] parents, int a, int b) {
+      int rootA = find(parents, a);
+      int rootB = find(parents, b);
+      if (rootA != rootB) {
+         parents[Math.max(rootA, rootB)] = Math.min(rootA, rootB);
+      }
+   }
+
+   private static int find(int[] parents, int id) {
+      while (parents[id] != id) {
+         parents[id] = parents[parents[id]];
+         id = parents[id];
+      }
+      return id;
    }
 
    public Variable getVariable(int idx) {
@@ -90,12 +250,13 @@ public final class ClpConstraintStore implements ConstraintStore {
    }
 
    public VariableState getVariableState(int idx) {
-      return variableStates[idx];
+      return variableStates[aliases[idx]];
    }
 
+   /** Returns the value of the given variable. If the variable is an alias of another then its value is returned. */
    public long getValue(Variable id) {
-      long max = variableStates[id.getId()].getMax();
-      long min = variableStates[id.getId()].getMin();
+      long max = getExpression(id).getMax();
+      long min = getExpression(id).getMin();
       if (min == max) {
          return min;
       } else {
@@ -103,39 +264,371 @@ public final class ClpConstraintStore implements ConstraintStore {
       }
    }
 
-   private ExpressionResult update(Expression e, VariableStateResult r) {
+   /** Returns the array used by {@link CachedExpression}s to store their bounds, three elements per expression. */
+   long[] getBoundsCache() {
+      if (boundsCache == null) {
+         // every element is BOUNDS_NOT_CACHED, so the bounds of every expression will be calculated when first requested
+         boundsCache = new long[cachedExpressionCtr * 3];
+      }
+      return boundsCache;
+   }
+
+   private ExpressionResult update(Expression e, long previousMin, long previousMax, VariableStateResult r) {
       if (r == VariableStateResult.UPDATED) {
-         List<Integer> list = constraintsByVariable.get(e);
-         if (list != null) {
-            for (Integer constraintId : list) {
-               if (constraints[constraintId] != null && !constraintQueue.contains(constraintId)) {
-                  constraintQueue.add(constraintId);
-               }
+         int id = aliases[((Variable) e).getId()];
+         if (boundsCache != null) {
+            for (int slot : model.cachedExpressionsByVariable[id]) {
+               boundsCache[slot * 3] = BOUNDS_NOT_CACHED;
             }
          }
+         VariableState state = variableStates[id];
+         schedule(VariableEvent.DOMAIN, variables[id]);
+         if (state.getMin() != previousMin) {
+            schedule(VariableEvent.MIN, variables[id]);
+         }
+         if (state.getMax() != previousMax) {
+            schedule(VariableEvent.MAX, variables[id]);
+         }
+         if (state.isSingleValue()) {
+            schedule(VariableEvent.FIX, variables[id]);
+         }
+         if (domainSizes != null && id < getVariablesCount()) {
+            getWritableDomainSizes().update(id, state);
+         }
+         if (statistics != null) {
+            statistics.recordReduction(id);
+         }
       }
       return r == VariableStateResult.FAILED ? ExpressionResult.INVALID : ExpressionResult.VALID;
    }
 
+   /** Adds the constraints that have subscribed to the given event of the given variable to the queue. */
+   private void schedule(VariableEvent event, Variable v) {
+      Map<Variable, List<Integer>> index = constraintsByVariable.get(event);
+      List<Integer> list = index == null ? null : index.get(v);
+      if (list != null) {
+         for (Integer constraintId : list) {
+            if (active.isActive(constraintId)) {
+               constraintQueue.add(constraintId);
+            }
+         }
+      }
+      if (posted != null) {
+         for (Integer constraintId : posted.getConstraints(event, v)) {
+            if (posted.isActive(constraintId)) {
+               enqueue(constraintId);
+            }
+         }
+      }
+   }
+
+   /** Adds the given constraint to the queue of constraints waiting to be enforced. */
+   private void enqueue(int constraintId) {
+      if (constraintId < constraintCtr) {
+         constraintQueue.add(constraintId);
+      } else {
+         if (postedQueue == null) {
+            postedQueue = new LinkedHashSet<>();
+         }
+         postedQueue.add(constraintId);
+      }
+   }
+
+   /** Removes and returns the next constraint to enforce, or -1 if there are no constraints waiting to be enforced. */
+   private int poll() {
+      if (!constraintQueue.isEmpty()) {
+         return constraintQueue.poll();
+      } else if (postedQueue != null && !postedQueue.isEmpty()) {
+         Iterator<Integer> itr = postedQueue.iterator();
+         int constraintId = itr.next();
+         itr.remove();
+         return constraintId;
+      } else {
+         return -1;
+      }
+   }
+
    public boolean resolve() {
-      while (!constraintQueue.isEmpty()) {
-         Integer next = constraintQueue.poll();
-         Constraint c = constraints[next];
-         if (c != null) {
-            ConstraintResult result = c.enforce(this);
+      int next;
+      while ((next = poll()) != -1) {
+         if (isActive(next)) {
+            ConstraintResult result = getConstraint(next).enforce(this);
             if (result == ConstraintResult.FAILED) {
+               if (statistics != null) {
+                  statistics.recordFailure(next);
+               }
                return false;
             }
             if (result == ConstraintResult.MATCHED) {
-               constraints[next] = null;
+               deactivate(next);
             }
          }
       }
       return true;
    }
 
+   /** Returns the number of constraints, including those added by {@link #post(Constraint)}. */
+   private int getConstraintCount() {
+      return posted == null ? constraintCtr : constraintCtr + posted.size();
+   }
+
+   private Constraint getConstraint(int constraintId) {
+      return constraintId < constraintCtr ? constraints[constraintId] : posted.get(constraintId);
+   }
+
+   boolean isActive(int constraintId) {
+      return constraintId < constraintCtr ? active.isActive(constraintId) : posted.isActive(constraintId);
+   }
+
+   private void deactivate(int constraintId) {
+      if (constraintId < constraintCtr) {
+         active.deactivate(constraintId);
+      } else if (posted.isActive(constraintId)) {
+         if (checkpoint != null && constraintId < checkpoint.constraintCtr) {
+            // posted before the checkpoint was created, so needs to be reactivated when the checkpoint is popped
+            checkpoint.deactivated.add(constraintId);
+         }
+         getWritablePosted().setActive(constraintId, false);
+      }
+   }
+
+   /** Returns {@link #posted}, first replacing it with a copy if it may also be used by another store. */
+   private PostedConstraints getWritablePosted() {
+      if (posted == null) {
+         posted = new PostedConstraints(constraintCtr);
+      } else if (postedShared) {
+         posted = posted.copy();
+         postedShared = false;
+      }
+      return posted;
+   }
+
+   /**
+    * Adds the given constraint to this store and enforces it.
+    * <p>
+    * Any constraints affected by the restrictions made by enforcing the given constraint, or any other constraints
+    * waiting to be enforced, are also enforced - as if {@link #resolve()} had been called. Unlike the constraints
+    * added to a {@link Builder}, the given constraint is not rewritten.
+    *
+    * @return {@code false} if it has been determined that the constraints of this store can not be satisfied - in which
+    * case the variables of this store may be left in an inconsistent state, so the store should either be discarded or
+    * restored by calling {@link #pop()}
+    */
+   public boolean post(Constraint c) {
+      enqueue(getWritablePosted().add(Objects.requireNonNull(c), variables, aliases));
+      return resolve();
+   }
+
+   /**
+    * Records the current state of this store so it can later be restored by {@link #pop()}.
+    * <p>
+    * Creating a checkpoint does not copy the state of the variables. Instead, the state of each variable is recorded
+    * the first time it is altered after the checkpoint was created - so the cost of {@code push()} and {@code pop()} is
+    * proportional to the number of changes made between them, rather than to the size of the store.
+    */
+   public void push() {
+      if (trailedAt == null) {
+         trailedAt = new int[variableCtr];
+      }
+      checkpoint = new Checkpoint(checkpoint, ++checkpointCtr, active.copy(), getConstraintCount(), domainSizes, domainSizesVersion);
+      domainSizesShared = true;
+   }
+
+   /**
+    * Restores this store to the state it was in when {@link #push()} was last called.
+    * <p>
+    * Restrictions applied to variables, and constraints added by {@link #post(Constraint)}, since the checkpoint was
+    * created are undone. Any constraints that were waiting to be enforced are discarded.
+    *
+    * @throws IllegalStateException if there is no checkpoint to restore
+    */
+   public void pop() {
+      Checkpoint c = checkpoint;
+      if (c == null) {
+         throw new IllegalStateException("No checkpoint to restore");
+      }
+      // restored in reverse order, so if a state was recorded more than once the earliest recording is restored last
+      for (int i = c.stateIds.size() - 1; i >= 0; i--) {
+         int id = c.stateIds.get(i);
+         variableStates[id] = c.states.get(i);
+         trailedAt[id] = c.serials.get(i);
+      }
+      // the index is restored to the version recorded by the checkpoint when it is next used
+      domainSizes = c.domainSizes;
+      domainSizesVersion = c.domainSizesVersion;
+      domainSizesShared = true;
+      active = c.active;
+      if (getConstraintCount() > c.constraintCtr || !c.deactivated.isEmpty()) {
+         PostedConstraints p = getWritablePosted();
+         while (getConstraintCount() > c.constraintCtr) {
+            p.removeLast(variables, aliases);
+         }
+         for (int constraintId : c.deactivated) {
+            p.setActive(constraintId, true);
+         }
+      }
+      while (!constraintQueue.isEmpty()) {
+         constraintQueue.poll();
+      }
+      if (postedQueue != null) {
+         postedQueue.clear();
+      }
+      // the restored variable states may differ from those the cached bounds were calculated from
+      boundsCache = null;
+      checkpoint = c.previous;
+   }
+
+   /**
+    * Returns {@code true} if enforcing the given constraints, in addition to the constraints of this store, does not
+    * cause a failure.
+    * <p>
+    * The assumptions are temporarily added by {@link #post(Constraint)}, within a checkpoint that is restored by
+    * {@link #pop()} before this method returns - so, other than enforcing any constraints that were already waiting to
+    * be enforced, this store is not altered. As only propagation is performed, and not a search, a result of
+    * {@code true} does not guarantee that a solution exists.
+    */
+   public boolean checkAssumptions(Constraint... assumptions) {
+      return findFailure(assumptions, assumptions.length) == -1;
+   }
+
+   /**
+    * Returns a subset of the given constraints that, in addition to the constraints of this store, causes a failure.
+    * <p>
+    * The returned constraints are a minimal conflict - removing any one of them from the returned list would not cause
+    * a failure. As with {@link #checkAssumptions(Constraint...)}, this store is not altered.
+    *
+    * @return the conflicting assumptions, in the order they were given, or an empty list if a failure does not occur or
+    * occurs without adding any of the assumptions
+    */
+   public List<Constraint> findConflictingAssumptions(Constraint... assumptions) {
+      int failure = findFailure(assumptions, assumptions.length);
+      if (failure < 0) {
+         return Collections.emptyList();
+      }
+
+      // only the assumptions up to and including the one that caused the failure need to be considered
+      Constraint[] candidates = Arrays.copyOf(assumptions, failure + 1);
+      int candidateCtr = candidates.length;
+      // check if each candidate, other than the last which is always required, can be removed
+      for (int i = candidateCtr - 2; i >= 0; i--) {
+         Constraint removed = candidates[i];
+         System.arraycopy(candidates, i + 1, candidates, i, candidateCtr - i - 1);
+         int f = findFailure(candidates, candidateCtr - 1);
+         if (f == -1) {
+            // required - so put it back
+            System.arraycopy(candidates, i, candidates, i + 1, candidateCtr - i - 1);
+            candidates[i] = removed;
+         } else {
+            // not required - and neither are any candidates after the one that caused the failure
+            candidateCtr = f + 1;
+            i = Math.min(i, candidateCtr - 1);
+         }
+      }
+      return Arrays.asList(Arrays.copyOf(candidates, candidateCtr));
+   }
+
+   /**
+    * Returns the index of the assumption whose addition caused a failure, or -1 if no failure occurred.
+    * <p>
+    * Returns -2 if the constraints of this store fail before any assumptions have been added.
+    */
+   private int findFailure(Constraint[] assumptions, int assumptionCtr) {
+      if (!resolve()) {
+         return -2;
+      }
+      push();
+      try {
+         for (int i = 0; i < assumptionCtr; i++) {
+            if (!post(assumptions[i])) {
+               return i;
+            }
+         }
+         return -1;
+      } finally {
+         pop();
+      }
+   }
+
+   /**
+    * Returns the index of the variable with the fewest possible values, of the variables that have more than one.
+    * <p>
+    * Variables that are aliases of another variable are never returned - the variable they are an alias of is returned
+    * instead. Auxiliary variables are never returned. The first call creates an index of the variables by number of
+    * possible values, which is then updated whenever the possible values of a variable are altered - so subsequent
+    * calls, on this store and on copies of it, do not need to check every variable. The index is shared with copies of
+    * this store - see {@link DomainSizeIndex}.
+    *
+    * @param candidates indexed by variable, {@code true} for the variables that can be returned - or {@code null} if
+    * any variable can be returned
+    * @return the index of the selected variable, or -1 if none of the candidates have more than one possible value
+    */
+   int getSmallestDomain(boolean[] candidates) {
+      if (domainSizes == null) {
+         createDomainSizes();
+      }
+      return getDomainSizes().select(variableStates, candidates);
+   }
+
+   /**
+    * Returns the number of variables that could be returned by {@link #getSmallestDomain(boolean[])} - i.e. the
+    * variables, other than aliases and auxiliary variables, that have more than one possible value.
+    * <p>
+    * The count is maintained by the same index as {@code getSmallestDomain}, so is not recalculated on each call.
+    */
+   int getUnfixedCount() {
+      if (domainSizes == null) {
+         createDomainSizes();
+      }
+      return getDomainSizes().size();
+   }
+
+   private void createDomainSizes() {
+      VariableState[] indexed = new VariableState[getVariablesCount()];
+      for (int i = 0; i < indexed.length; i++) {
+         if (aliases[i] == i) {
+            indexed[i] = variableStates[i];
+         }
+      }
+      domainSizes = new DomainSizeIndex(indexed);
+      domainSizesVersion = domainSizes.getVersion();
+      domainSizesShared = false;
+   }
+
+   /**
+    * Returns {@link #domainSizes}, first restoring the version used by this store - or, if that version has been
+    * discarded by another store, replacing it with a new index.
+    */
+   private DomainSizeIndex getDomainSizes() {
+      if (!domainSizes.restore(domainSizesVersion)) {
+         createDomainSizes();
+      }
+      return domainSizes;
+   }
+
+   /** Returns {@link #getDomainSizes()}, first creating a new version if the current version may also be used elsewhere. */
+   private DomainSizeIndex getWritableDomainSizes() {
+      DomainSizeIndex d = getDomainSizes();
+      if (domainSizesShared) {
+         domainSizesVersion = d.fork();
+         domainSizesShared = false;
+      }
+      return d;
+   }
+
    private VariableState getExpression(Expression e) {
-      return variableStates[((Variable) e).getId()];
+      return variableStates[aliases[((Variable) e).getId()]];
+   }
+
+   /** Returns the state of the given variable, first recording it in the current checkpoint if not already recorded. */
+   private VariableState getWritableExpression(Expression e) {
+      int idx = aliases[((Variable) e).getId()];
+      if (checkpoint != null && trailedAt[idx] != checkpoint.serial) {
+         checkpoint.serials.add(trailedAt[idx]);
+         trailedAt[idx] = checkpoint.serial;
+         checkpoint.stateIds.add(idx);
+         checkpoint.states.add(variableStates[idx].copy());
+      }
+      return variableStates[idx];
    }
 
    @Override
@@ -148,58 +641,390 @@ public final class ClpConstraintStore implements ConstraintStore {
       return getExpression(id).getMax();
    }
 
+   @Override
+   public boolean contains(Expression id, long value) {
+      return getExpression(id).contains(value);
+   }
+
    @Override
    public ExpressionResult setValue(Expression id, long value) {
-      return update(id, getExpression(id).setValue(value));
+      VariableState state = getWritableExpression(id);
+      return update(id, state.getMin(), state.getMax(), state.setValue(value));
    }
 
    @Override
    public ExpressionResult setMin(Expression id, long min) {
-      return update(id, getExpression(id).setMin(min));
+      VariableState state = getWritableExpression(id);
+      return update(id, state.getMin(), state.getMax(), state.setMin(min));
    }
 
    @Override
    public ExpressionResult setMax(Expression id, long max) {
-      return update(id, getExpression(id).setMax(max));
+      VariableState state = getWritableExpression(id);
+      return update(id, state.getMin(), state.getMax(), state.setMax(max));
    }
 
    @Override
    public ExpressionResult setNot(Expression id, long not) {
-      return update(id, getExpression(id).setNot(not));
+      VariableState state = getWritableExpression(id);
+      return update(id, state.getMin(), state.getMax(), state.setNot(not));
+   }
+
+   @Override
+   public ExpressionResult setNot(Expression id, long from, long to) {
+      VariableState state = getWritableExpression(id);
+      return update(id, state.getMin(), state.getMax(), state.setNot(from, to));
+   }
+
+   /**
+    * Removes values from the variables of this store that cause a failure when the variable is restricted to them.
+    * <p>
+    * Each value that is tried is enforced within a checkpoint, created by {@link #push()}, which is restored before the
+    * next value is tried. If enforcing a value fails then it is removed from the variable and the constraints of this
+    * store are enforced again. As removing a value can cause values that were previously tried to now fail, the
+    * variables are checked repeatedly until every variable has been checked since the last value was removed.
+    * </p>
+    * <p>
+    * If {@code boundsOnly} is {@code true} then only the minimum and maximum of each variable are tried (shaving),
+    * until a value is found that does not fail. Otherwise every possible value is tried (singleton arc consistency) -
+    * except for variables whose range of possible values is greater than {@link #MAX_SINGLETON_VALUES}, which only have
+    * their bounds tried.
+    * </p>
+    *
+    * @return {@code false} if it has been determined that the constraints of this store can not be satisfied
+    */
+   public boolean enforceSingletonConsistency(boolean boundsOnly) {
+      if (!resolve()) {
+         return false;
+      }
+      int variablesCount = getVariablesCount();
+      // the number of consecutive variables that have been checked without any values being removed
+      int unchangedCtr = 0;
+      for (int i = 0; unchangedCtr < variablesCount; i = (i + 1) % variablesCount) {
+         VariableStateResult r = VariableStateResult.NO_CHANGE;
+         VariableState state = variableStates[aliases[i]];
+         if (aliases[i] == i && !state.isSingleValue()) {
+            boolean tryAllValues = !boundsOnly && MathUtils.safeSubtract(state.getMax(), state.getMin()) < MAX_SINGLETON_VALUES;
+            r = tryAllValues ? shaveValues(variables[i]) : shaveBounds(variables[i]);
+         }
+         if (r == VariableStateResult.FAILED) {
+            return false;
+         } else if (r == VariableStateResult.UPDATED) {
+            unchangedCtr = 0;
+         } else {
+            unchangedCtr++;
+         }
+      }
+      return true;
+   }
+
+   /** Removes the lowest and highest possible values of the given variable until values are found that do not fail. */
+   private VariableStateResult shaveBounds(Variable v) {
+      VariableStateResult result = VariableStateResult.NO_CHANGE;
+      long min;
+      while (!isConsistent(v, min = v.getMin(this))) {
+         if (v.setMin(this, min + 1) == ExpressionResult.INVALID || !resolve()) {
+            return VariableStateResult.FAILED;
+         }
+         result = VariableStateResult.UPDATED;
+      }
+      long max;
+      while (!isConsistent(v, max = v.getMax(this))) {
+         if (v.setMax(this, max - 1) == ExpressionResult.INVALID || !resolve()) {
+            return VariableStateResult.FAILED;
+         }
+         result = VariableStateResult.UPDATED;
+      }
+      return result;
+   }
+
+   /** Removes every possible value of the given variable that fails. */
+   private VariableStateResult shaveValues(Variable v) {
+      VariableStateResult result = VariableStateResult.NO_CHANGE;
+      // the bounds are re-evaluated on each iteration, as removing a value may cause other values to be removed
+      for (long value = v.getMin(this); value <= v.getMax(this); value++) {
+         if (contains(v, value) && !isConsistent(v, value)) {
+            if (v.setNot(this, value) == ExpressionResult.INVALID || !resolve()) {
+               return VariableStateResult.FAILED;
+            }
+            result = VariableStateResult.UPDATED;
+         }
+      }
+      return result;
+   }
+
+   /** Returns {@code true} if restricting the given variable to the given value does not cause a failure. */
+   private boolean isConsistent(Variable v, long value) {
+      push();
+      try {
+         return v.setValue(this, value) == ExpressionResult.VALID && resolve();
+      } finally {
+         pop();
+      }
+   }
+
+   /**
+    * Simplifies the constraints of this store before a search is started.
+    * <p>
+    * Constraints that do not refer to any variables are evaluated and removed, the remaining constraints are enforced
+    * until no further restrictions can be made (which derives bounds for the variables they refer to), constraints
+    * that are proven to always be satisfied are removed and variables that have been restricted to a single value are
+    * replaced by that value in the constraints that are left. This store is not altered.
+    *
+    * @return details of the reductions made, including the simplified store
+    */
+   public PresolveResult presolve() {
+      ClpConstraintStore s = copy();
+
+      // fold constraints that do not refer to any variables
+      int foldedCtr = 0;
+      for (int i = 0; i < getConstraintCount(); i++) {
+         Constraint c = s.getConstraint(i);
+         if (s.isActive(i)) {
+            if (containsVariable(c)) {
+               s.enqueue(i);
+            } else if (c.reify(s) == ConstraintResult.MATCHED) {
+               s.deactivate(i);
+               foldedCtr++;
+            } else {
+               return PresolveResult.failed();
+            }
+         }
+      }
+
+      // enforce the remaining constraints - constraints that are matched will be deactivated
+      if (!s.resolve()) {
+         return PresolveResult.failed();
+      }
+
+      // substitute variables with known values and drop constraints that are proven to always be satisfied
+      int entailedCtr = 0;
+      boolean[] substituted = new boolean[variableCtr];
+      List<Constraint> remaining = new ArrayList<>();
+      for (int i = 0; i < getConstraintCount(); i++) {
+         Constraint c = s.getConstraint(i);
+         if (!s.isActive(i)) {
+            // deactivated by this method, either when folded or when matched by resolve()
+            if (isActive(i)) {
+               entailedCtr++;
+            }
+         } else if (c.reify(s) == ConstraintResult.MATCHED) {
+            entailedCtr++;
+         } else {
+            remaining.add(c.replace(e -> {
+               if (e instanceof Variable) {
+                  VariableState state = s.getExpression(e);
+                  if (state.isSingleValue()) {
+                     substituted[((Variable) e).getId()] = true;
+                     return new FixedValue(state.getMin());
+                  }
+               }
+               return null;
+            }));
+         }
+      }
+      entailedCtr -= foldedCtr; // folded constraints have already been counted separately
+
+      int boundedCtr = 0;
+      int substitutedCtr = 0;
+      for (int i = 0; i < getVariablesCount(); i++) {
+         if (s.getVariableState(i).getMin() != getVariableState(i).getMin() || s.getVariableState(i).getMax() != getVariableState(i).getMax()) {
+            boundedCtr++;
+         }
+         if (substituted[i]) {
+            substitutedCtr++;
+         }
+      }
+
+      // the remaining constraints have already been enforced, so do not need to be scheduled
+      ClpConstraintStore result = new ClpConstraintStore(new Model(model, remaining), s.variableStates);
+      return new PresolveResult(result, foldedCtr, entailedCtr, boundedCtr, substitutedCtr);
+   }
+
+   private static boolean containsVariable(Constraint c) {
+      boolean[] result = new boolean[1];
+      c.walk(e -> result[0] |= e instanceof Variable);
+      return result[0];
+   }
+
+   /** The state of a store when {@link #push()} was called. */
+   private static final class Checkpoint {
+      private final Checkpoint previous;
+      /** Distinguishes this checkpoint from every other checkpoint of the store. */
+      private final int serial;
+      private final ActiveConstraints active;
+      /** The number of constraints, including posted constraints, when the checkpoint was created. */
+      private final int constraintCtr;
+      /** The indexes of the variable states altered since the checkpoint was created. */
+      private final List<Integer> stateIds = new ArrayList<>();
+      /** The variable states, at the indexes in {@link #stateIds}, as they were before they were first altered. */
+      private final List<VariableState> states = new ArrayList<>();
+      /**
+       * The serials of the checkpoints the states at the indexes in {@link #stateIds} had been recorded in before being
+       * recorded in this checkpoint - restored by {@link #pop()} so that an enclosing checkpoint does not record a state
+       * it has already recorded.
+       */
+      private final List<Integer> serials = new ArrayList<>();
+      /** The IDs of the posted constraints, that existed when the checkpoint was created, that have been deactivated. */
+      private final List<Integer> deactivated = new ArrayList<>();
+      /** The index of domain sizes when the checkpoint was created, or {@code null} if it had not been created. */
+      private final DomainSizeIndex domainSizes;
+      /** The version of {@link #domainSizes} when the checkpoint was created. */
+      private final int domainSizesVersion;
+
+      Checkpoint(Checkpoint previous, int serial, ActiveConstraints active, int constraintCtr, DomainSizeIndex domainSizes, int domainSizesVersion) {
+         this.previous = previous;
+         this.serial = serial;
+         this.active = active;
+         this.constraintCtr = constraintCtr;
+         this.domainSizes = domainSizes;
+         this.domainSizesVersion = domainSizesVersion;
+      }
    }
 
    public static class Builder {
-      private final List<Variable> variables = new ArrayList<>();
-      private final List<Constraint> constraints = new ArrayList<>();
-      private final Map<Variable, List<Integer>> constraintsByVariable = new HashMap<>();
+      final List<Variable> variables = new ArrayList<>();
+      /** The variables created by {@link #createParameter()}, in the order they were created. */
+      final List<Variable> parameters = new ArrayList<>();
+      /** Union-find structure - indexed by variable ID, the ID of another variable that the variable is equal to. */
+      private final List<Integer> aliases = new ArrayList<>();
+      final List<Constraint> constraints = new ArrayList<>();
+      boolean createViews = true;
+      boolean compileExpressions;
+      boolean eliminateCommonSubexpressions;
+      boolean cacheBounds;
+      Scheduling scheduling = Scheduling.FIFO;
 
+      /**
+       * Equivalent to calling {@code buildModel().createStore()}.
+       *
+       * @throws IllegalStateException if any parameters have been created by {@link #createParameter()}
+       */
       public ClpConstraintStore build() {
-         return new ClpConstraintStore(this);
+         return buildModel().createStore();
+      }
+
+      /**
+       * Returns a model of the variables and constraints that have been added to this builder.
+       * <p>
+       * The returned model is not affected by any subsequent changes to this builder.
+       */
+      public Model buildModel() {
+         return new Model(this);
       }
 
       public Variable createVariable() {
          Variable v = new Variable(variables.size());
          variables.add(v);
+         aliases.add(v.getId());
          return v;
       }
 
+      /**
+       * Creates a variable whose value is specified each time a store is created from the model.
+       * <p>
+       * A parameter can be used in constraints in the same way as any other variable. Rather than being fixed when the
+       * model is built, as it would be for a {@link FixedValue}, its value is provided when calling
+       * {@link Model#createStore(long...)}. This allows a single model to be reused to solve many instances of a
+       * problem that only differ by the values of some of their constants.
+       */
+      public Variable createParameter() {
+         Variable v = createVariable();
+         parameters.add(v);
+         return v;
+      }
+
+      /**
+       * Adds the given constraint to the store being built.
+       * <p>
+       * If the constraint is an {@code EqualTo} between two {@code Variable}s then, rather than being added, the two
+       * variables will be merged so they share the same state in the resulting {@code ClpConstraintStore}.
+       */
       public void addConstraint(Constraint constraint) {
-         int constraintId = constraints.size();
+         if (constraint instanceof EqualTo && mergeVariables(constraint)) {
+            return;
+         }
          constraints.add(constraint);
-         Set<Variable> variables = new HashSet<>();
-         constraint.walk(v -> {
-            if (v instanceof Variable) {
-               variables.add((Variable) v);
-            }
-         });
-         for (Variable v : variables) {
-            List<Integer> list = constraintsByVariable.get(v);
-            if (list == null) {
-               list = new ArrayList<>();
-               constraintsByVariable.put(v, list);
-            }
-            list.add(constraintId);
+      }
+
+      private boolean mergeVariables(Constraint equalTo) {
+         List<Expression> expressions = new ArrayList<>(2);
+         equalTo.walk(expressions::add);
+         if (expressions.size() != 2 || !(expressions.get(0) instanceof Variable) || !(expressions.get(1) instanceof Variable)) {
+            return false;
+         }
+
+         int a = findAlias(((Variable) expressions.get(0)).getId());
+         int b = findAlias(((Variable) expressions.get(1)).getId());
+         // use the variable with the lowest ID as the representative
+         if (a < b) {
+            aliases.set(b, a);
+         } else if (b < a) {
+            aliases.set(a, b);
+         }
+         return true;
+      }
+
+      /** Returns the ID of the variable that represents all variables that the given variable has been merged with. */
+      int findAlias(int id) {
+         int root = id;
+         while (aliases.get(root) != root) {
+            root = aliases.get(root);
+         }
+         while (id != root) {
+            id = aliases.set(id, root);
          }
+         return root;
+      }
+
+      /**
+       * Specifies whether simple arithmetic expressions of constraints should be replaced by views when {@link #build()}
+       * is called.
+       * <p>
+       * If {@code true} then the sum or difference of a variable and a fixed value, the product of a variable and a fixed
+       * value and the negation of a variable are replaced by a {@link VariableView} of the variable. Defaults to
+       * {@code true}.
+       */
+      public void setCreateViews(boolean createViews) {
+         this.createViews = createViews;
+      }
+
+      /**
+       * Specifies whether the arithmetic expressions of constraints should be compiled when {@link #build()} is called.
+       * <p>
+       * If {@code true} then trees of additions, subtractions, negations and multiplications by a fixed value are
+       * replaced by a single {@link LinearExpression}. Defaults to {@code false}.
+       */
+      public void setCompileExpressions(boolean compileExpressions) {
+         this.compileExpressions = compileExpressions;
+      }
+
+      /**
+       * Specifies whether sub-expressions that occur more than once should be shared when {@link #build()} is called.
+       * <p>
+       * If {@code true} then each distinct sub-expression that occurs more than once, across all the constraints that
+       * have been added, is replaced by an auxiliary variable that is constrained to be equal to the sub-expression.
+       * If {@link #setCompileExpressions(boolean)} is also enabled then sub-expressions are compared after they have
+       * been compiled. Defaults to {@code false}.
+       */
+      public void setEliminateCommonSubexpressions(boolean eliminateCommonSubexpressions) {
+         this.eliminateCommonSubexpressions = eliminateCommonSubexpressions;
+      }
+
+      /**
+       * Specifies whether the bounds of composite expressions should be cached.
+       * <p>
+       * If {@code true} then every expression, other than {@code LeafExpression}s, is wrapped in a
+       * {@link CachedExpression} when {@link #build()} is called. This is applied after any other rewriting of the
+       * constraints. Defaults to {@code false}.
+       */
+      public void setCacheBounds(boolean cacheBounds) {
+         this.cacheBounds = cacheBounds;
+      }
+
+      /** Specifies the order that constraints are enforced in. Defaults to {@link Scheduling#FIFO}. */
+      public void setScheduling(Scheduling scheduling) {
+         this.scheduling = Objects.requireNonNull(scheduling);
       }
 
       public EnforceAll enforce(List<Variable> e) {
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.projog.clp.compare.EqualTo;
+import org.projog.clp.math.Divide;
+import org.projog.clp.math.LinearExpression;
+import org.projog.clp.math.Minus;
+import org.projog.clp.math.Subtract;
+import org.projog.clp.math.VariableView;
+
+/**
+ * Replaces sub-expressions that occur more than once with auxiliary variables.
+ * <p>
+ * Each distinct sub-expression that is repeated is replaced by a single auxiliary variable, and a constraint is added
+ * that enforces that the auxiliary variable is equal to the sub-expression. As the auxiliary variable is shared by
+ * every constraint that previously contained the sub-expression, the bounds of the sub-expression are calculated once,
+ * when the defining constraint is enforced, rather than separately by every constraint that uses it.
+ * </p>
+ * <p>
+ * Sub-expressions are considered equal if they have the same structure - i.e. the same type of {@code Expression}
+ * with equal arguments, ignoring the order of the arguments of operations where the order does not affect the result.
+ * A {@link Subtract} or {@link LinearExpression} is also considered equal to the negation of an equal sub-expression -
+ * so {@code x - y} and {@code y - x} are both replaced by views of the same auxiliary variable.
+ * </p>
+ * <p>
+ * Sub-expressions containing a {@link Divide} are never replaced, as the defining constraint would fail for a divisor
+ * of zero even when the sub-expression was only used by a constraint that is conditionally applied. Constraints that
+ * subscribe to {@link VariableEvent#DOMAIN}, such as an {@link EqualTo} using {@link Consistency#DOMAIN}, are left
+ * unaltered - as the defining constraint only restricts bounds, replacing their sub-expressions would lose the values
+ * they remove from the middle of the domains of their arguments.
+ * </p>
+ */
+final class CommonSubexpressions {
+   private final List<Constraint> constraints;
+   private final List<Variable> auxiliaryVariables = new ArrayList<>();
+   private final List<Expression> definitions = new ArrayList<>();
+   private int nextId;
+
+   /**
+    * @param constraints the constraints to remove common sub-expressions from
+    * @param firstAuxiliaryId the ID to use for the first auxiliary variable that is created
+    */
+   CommonSubexpressions(List<Constraint> constraints, int firstAuxiliaryId) {
+      this.constraints = new ArrayList<>(constraints);
+      this.nextId = firstAuxiliaryId;
+
+      // repeat until no duplicates are found - as sub-expressions are rewritten before the expressions that contain
+      // them, a duplicated expression that contains a duplicated sub-expression will be replaced on the next iteration
+      Set<Expression> duplicates;
+      while (!(duplicates = findDuplicates()).isEmpty()) {
+         replace(duplicates);
+      }
+   }
+
+   /** Returns the constraints with common sub-expressions replaced, followed by the defining constraints. */
+   List<Constraint> getConstraints() {
+      return constraints;
+   }
+
+   /** Returns the variables created to represent common sub-expressions, in order of ID. */
+   List<Variable> getAuxiliaryVariables() {
+      return auxiliaryVariables;
+   }
+
+   /**
+    * Returns the sub-expressions represented by the auxiliary variables, in the same order as
+    * {@link #getAuxiliaryVariables()}. A sub-expression only refers to auxiliary variables that were created before the
+    * auxiliary variable that represents it.
+    */
+   List<Expression> getDefinitions() {
+      return definitions;
+   }
+
+   private Set<Expression> findDuplicates() {
+      Map<Expression, Integer> counts = new HashMap<>();
+      for (Constraint c : constraints) {
+         if (isDomainConsistent(c)) {
+            continue;
+         }
+         c.rewrite(e -> {
+            if (!containsDivide(e)) {
+               Expression negated = getNegatedKey(e);
+               counts.merge(negated == null ? e : negated, 1, Integer::sum);
+            }
+            return null;
+         });
+      }
+      counts.values().removeIf(count -> count < 2);
+      return counts.keySet();
+   }
+
+   private void replace(Set<Expression> duplicates) {
+      Map<Expression, Variable> replacements = new HashMap<>();
+      List<Constraint> definitions = new ArrayList<>();
+      for (int i = 0; i < constraints.size(); i++) {
+         if (isDomainConsistent(constraints.get(i))) {
+            continue;
+         }
+         constraints.set(i, constraints.get(i).rewrite(e -> {
+            Expression negated = getNegatedKey(e);
+            Expression key = negated == null ? e : negated;
+            if (!duplicates.contains(key)) {
+               return null;
+            }
+            Variable v = replacements.get(key);
+            if (v == null) {
+               v = new Variable(nextId++);
+               auxiliaryVariables.add(v);
+               this.definitions.add(key);
+               replacements.put(key, v);
+               definitions.add(new EqualTo(v, key));
+            }
+            return negated == null ? v : VariableView.create(new Minus(v));
+         }));
+      }
+      constraints.addAll(definitions);
+   }
+
+   /**
+    * Returns the negation of the given expression if it, rather than the given expression, is the form used to identify
+    * the pair - else returns {@code null}.
+    * <p>
+    * The form with the lower hash code is chosen, so an expression and its negation always agree on which form to use.
+    * If the hash codes are equal then neither is negated, which is correct but means they will not be shared.
+    */
+   private static Expression getNegatedKey(Expression e) {
+      Expression negated;
+      if (e instanceof Subtract) {
+         negated = ((Subtract) e).negate();
+      } else if (e instanceof LinearExpression) {
+         negated = ((LinearExpression) e).negate();
+      } else {
+         return null;
+      }
+      return negated != null && negated.hashCode() < e.hashCode() ? negated : null;
+   }
+
+   /** Returns {@code true} if the given constraint, or a constraint it contains, uses every possible value. */
+   private static boolean isDomainConsistent(Constraint c) {
+      return c.getSubscribedEvents().contains(VariableEvent.DOMAIN);
+   }
+
+   private static boolean containsDivide(Expression e) {
+      boolean[] result = new boolean[1];
+      e.walk(x -> result[0] |= x instanceof Divide);
+      return result[0];
+   }
+}
@@ -0,0 +1,147 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds all solutions by searching each group of independent variables separately.
+ * <p>
+ * The variables of a store are divided into components - groups of variables where no constraint refers to variables
+ * from more than one group (see {@link ClpConstraintStore#getComponents()}). A {@link BruteForceSearch} is used to find
+ * the solutions of each component, and the solutions of the whole store are produced by combining every solution of
+ * each component with every solution of the others. Unlike a single {@code BruteForceSearch} over all the variables,
+ * which would search a component again for every solution of the components searched before it, each component is
+ * only searched once.
+ * </p>
+ * <p>
+ * Solutions are combined lazily - a component is only searched as far as is necessary to produce the next solution.
+ * The values of the solutions found for each component are retained so they can be combined with later solutions of
+ * the other components.
+ * </p>
+ */
+public final class ComponentSearch {
+   private final ClpConstraintStore original;
+   private final Component[] components;
+   /** Indexed by component, the index of the solution of that component used by the current solution. */
+   private int[] positions;
+   private boolean exhausted;
+
+   public ComponentSearch(ClpConstraintStore environment) {
+      if (environment.getVariablesCount() == 0) {
+         throw new IllegalStateException();
+      }
+      this.original = environment;
+      List<int[]> groups = environment.getComponents();
+      this.components = new Component[groups.size()];
+      for (int i = 0; i < components.length; i++) {
+         components[i] = new Component(environment, groups.get(i));
+      }
+   }
+
+   /** Returns the number of independent groups of variables that are searched separately. */
+   public int getComponentCount() {
+      return components.length;
+   }
+
+   /**
+    * Finds a valid solution.
+    * <p>
+    * If a valid solution was found on a previous call then the next combination of the solutions of the components is
+    * returned.
+    *
+    * @return the next solution or, if no remaining solutions, {@code null}
+    */
+   public ClpConstraintStore next() {
+      if (exhausted) {
+         return null;
+      }
+      if (positions == null) {
+         positions = new int[components.length];
+         for (Component c : components) {
+            if (!c.hasSolution(0)) {
+               exhausted = true;
+               return null;
+            }
+         }
+      } else if (!advance()) {
+         exhausted = true;
+         return null;
+      }
+      return combine();
+   }
+
+   /** Moves to the next combination, with the last component changing fastest. */
+   private boolean advance() {
+      for (int i = components.length - 1; i >= 0; i--) {
+         if (components[i].hasSolution(positions[i] + 1)) {
+            positions[i]++;
+            return true;
+         }
+         positions[i] = 0;
+      }
+      return false;
+   }
+
+   private ClpConstraintStore combine() {
+      ClpConstraintStore solution = original.copy();
+      for (int i = 0; i < components.length; i++) {
+         int[] variableIndexes = components[i].variableIndexes;
+         long[] values = components[i].solutions.get(positions[i]);
+         for (int j = 0; j < variableIndexes.length; j++) {
+            Variable v = solution.getVariable(variableIndexes[j]);
+            if (v.setValue(solution, values[j]) == ExpressionResult.INVALID) {
+               throw new IllegalStateException("Could not set " + v + " to " + values[j]);
+            }
+         }
+      }
+      // determine the values of any auxiliary variables
+      if (!solution.resolve()) {
+         throw new IllegalStateException("Combined solutions of components are not consistent");
+      }
+      return solution;
+   }
+
+   private static final class Component {
+      private final int[] variableIndexes;
+      private final BruteForceSearch search;
+      private final List<long[]> solutions = new ArrayList<>();
+      private boolean complete;
+
+      Component(ClpConstraintStore environment, int[] variableIndexes) {
+         this.variableIndexes = variableIndexes;
+         this.search = new BruteForceSearch(environment, variableIndexes);
+      }
+
+      /** Returns {@code true} if this component has at least {@code idx + 1} solutions, searching further if needed. */
+      boolean hasSolution(int idx) {
+         while (solutions.size() <= idx && !complete) {
+            ClpConstraintStore solution = search.next();
+            if (solution == null) {
+               complete = true;
+            } else {
+               long[] values = new long[variableIndexes.length];
+               for (int i = 0; i < values.length; i++) {
+                  values[i] = solution.getValue(solution.getVariable(variableIndexes[i]));
+               }
+               solutions.add(values);
+            }
+         }
+         return idx < solutions.size();
+      }
+   }
+}
@@ -0,0 +1,26 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+/**
+ * The level of consistency that a constraint should achieve when restricting the possible values of its arguments.
+ */
+public enum Consistency {
+   /** Only the minimum and maximum possible values are restricted. */
+   BOUNDS,
+   /** Every possible value that can not be part of a solution of the constraint is removed. */
+   DOMAIN
+}
@@ -15,6 +15,7 @@
  */
 package org.projog.clp;
 
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -28,6 +29,23 @@ public interface Constraint extends Expression {
 
    ConstraintResult reify(ReadConstraintStore constraintStore);
 
+   /**
+    * Returns the types of change to the variables referred to by this constraint that should cause it to be enforced
+    * again.
+    * <p>
+    * The default implementation subscribes to changes of the minimum and maximum values, which is sufficient for
+    * constraints that only use the bounds of their variables. As a variable always has its minimum or maximum changed
+    * when it is restricted to a single value, every constraint is enforced again once all of its variables are fixed.
+    */
+   default Set<VariableEvent> getSubscribedEvents() {
+      return VariableEvent.bounds();
+   }
+
+   /** Returns an estimate of how expensive it is to enforce this constraint. Defaults to {@code MEDIUM}. */
+   default PropagationCost getPropagationCost() {
+      return PropagationCost.MEDIUM;
+   }
+
    /**
     * Traverse this constraint.
     *
@@ -48,6 +66,19 @@ public interface Constraint extends Expression {
    @Override
    Constraint replace(Function<LeafExpression, LeafExpression> function);
 
+   /**
+    * Returns a {@code Constraint} with the sub-expressions of this {@code Constraint} replaced with values returned
+    * from the given function.
+    * <p>
+    * The default implementation returns this {@code Constraint} unaltered.
+    *
+    * @see Expression#rewrite(Function)
+    */
+   @Override
+   default Constraint rewrite(Function<Expression, Expression> function) {
+      return this;
+   }
+
    @Override
    default long getMin(ReadConstraintStore constraintStore) {
       ConstraintResult r = reify(constraintStore);
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+/**
+ * The IDs of constraints waiting to be enforced by {@link ClpConstraintStore#resolve()}.
+ * <p>
+ * A constraint is never contained in the queue more than once. Each level of the queue is a circular buffer, and
+ * whether a constraint is already queued is recorded in a bit set rather than by searching the buffers. As a copy of
+ * the store is created for every node of a search, the buffers are only allocated when a constraint is first added and
+ * start small - doubling in size when full - rather than having capacity for every constraint. Once allocated they are
+ * reused each time the store is resolved, with the bit of each constraint being cleared as it is removed.
+ */
+final class ConstraintQueue {
+   private static final int INITIAL_CAPACITY = 8;
+
+   private final Scheduling scheduling;
+   /** Indexed by constraint ID, the level of the queue each constraint is added to. */
+   private final int[] levels;
+   private final int levelCtr;
+   /** Bit set, indexed by constraint ID, of the constraints contained in the queue. */
+   private long[] queued;
+   private int[][] buffers;
+   private int[] heads;
+   private int[] sizes;
+   private int size;
+
+   /**
+    * @param scheduling the order to return constraints in
+    * @param costs indexed by constraint ID, the cost of enforcing each constraint
+    */
+   ConstraintQueue(Scheduling scheduling, PropagationCost[] costs) {
+      this.scheduling = scheduling;
+      this.levels = new int[costs.length];
+      if (scheduling == Scheduling.PRIORITY) {
+         for (int i = 0; i < costs.length; i++) {
+            levels[i] = costs[i].ordinal();
+         }
+         this.levelCtr = PropagationCost.values().length;
+      } else {
+         this.levelCtr = 1;
+      }
+   }
+
+   private ConstraintQueue(ConstraintQueue original) {
+      this.scheduling = original.scheduling;
+      this.levels = original.levels;
+      this.levelCtr = original.levelCtr;
+   }
+
+   Scheduling getScheduling() {
+      return scheduling;
+   }
+
+   /** Returns a new empty queue that orders constraints in the same way as this queue. */
+   ConstraintQueue emptyCopy() {
+      return new ConstraintQueue(this);
+   }
+
+   /** Adds the given constraint, unless it is already contained in this queue. */
+   void add(int constraintId) {
+      if (queued == null) {
+         queued = new long[(levels.length + 63) >>> 6];
+         buffers = new int[levelCtr][];
+         heads = new int[levelCtr];
+         sizes = new int[levelCtr];
+      } else if ((queued[constraintId >>> 6] & (1L << constraintId)) != 0) {
+         return;
+      }
+      queued[constraintId >>> 6] |= 1L << constraintId;
+      int level = levels[constraintId];
+      int[] buffer = buffers[level];
+      if (buffer == null) {
+         buffer = buffers[level] = new int[Math.min(INITIAL_CAPACITY, levels.length)];
+      } else if (sizes[level] == buffer.length) {
+         buffer = grow(level);
+      }
+      buffer[(heads[level] + sizes[level]) % buffer.length] = constraintId;
+      sizes[level]++;
+      size++;
+   }
+
+   boolean isEmpty() {
+      return size == 0;
+   }
+
+   /** Removes and returns the next constraint to enforce. Must not be called if this queue is empty. */
+   int poll() {
+      int level = 0;
+      while (sizes[level] == 0) {
+         level++;
+      }
+      int[] buffer = buffers[level];
+      int constraintId;
+      if (scheduling == Scheduling.LIFO) {
+         constraintId = buffer[(heads[level] + sizes[level] - 1) % buffer.length];
+      } else {
+         constraintId = buffer[heads[level]];
+         heads[level] = (heads[level] + 1) % buffer.length;
+      }
+      sizes[level]--;
+      size--;
+      queued[constraintId >>> 6] &= ~(1L << constraintId);
+      return constraintId;
+   }
+
+   /** Doubles the capacity of the given, full, level - moving its contents so they start at the beginning. */
+   private int[] grow(int level) {
+      int[] buffer = buffers[level];
+      int[] grown = new int[Math.min(buffer.length * 2, levels.length)];
+      int head = heads[level];
+      System.arraycopy(buffer, head, grown, 0, buffer.length - head);
+      System.arraycopy(buffer, 0, grown, buffer.length - head, head);
+      heads[level] = 0;
+      buffers[level] = grown;
+      return grown;
+   }
+}
@@ -23,4 +23,22 @@ public interface ConstraintStore extends ReadConstraintStore {
    ExpressionResult setMax(Expression id, long max);
 
    ExpressionResult setNot(Expression id, long not);
+
+   /**
+    * Removes every value between {@code from} and {@code to} (inclusive) from the possible values of the given
+    * {@code Expression}.
+    * <p>
+    * The default implementation removes each of the values in the range individually.
+    */
+   default ExpressionResult setNot(Expression id, long from, long to) {
+      long min = Math.max(from, getMin(id));
+      long max = Math.min(to, getMax(id));
+      // the check that v is not less than min stops the loop if v overflows
+      for (long v = min; v <= max && v >= min; v++) {
+         if (contains(id, v) && setNot(id, v) == ExpressionResult.INVALID) {
+            return ExpressionResult.INVALID;
+         }
+      }
+      return ExpressionResult.VALID;
+   }
 }
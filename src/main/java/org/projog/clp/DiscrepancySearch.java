@@ -0,0 +1,186 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+/**
+ * Finds solutions by exploring paths in order of how far they deviate from the value ordering heuristic.
+ * <p>
+ * Unlike {@link BruteForceSearch}, which backtracks chronologically and so revisits the decisions at the bottom of the
+ * tree before those at the top, the search proceeds in iterations that each allow more discrepancies than the last
+ * (see {@link DiscrepancyStrategy}). When the heuristic is good, solutions are found in the early iterations after
+ * exploring only a small part of the tree. Each iteration only visits the solutions that were not visited by an
+ * earlier iteration, so every solution is returned once. The search ends after an iteration that was not restricted by
+ * its limit on discrepancies, as that iteration will have covered the rest of the tree.
+ * </p>
+ * <p>
+ * The variable with the fewest possible values is selected at each level, and its values are tried in ascending order.
+ * </p>
+ */
+public final class DiscrepancySearch {
+   private final ClpConstraintStore root;
+   private final DiscrepancyStrategy strategy;
+   /** Indexed by depth, the store before a value is selected at that depth. */
+   private final ClpConstraintStore[] stores;
+   /** Indexed by depth, the index of the variable a value is selected for at that depth. */
+   private final int[] selected;
+   private final Possibilities[] p;
+   /** Indexed by depth, the number of values of the selected variable that have been tried. */
+   private final int[] tried;
+   /** Indexed by depth, the total number of discrepancies of the decisions made above that depth. */
+   private final int[] used;
+   /** The index of the variable selected at the root, or -1 if every variable of the root has a single value. */
+   private final int rootVariable;
+   private int iteration = -1;
+   /** {@code true} if the current iteration has not explored a value because of its limit on discrepancies. */
+   private boolean limited;
+   /** The current depth, or -1 if the current iteration has finished. */
+   private int depth = -1;
+
+   public DiscrepancySearch(ClpConstraintStore environment, DiscrepancyStrategy strategy) {
+      int variablesCount = environment.getVariablesCount();
+      if (variablesCount == 0) {
+         throw new IllegalStateException();
+      }
+      this.root = environment.copy();
+      this.strategy = strategy;
+      this.stores = new ClpConstraintStore[variablesCount];
+      this.selected = new int[variablesCount];
+      this.p = new Possibilities[variablesCount];
+      this.tried = new int[variablesCount];
+      this.used = new int[variablesCount];
+      this.rootVariable = root.getSmallestDomain(null);
+   }
+
+   /**
+    * Returns the number of the current iteration - starting at 0 for the iteration that only follows the heuristic.
+    * Returns -1 if {@link #next()} has not yet been called.
+    */
+   public int getIteration() {
+      return iteration;
+   }
+
+   /**
+    * Finds a valid solution.
+    * <p>
+    * If a valid solution was found on a previous call then the search continues to find an alternative solution.
+    *
+    * @return the next solution or, if no remaining solutions, {@code null}
+    */
+   public ClpConstraintStore next() {
+      if (rootVariable == -1) {
+         // every variable already has a single value, so the store itself is the only solution
+         return ++iteration == 0 ? root : null;
+      }
+      while (depth != -1 || startIteration()) {
+         ClpConstraintStore solution = tryNextValue();
+         if (solution != null) {
+            return solution;
+         }
+      }
+      return null;
+   }
+
+   /** Returns {@code false} if the previous iteration explored every remaining path, so there is nothing left to search. */
+   private boolean startIteration() {
+      if (iteration != -1 && !limited) {
+         return false;
+      }
+      iteration++;
+      limited = false;
+      depth = 0;
+      stores[0] = root;
+      used[0] = 0;
+      select(rootVariable);
+      return true;
+   }
+
+   private void select(int variable) {
+      VariableState state = stores[depth].getVariableState(variable);
+      if (state.count() > Integer.MAX_VALUE) {
+         throw new IllegalStateException("Variables not sufficiently bound. Too many possibilities.");
+      }
+      selected[depth] = variable;
+      p[depth] = state.getPossibilities();
+      tried[depth] = 0;
+   }
+
+   /**
+    * Tries the next value at the current depth, moving down a level if it succeeds and up a level if there are no more
+    * values to try.
+    *
+    * @return the resulting store, if it is a solution that has not been returned by an earlier iteration, else {@code null}
+    */
+   private ClpConstraintStore tryNextValue() {
+      Possibilities current = p[depth];
+      if (!current.hasNext()) {
+         depth--;
+         return null;
+      }
+      int discrepancies = tried[depth]++;
+      long value = current.next();
+      if (discrepancies > getMaxDiscrepancies()) {
+         // the remaining values would be even further from the heuristic, so none of them can be explored
+         limited = true;
+         depth--;
+         return null;
+      }
+      if (discrepancies < getMinDiscrepancies()) {
+         return null;
+      }
+
+      ClpConstraintStore copy = stores[depth].copy();
+      if (copy.getVariable(selected[depth]).setValue(copy, value) == ExpressionResult.INVALID || !copy.resolve()) {
+         return null;
+      }
+      int total = used[depth] + discrepancies;
+      int next = copy.getSmallestDomain(null);
+      if (next == -1) {
+         return isNew(depth + 1, total) ? copy : null;
+      }
+      depth++;
+      stores[depth] = copy;
+      used[depth] = total;
+      select(next);
+      return null;
+   }
+
+   /** Returns the maximum number of discrepancies the decision at the current depth can have. */
+   private int getMaxDiscrepancies() {
+      if (strategy == DiscrepancyStrategy.LIMITED) {
+         return iteration - used[depth];
+      } else {
+         return depth < iteration ? Integer.MAX_VALUE : 0;
+      }
+   }
+
+   /** Returns the minimum number of discrepancies the decision at the current depth must have. */
+   private int getMinDiscrepancies() {
+      // the paths where the deepest discrepancy is above the current depth were explored by earlier iterations
+      return strategy == DiscrepancyStrategy.DEPTH_BOUNDED && depth == iteration - 1 ? 1 : 0;
+   }
+
+   /**
+    * Returns {@code true} if a solution, found after the given number of decisions with the given total number of
+    * discrepancies, was not found by an earlier iteration.
+    */
+   private boolean isNew(int decisions, int discrepancies) {
+      if (strategy == DiscrepancyStrategy.LIMITED) {
+         return discrepancies == iteration;
+      } else {
+         return decisions >= iteration;
+      }
+   }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+/**
+ * The order in which a {@link DiscrepancySearch} explores the paths of the search tree.
+ * <p>
+ * A discrepancy is a decision that goes against the value ordering heuristic - i.e. selecting a value other than the
+ * lowest possible value of a variable. Selecting the second lowest value counts as one discrepancy, the third lowest
+ * as two, and so on.
+ * </p>
+ */
+public enum DiscrepancyStrategy {
+   /**
+    * Limited discrepancy search - the <i>n</i>th iteration explores the paths with a total of exactly <i>n</i>
+    * discrepancies.
+    */
+   LIMITED,
+   /**
+    * Depth-bounded discrepancy search - the <i>n</i>th iteration explores the paths whose deepest discrepancy is at depth
+    * <i>n</i>. Discrepancies high in the tree, where the heuristic is least informed, are explored before those below.
+    */
+   DEPTH_BOUNDED
+}
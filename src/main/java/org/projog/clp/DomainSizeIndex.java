@@ -0,0 +1,287 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import java.util.Arrays;
+
+/**
+ * The variables of a {@link ClpConstraintStore} that have more than one possible value, grouped by how many possible
+ * values they have.
+ * <p>
+ * Used to select the variable with the fewest possible values without checking every variable. Variables with fewer
+ * than {@link #EXACT_BUCKETS} possible values are grouped by their exact number of values. All other variables are
+ * grouped by the power of two their number of values is rounded down to - so only the variables of the first non-empty
+ * bucket need to be checked when selecting a variable. Each bucket is a doubly linked list, so moving a variable from one
+ * bucket to another, when its possible values are altered, is O(1).
+ * </p>
+ * <p>
+ * The index is shared by a store and its copies, rather than copied. Each move is recorded on a trail, so the index can
+ * be restored to an earlier <i>version</i> by undoing the moves made since. A store that alters a version that may
+ * also be used by another store, or by a checkpoint, first creates a new version - see {@link #fork()}. A store then
+ * calls {@link #restore(int)} with its own version before using the index. As a search only returns to a store after
+ * the stores created from it are no longer needed, the cost of restoring is proportional to the number of moves made
+ * since, rather than to the number of variables.
+ * </p>
+ */
+final class DomainSizeIndex {
+   /** Variables with fewer possible values than this are grouped by their exact number of values. */
+   static final int EXACT_BUCKETS = 64;
+   /** The number of buckets for variables with at least {@link #EXACT_BUCKETS} values - one per power of two. */
+   private static final int POWER_OF_TWO_BUCKETS = Long.SIZE - 1 - Long.numberOfTrailingZeros(EXACT_BUCKETS);
+   private static final int NONE = -1;
+   /** The number of values recorded on the trail for each move - the variable and its bucket, previous and next. */
+   private static final int MOVE_SIZE = 4;
+
+   /** Indexed by bucket, the first variable in each bucket. */
+   private final int[] heads;
+   /** Indexed by variable, the next variable in the same bucket. */
+   private final int[] next;
+   /** Indexed by variable, the previous variable in the same bucket. */
+   private final int[] previous;
+   /** Indexed by variable, the bucket that contains the variable, or {@link #NONE} if not contained. */
+   private final int[] buckets;
+   /** Bit {@code i % 64} of element {@code i / 64} is set if bucket {@code i} is not empty. */
+   private final long[] nonEmpty;
+   /** The number of variables contained in a bucket. */
+   private int size;
+   /** The position in its bucket of each variable before each move, in the order the moves were made. */
+   private int[] trail = new int[MOVE_SIZE * 16];
+   private int trailSize;
+   /** The versions that can be restored, oldest first. */
+   private int[] versions = new int[16];
+   /** Indexed by position in {@link #versions}, the size of {@link #trail} when each version was created. */
+   private int[] marks = new int[16];
+   private int versionCount;
+   private int versionCtr;
+
+   /**
+    * @param states indexed by variable, the state of each variable that should be indexed, else {@code null}
+    */
+   DomainSizeIndex(VariableState[] states) {
+      int bucketCount = EXACT_BUCKETS + POWER_OF_TWO_BUCKETS;
+      this.heads = new int[bucketCount];
+      this.next = new int[states.length];
+      this.previous = new int[states.length];
+      this.buckets = new int[states.length];
+      this.nonEmpty = new long[(bucketCount + Long.SIZE - 1) / Long.SIZE];
+      Arrays.fill(heads, NONE);
+      Arrays.fill(buckets, NONE);
+      for (int i = states.length - 1; i >= 0; i--) {
+         if (states[i] != null) {
+            update(i, states[i]);
+         }
+      }
+      fork();
+   }
+
+   /** Returns the most recently created version that has not been discarded by {@link #restore(int)}. */
+   int getVersion() {
+      return versions[versionCount - 1];
+   }
+
+   /**
+    * Creates a new version, so that the current version can be restored after the index has been altered.
+    *
+    * @return the new version
+    */
+   int fork() {
+      if (versionCount == versions.length) {
+         versions = Arrays.copyOf(versions, versionCount * 2);
+         marks = Arrays.copyOf(marks, versionCount * 2);
+      }
+      versions[versionCount] = ++versionCtr;
+      marks[versionCount] = trailSize;
+      return versions[versionCount++];
+   }
+
+   /**
+    * Undoes the moves made since the given version was replaced by a more recent version.
+    * <p>
+    * The versions created after the given version are discarded.
+    *
+    * @return {@code true} if the index now reflects the given version, or {@code false} if the version has already
+    * been discarded - in which case the index is not altered
+    */
+   boolean restore(int version) {
+      int position = versionCount - 1;
+      while (position >= 0 && versions[position] != version) {
+         position--;
+      }
+      if (position == -1) {
+         return false;
+      }
+      if (position < versionCount - 1) {
+         int mark = marks[position + 1];
+         while (trailSize > mark) {
+            undo();
+         }
+         versionCount = position + 1;
+      }
+      return true;
+   }
+
+   /** Returns the number of variables that have more than one possible value. */
+   int size() {
+      return size;
+   }
+
+   /** Moves the given variable to the bucket that corresponds to its current number of possible values. */
+   void update(int id, VariableState state) {
+      int bucket = getBucket(state);
+      if (bucket != buckets[id]) {
+         // there is no need to record moves while there is only one version, as there is no earlier version to restore
+         if (versionCount > 1) {
+            record(id);
+         }
+         remove(id);
+         if (bucket != NONE) {
+            add(id, bucket);
+         }
+      }
+   }
+
+   /**
+    * Returns the variable with the fewest possible values.
+    *
+    * @param states indexed by variable, the state of each variable
+    * @param candidates indexed by variable, {@code true} for the variables that can be selected - or {@code null} if
+    * all variables can be selected
+    * @return the selected variable, or -1 if none of the candidates have more than one possible value
+    */
+   int select(VariableState[] states, boolean[] candidates) {
+      for (int word = 0; word < nonEmpty.length; word++) {
+         for (long m = nonEmpty[word]; m != 0; m &= m - 1) {
+            int bucket = word * Long.SIZE + Long.numberOfTrailingZeros(m);
+            int best = bucket < EXACT_BUCKETS ? selectFirst(bucket, candidates) : selectFewest(bucket, states, candidates);
+            if (best != NONE) {
+               return best;
+            }
+         }
+      }
+      return NONE;
+   }
+
+   /** Returns the first candidate in the given bucket - all the variables in the bucket have the same number of values. */
+   private int selectFirst(int bucket, boolean[] candidates) {
+      for (int id = heads[bucket]; id != NONE; id = next[id]) {
+         if (candidates == null || candidates[id]) {
+            return id;
+         }
+      }
+      return NONE;
+   }
+
+   /** Returns the candidate in the given bucket with the fewest values - every later bucket has more values. */
+   private int selectFewest(int bucket, VariableState[] states, boolean[] candidates) {
+      int best = NONE;
+      long bestCount = Long.MAX_VALUE;
+      for (int id = heads[bucket]; id != NONE; id = next[id]) {
+         if (candidates == null || candidates[id]) {
+            long count = states[id].count();
+            if (best == NONE || count < bestCount) {
+               best = id;
+               bestCount = count;
+            }
+         }
+      }
+      return best;
+   }
+
+   private static int getBucket(VariableState state) {
+      if (state.isSingleValue()) {
+         return NONE;
+      }
+      long count = state.count();
+      if (count < EXACT_BUCKETS) {
+         return (int) count;
+      }
+      // the index of the highest set bit is at least the index of the bit of EXACT_BUCKETS
+      int log2 = Long.SIZE - 1 - Long.numberOfLeadingZeros(count);
+      return EXACT_BUCKETS + log2 - Long.numberOfTrailingZeros(EXACT_BUCKETS);
+   }
+
+   private void record(int id) {
+      if (trailSize == trail.length) {
+         trail = Arrays.copyOf(trail, trailSize * 2);
+      }
+      trail[trailSize++] = id;
+      trail[trailSize++] = buckets[id];
+      trail[trailSize++] = previous[id];
+      trail[trailSize++] = next[id];
+   }
+
+   /**
+    * Undoes the most recent move on the trail.
+    * <p>
+    * As moves are undone in the reverse of the order they were made, the variables that were before and after the
+    * variable in its original bucket are once again next to each other - so the variable is put back between them.
+    */
+   private void undo() {
+      int n = trail[--trailSize];
+      int p = trail[--trailSize];
+      int bucket = trail[--trailSize];
+      int id = trail[--trailSize];
+      remove(id);
+      if (bucket != NONE) {
+         if (p == NONE) {
+            heads[bucket] = id;
+         } else {
+            next[p] = id;
+         }
+         if (n != NONE) {
+            previous[n] = id;
+         }
+         previous[id] = p;
+         next[id] = n;
+         buckets[id] = bucket;
+         nonEmpty[bucket / Long.SIZE] |= 1L << bucket;
+         size++;
+      }
+   }
+
+   private void add(int id, int bucket) {
+      int head = heads[bucket];
+      next[id] = head;
+      previous[id] = NONE;
+      if (head != NONE) {
+         previous[head] = id;
+      }
+      heads[bucket] = id;
+      buckets[id] = bucket;
+      nonEmpty[bucket / Long.SIZE] |= 1L << bucket;
+      size++;
+   }
+
+   private void remove(int id) {
+      int bucket = buckets[id];
+      if (bucket == NONE) {
+         return;
+      }
+      if (previous[id] == NONE) {
+         heads[bucket] = next[id];
+         if (heads[bucket] == NONE) {
+            nonEmpty[bucket / Long.SIZE] &= ~(1L << bucket);
+         }
+      } else {
+         next[previous[id]] = next[id];
+      }
+      if (next[id] != NONE) {
+         previous[next[id]] = previous[id];
+      }
+      buckets[id] = NONE;
+      size--;
+   }
+}
@@ -34,6 +34,15 @@ public interface Expression {
 
    long getMax(ReadConstraintStore constraintStore);
 
+   /**
+    * Returns {@code true} if the given value is one of the possible values of this {@code Expression}.
+    * <p>
+    * The default implementation only checks that the value is within the range of the minimum and maximum values.
+    */
+   default boolean contains(ReadConstraintStore constraintStore, long value) {
+      return value >= getMin(constraintStore) && value <= getMax(constraintStore);
+   }
+
    default ExpressionResult setNot(ConstraintStore store, long not) {
       if (getMax(store) == not) {
          return setMax(store, safeSubtract(not, 1));
@@ -67,4 +76,21 @@ public interface Expression {
     * returned from {@code function}.
     */
    Expression replace(Function<LeafExpression, LeafExpression> function);
+
+   /**
+    * Returns a {@code Expression} with the sub-expressions of this {@code Expression} replaced with values returned from
+    * the given function.
+    * <p>
+    * Sub-expressions are rewritten before the {@code Expression} that contains them, so the function is called with
+    * composites whose arguments have already been rewritten. The function is not called with {@code Constraint}s, so
+    * rewriting a {@code Constraint} always results in a {@code Constraint}. If no sub-expressions are replaced then the
+    * original {@code Expression} is returned.
+    *
+    * @param function returns the {@code Expression} to use as a replacement for the {@code Expression} it is called
+    * with, or {@code null} if the original {@code Expression} should continue to be used.
+    */
+   default Expression rewrite(Function<Expression, Expression> function) {
+      Expression r = function.apply(this);
+      return r == null ? this : r;
+   }
 }
@@ -29,6 +29,10 @@ public final class FixedValue implements LeafExpression {
       this.value = value;
    }
 
+   public long getValue() {
+      return value;
+   }
+
    @Override
    public long getMin(ReadConstraintStore s) {
       return value;
@@ -95,6 +99,22 @@ public final class FixedValue implements LeafExpression {
       return this;
    }
 
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      } else if (!(o instanceof FixedValue)) {
+         return false;
+      } else {
+         return value == ((FixedValue) o).value;
+      }
+   }
+
+   @Override
+   public int hashCode() {
+      return Long.hashCode(value);
+   }
+
    @Override
    public String toString() {
       return "FixedValue [value=" + value + "]";
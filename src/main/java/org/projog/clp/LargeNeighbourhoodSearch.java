@@ -0,0 +1,413 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.projog.clp.compare.LessThanOrEqualTo;
+
+/**
+ * Improves a solution by repeatedly searching a small part of the search space around it.
+ * <p>
+ * Finds solutions that minimise the value of an objective expression. (To maximise an expression, minimise its
+ * {@link org.projog.clp.math.Minus}.) Starting from the first solution found by a {@link BruteForceSearch}, each
+ * iteration selects a {@link Neighbourhood} of variables to relax, fixes every other variable to its value in the best
+ * solution found so far, adds a constraint that the objective must be lower than the best value found so far and then
+ * searches for a solution. The search of each neighbourhood gives up after a small number of failures (see
+ * {@link #setFailureLimit(long)}). Any solution that is found is, due to the constraint on the objective, an
+ * improvement, so replaces the best solution. As only a small number of variables are searched by each iteration, good
+ * solutions can be found for models that are too large for their search space to be explored completely - although
+ * there is no guarantee that the best solution found is optimal.
+ * </p>
+ * <p>
+ * Iterations can be performed concurrently by multiple threads - each using its own store, created from the same
+ * {@link Model}, and sharing the best solution found so far. Where possible, each thread explores a different kind of
+ * neighbourhood at the same time, so that the kinds that are most effective for the model contribute improvements that
+ * the others then build on.
+ * </p>
+ */
+public final class LargeNeighbourhoodSearch {
+   private static final int DEFAULT_NEIGHBOURHOOD_SIZE = 10;
+   private static final long DEFAULT_FAILURE_LIMIT = 100;
+
+   private final Model model;
+   private final Expression objective;
+   private final long[] parameters;
+   /** The indexes of the variables that can be relaxed - i.e. that are not aliases of other variables. */
+   private final int[] candidates;
+   /** Indexed by variable index, the IDs of the constraints that refer to the variable. */
+   private final int[][] constraintsByVariable;
+   /** Indexed by constraint ID, the indexes of the variables that the constraint refers to. */
+   private final int[][] variablesByConstraint;
+   private Neighbourhood[] neighbourhoods = Neighbourhood.values();
+   private int neighbourhoodSize = DEFAULT_NEIGHBOURHOOD_SIZE;
+   private long failureLimit = DEFAULT_FAILURE_LIMIT;
+   private long seed;
+   /** The best solution found so far, or {@code null} if no solution has been found. */
+   private volatile Incumbent incumbent;
+
+   /**
+    * @param model the model to find solutions for
+    * @param objective the expression whose value is to be minimised
+    * @param parameters the values of the parameters of the model (see {@link Model#createStore(long...)})
+    */
+   public LargeNeighbourhoodSearch(Model model, Expression objective, long... parameters) {
+      if (parameters.length != model.getParametersCount()) {
+         throw new IllegalArgumentException("Expected " + model.getParametersCount() + " values but got " + parameters.length);
+      }
+      this.model = model;
+      this.objective = objective;
+      this.parameters = parameters.clone();
+
+      int variablesCount = model.getVariablesCount();
+      List<Integer> representatives = new ArrayList<>();
+      for (int i = 0; i < variablesCount; i++) {
+         if (model.aliases[i] == i) {
+            representatives.add(i);
+         }
+      }
+      this.candidates = toArray(representatives);
+
+      List<List<Integer>> index = new ArrayList<>();
+      for (int i = 0; i < variablesCount; i++) {
+         index.add(new ArrayList<>());
+      }
+      this.variablesByConstraint = new int[model.constraints.length][];
+      for (int constraintId = 0; constraintId < model.constraints.length; constraintId++) {
+         List<Integer> variables = new ArrayList<>();
+         for (Variable v : Model.getRepresentatives(model.variables, model.aliases, model.constraints[constraintId])) {
+            if (v.getId() < variablesCount) {
+               variables.add(v.getId());
+               index.get(v.getId()).add(constraintId);
+            }
+         }
+         variablesByConstraint[constraintId] = toArray(variables);
+      }
+      this.constraintsByVariable = new int[variablesCount][];
+      for (int i = 0; i < variablesCount; i++) {
+         constraintsByVariable[i] = toArray(index.get(i));
+      }
+   }
+
+   private static int[] toArray(List<Integer> list) {
+      return list.stream().mapToInt(Integer::intValue).toArray();
+   }
+
+   /** Sets the kinds of neighbourhoods to explore. By default every kind is explored. */
+   public void setNeighbourhoods(Neighbourhood... neighbourhoods) {
+      if (neighbourhoods.length == 0) {
+         throw new IllegalArgumentException("No neighbourhoods specified");
+      }
+      this.neighbourhoods = neighbourhoods.clone();
+   }
+
+   /** Sets the number of variables relaxed by each iteration. */
+   public void setNeighbourhoodSize(int neighbourhoodSize) {
+      if (neighbourhoodSize < 1) {
+         throw new IllegalArgumentException("Neighbourhood size must be at least 1 but got: " + neighbourhoodSize);
+      }
+      this.neighbourhoodSize = neighbourhoodSize;
+   }
+
+   /**
+    * Sets the number of failures after which the search of a neighbourhood gives up.
+    *
+    * @see BruteForceSearch#setFailureLimit(long)
+    */
+   public void setFailureLimit(long failureLimit) {
+      if (failureLimit < 0) {
+         throw new IllegalArgumentException("Failure limit must not be negative but got: " + failureLimit);
+      }
+      this.failureLimit = failureLimit;
+   }
+
+   /** Sets the seed used to randomly select neighbourhoods. Each thread uses a different seed derived from it. */
+   public void setSeed(long seed) {
+      this.seed = seed;
+   }
+
+   /** Returns {@code true} if a solution has been found. */
+   public boolean hasSolution() {
+      return incumbent != null;
+   }
+
+   /**
+    * Returns the value of the objective for the best solution found so far.
+    *
+    * @throws IllegalStateException if no solution has been found
+    */
+   public long getObjectiveValue() {
+      return getIncumbent().objectiveValue;
+   }
+
+   /**
+    * Returns the value of the given variable in the best solution found so far.
+    *
+    * @throws IllegalStateException if no solution has been found
+    */
+   public long getValue(Variable v) {
+      return getIncumbent().values[v.getId()];
+   }
+
+   private Incumbent getIncumbent() {
+      Incumbent result = incumbent;
+      if (result == null) {
+         throw new IllegalStateException("No solution found");
+      }
+      return result;
+   }
+
+   /**
+    * Performs the given number of iterations using the current thread.
+    *
+    * @return {@code true} if a solution has been found - either by this call or a previous one
+    */
+   public boolean solve(int iterations) {
+      return solve(iterations, 1);
+   }
+
+   /**
+    * Performs the given number of iterations on each of the given number of threads.
+    * <p>
+    * If no solution has been found by a previous call then a complete search is first performed, by the current thread,
+    * to find an initial solution.
+    *
+    * @return {@code true} if a solution has been found - either by this call or a previous one - or {@code false} if
+    * the model has no solutions
+    */
+   public boolean solve(int iterations, int threads) {
+      if (threads < 1) {
+         throw new IllegalArgumentException("Number of threads must be at least 1 but got: " + threads);
+      }
+      if (incumbent == null && !findInitialSolution()) {
+         return false;
+      }
+      if (threads == 1) {
+         new Worker(0, 1).run(iterations);
+         return true;
+      }
+
+      ExecutorService executor = Executors.newFixedThreadPool(threads);
+      try {
+         List<Future<?>> futures = new ArrayList<>();
+         for (int i = 0; i < threads; i++) {
+            Worker worker = new Worker(i, threads);
+            futures.add(executor.submit(() -> worker.run(iterations)));
+         }
+         for (Future<?> f : futures) {
+            f.get();
+         }
+      } catch (ExecutionException e) {
+         if (e.getCause() instanceof RuntimeException) {
+            throw (RuntimeException) e.getCause();
+         }
+         throw new IllegalStateException(e.getCause());
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+         throw new IllegalStateException(e);
+      } finally {
+         executor.shutdownNow();
+      }
+      return true;
+   }
+
+   private boolean findInitialSolution() {
+      ClpConstraintStore store = model.createStore(parameters);
+      if (!store.resolve()) {
+         return false;
+      }
+      ClpConstraintStore solution = new BruteForceSearch(store).next();
+      if (solution == null) {
+         return false;
+      }
+      offer(solution);
+      return true;
+   }
+
+   /** Replaces the best solution with the given solution, if the given solution has a lower objective value. */
+   private synchronized void offer(ClpConstraintStore solution) {
+      long objectiveValue = objective.getMin(solution);
+      if (incumbent == null || objectiveValue < incumbent.objectiveValue) {
+         long[] values = new long[model.getVariablesCount()];
+         for (int i = 0; i < values.length; i++) {
+            values[i] = solution.getValue(solution.getVariable(i));
+         }
+         incumbent = new Incumbent(values, objectiveValue);
+      }
+   }
+
+   /** Performs iterations on a single thread, using its own store and random number generator. */
+   private final class Worker {
+      private final int threadIdx;
+      private final int threads;
+      private final Random random;
+      private final ClpConstraintStore store;
+
+      Worker(int threadIdx, int threads) {
+         this.threadIdx = threadIdx;
+         this.threads = threads;
+         this.random = new Random(seed + threadIdx);
+         this.store = model.createStore(parameters);
+         if (!store.resolve()) {
+            // a solution has already been found, so the constraints of the model can be satisfied
+            throw new IllegalStateException();
+         }
+      }
+
+      void run(int iterations) {
+         for (int i = 0; i < iterations; i++) {
+            // at any one time the threads explore different kinds of neighbourhood, if there are enough kinds
+            Neighbourhood neighbourhood = neighbourhoods[(threadIdx + i * threads) % neighbourhoods.length];
+            Incumbent current = incumbent;
+            store.push();
+            try {
+               ClpConstraintStore solution = improve(neighbourhood, current);
+               if (solution != null) {
+                  offer(solution);
+               }
+            } finally {
+               store.pop();
+            }
+         }
+      }
+
+      /** Returns a solution that is better than the given solution, or {@code null} if none was found. */
+      private ClpConstraintStore improve(Neighbourhood neighbourhood, Incumbent current) {
+         if (!fix(neighbourhood, current.values)) {
+            return null;
+         }
+         if (current.objectiveValue == Long.MIN_VALUE || !store.post(new LessThanOrEqualTo(objective, new FixedValue(current.objectiveValue - 1)))) {
+            return null;
+         }
+         BruteForceSearch search = new BruteForceSearch(store);
+         search.setFailureLimit(failureLimit);
+         return search.next();
+      }
+
+      /** Fixes the variables that are not in the neighbourhood to the given values. */
+      private boolean fix(Neighbourhood neighbourhood, long[] values) {
+         if (neighbourhood == Neighbourhood.PROPAGATION_GUIDED) {
+            return fixInRandomOrder(values);
+         }
+         boolean[] relaxed = neighbourhood == Neighbourhood.RANDOM ? selectRandom() : selectConnected();
+         for (int i : candidates) {
+            if (!relaxed[i] && store.getVariable(i).setValue(store, values[i]) == ExpressionResult.INVALID) {
+               return false;
+            }
+         }
+         return store.resolve();
+      }
+
+      private boolean[] selectRandom() {
+         boolean[] relaxed = new boolean[model.getVariablesCount()];
+         int[] order = shuffle();
+         for (int i = 0; i < Math.min(neighbourhoodSize, order.length); i++) {
+            relaxed[order[i]] = true;
+         }
+         return relaxed;
+      }
+
+      private boolean[] selectConnected() {
+         boolean[] relaxed = new boolean[model.getVariablesCount()];
+         boolean[] visited = new boolean[model.constraints.length];
+         int[] order = shuffle();
+         int size = Math.min(neighbourhoodSize, order.length);
+         int ctr = 0;
+         // a variable from a different part of the graph is used whenever the part explored so far has been exhausted
+         for (int start = 0; ctr < size; start++) {
+            if (relaxed[order[start]]) {
+               continue;
+            }
+            Set<Integer> frontier = new LinkedHashSet<>();
+            frontier.add(order[start]);
+            while (ctr < size && !frontier.isEmpty()) {
+               int next = frontier.iterator().next();
+               frontier.remove(next);
+               if (!relaxed[next]) {
+                  relaxed[next] = true;
+                  ctr++;
+                  addNeighbours(next, relaxed, visited, frontier);
+               }
+            }
+         }
+         return relaxed;
+      }
+
+      private void addNeighbours(int variable, boolean[] relaxed, boolean[] visited, Set<Integer> frontier) {
+         int[] constraintIds = constraintsByVariable[variable];
+         if (constraintIds.length == 0) {
+            return;
+         }
+         // start from a random constraint, so different neighbourhoods are explored from the same variable
+         int offset = random.nextInt(constraintIds.length);
+         for (int i = 0; i < constraintIds.length; i++) {
+            int constraintId = constraintIds[(i + offset) % constraintIds.length];
+            if (!visited[constraintId]) {
+               visited[constraintId] = true;
+               for (int neighbour : variablesByConstraint[constraintId]) {
+                  if (!relaxed[neighbour] && model.aliases[neighbour] == neighbour) {
+                     frontier.add(neighbour);
+                  }
+               }
+            }
+         }
+      }
+
+      private boolean fixInRandomOrder(long[] values) {
+         int[] order = shuffle();
+         // the count of unfixed variables is maintained by the store, so does not require checking the rest of the order
+         for (int i = 0; i < order.length && store.getUnfixedCount() > neighbourhoodSize; i++) {
+            if (!store.getVariableState(order[i]).isSingleValue()) {
+               if (store.getVariable(order[i]).setValue(store, values[order[i]]) == ExpressionResult.INVALID || !store.resolve()) {
+                  return false;
+               }
+            }
+         }
+         return true;
+      }
+
+      /** Returns the indexes of the variables that can be relaxed, in a random order. */
+      private int[] shuffle() {
+         int[] order = candidates.clone();
+         for (int i = order.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int tmp = order[i];
+            order[i] = order[j];
+            order[j] = tmp;
+         }
+         return order;
+      }
+   }
+
+   /** A solution and its objective value. */
+   private static final class Incumbent {
+      private final long[] values;
+      private final long objectiveValue;
+
+      Incumbent(long[] values, long objectiveValue) {
+         this.values = values;
+         this.objectiveValue = objectiveValue;
+      }
+   }
+}
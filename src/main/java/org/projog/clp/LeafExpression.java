@@ -20,4 +20,26 @@ import java.util.function.Function;
 public interface LeafExpression extends Constraint {
    @Override
    LeafExpression replace(Function<LeafExpression, LeafExpression> function);
+
+   /**
+    * Removes every value between {@code from} and {@code to} (inclusive) from the possible values of this expression.
+    * <p>
+    * The default implementation removes each of the values in the range individually.
+    */
+   default ExpressionResult setNot(ConstraintStore s, long from, long to) {
+      long min = Math.max(from, getMin(s));
+      long max = Math.min(to, getMax(s));
+      // the check that v is not less than min stops the loop if v overflows
+      for (long v = min; v <= max && v >= min; v++) {
+         if (contains(s, v) && setNot(s, v) == ExpressionResult.INVALID) {
+            return ExpressionResult.INVALID;
+         }
+      }
+      return ExpressionResult.VALID;
+   }
+
+   @Override
+   default PropagationCost getPropagationCost() {
+      return PropagationCost.LOW;
+   }
 }
@@ -0,0 +1,490 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Searches for a solution by repeatedly altering the value of a single variable of a complete assignment.
+ * <p>
+ * Unlike {@link BruteForceSearch}, which narrows the possible values of variables until every variable has a single
+ * value, every variable is always assigned a value. Each constraint of the {@link Model} is checked by calling
+ * {@link Constraint#reify(ReadConstraintStore)} with a store where every variable has its assigned value, and a
+ * constraint that is not matched is violated. The number of violated constraints that refer to each variable is
+ * updated incrementally - when a variable is altered, only the constraints that refer to it are checked again.
+ * </p>
+ * <p>
+ * Each step selects, at random, a variable that is referred to by a violated constraint. Usually, the variable is then
+ * given the value that results in the fewest violated constraints (the min-conflicts heuristic). To avoid cycling, a
+ * variable can not be given back the value it most recently had until a number of steps (the tabu tenure) have passed -
+ * unless doing so would result in fewer violations than the best assignment found so far. Occasionally, to escape
+ * local minima, the variable is instead given a random value (a random walk).
+ * </p>
+ * <p>
+ * The constraints are enforced once, before the search starts, to restrict the values that are assigned. As the search
+ * is incomplete, failing to find a solution does not prove that there are no solutions.
+ * </p>
+ * <p>
+ * Auxiliary variables, created when eliminating common sub-expressions, are not altered directly. Instead, whenever a
+ * variable is altered, the auxiliary variables that represent sub-expressions referring to it are given the value of
+ * their sub-expression - so the constraints that define the auxiliary variables are never violated.
+ * </p>
+ */
+public final class LocalSearch {
+   /** Variables with more possible values than this have a random sample of their values considered at each step. */
+   static final int MAX_CANDIDATE_VALUES = 64;
+   private static final int DEFAULT_TABU_TENURE = 10;
+   private static final double DEFAULT_RANDOM_WALK_PROBABILITY = 0.02;
+
+   private final int[] aliases;
+   private final Constraint[] constraints;
+   /** {@code false} if enforcing the constraints before the search started proved they can not be satisfied. */
+   private final boolean consistent;
+   /** The ID of the first auxiliary variable. */
+   private final int firstAuxiliaryId;
+   private final Expression[] auxiliaryDefinitions;
+   /** Indexed by variable state, the auxiliary variables whose values depend on the variable, in order of ID. */
+   private final int[][] dependents;
+   /**
+    * Indexed by variable state, the IDs of the constraints that refer to the variable or to the auxiliary variables
+    * that depend on it.
+    */
+   private final int[][] constraintsByVariable;
+   /** Indexed by constraint ID, the searchable variable states whose alteration can alter the constraint. */
+   private final int[][] variablesByConstraint;
+   /** Indexed by variable state, the possible values of the variable - or {@code null} for aliases. */
+   private final VariableState[] domains;
+   /**
+    * Indexed by variable state, every possible value of the variable - or {@code null} if there are more than
+    * {@link #MAX_CANDIDATE_VALUES}.
+    */
+   private final long[][] candidateValues;
+   /** Indexed by variable state, {@code true} if the variable is not auxiliary and has more than one possible value. */
+   private final boolean[] searchable;
+   private final Assignment current;
+   /** Indexed by variable state, the number of violated constraints that can be altered by the variable. */
+   private final int[] conflicts;
+   private final IntSet violated;
+   /** The searchable variable states that are referred to by at least one violated constraint. */
+   private final IntSet conflicted;
+   /** Indexed by variable state, the value the variable most recently had. */
+   private final long[] tabuValues;
+   /** Indexed by variable state, the step until which the variable can not be given its tabu value. */
+   private final long[] tabuUntil;
+   private Random random = new Random();
+   private int tabuTenure = DEFAULT_TABU_TENURE;
+   private double randomWalkProbability = DEFAULT_RANDOM_WALK_PROBABILITY;
+   private boolean initialised;
+   private long[] best;
+   private int bestViolations;
+   private long steps;
+
+   /**
+    * @param model the model to find a solution for
+    * @param parameters the values of the parameters of the model (see {@link Model#createStore(long...)})
+    * @throws IllegalStateException if the variables are not sufficiently bound
+    */
+   public LocalSearch(Model model, long... parameters) {
+      ClpConstraintStore store = model.createStore(parameters);
+      this.consistent = store.resolve();
+      this.aliases = model.aliases;
+      this.constraints = model.constraints;
+      int variableCtr = model.variableCtr;
+      this.firstAuxiliaryId = variableCtr - model.auxiliaryVariableCtr;
+      this.auxiliaryDefinitions = model.auxiliaryDefinitions;
+      this.dependents = getDependents(variableCtr);
+      this.constraintsByVariable = model.getConstraintIdsByVariable();
+      for (int i = 0; i < firstAuxiliaryId; i++) {
+         if (dependents[i].length != 0) {
+            Set<Integer> constraintIds = new TreeSet<>();
+            for (int variable : withDependents(i)) {
+               for (int constraintId : constraintsByVariable[variable]) {
+                  constraintIds.add(constraintId);
+               }
+            }
+            constraintsByVariable[i] = constraintIds.stream().mapToInt(Integer::intValue).toArray();
+         }
+      }
+
+      this.domains = new VariableState[variableCtr];
+      this.candidateValues = new long[variableCtr][];
+      this.searchable = new boolean[variableCtr];
+      for (int i = 0; consistent && i < variableCtr; i++) {
+         if (aliases[i] == i) {
+            VariableState state = store.getVariableState(i);
+            domains[i] = state;
+            searchable[i] = i < firstAuxiliaryId && !state.isSingleValue();
+            long span = state.getMax() - state.getMin();
+            if (searchable[i] && (span < 0 || span >= Integer.MAX_VALUE)) {
+               throw new IllegalStateException("Variables not sufficiently bound. Too many possibilities.");
+            }
+            if (searchable[i] && state.count() <= MAX_CANDIDATE_VALUES) {
+               candidateValues[i] = new long[(int) state.count()];
+               Possibilities p = state.getPossibilities();
+               for (int j = 0; p.hasNext(); j++) {
+                  candidateValues[i][j] = p.next();
+               }
+            }
+         }
+      }
+
+      int[] variableCounts = new int[constraints.length];
+      for (int i = 0; i < firstAuxiliaryId; i++) {
+         if (searchable[i]) {
+            for (int constraintId : constraintsByVariable[i]) {
+               variableCounts[constraintId]++;
+            }
+         }
+      }
+      this.variablesByConstraint = new int[constraints.length][];
+      for (int constraintId = 0; constraintId < constraints.length; constraintId++) {
+         variablesByConstraint[constraintId] = new int[variableCounts[constraintId]];
+      }
+      Arrays.fill(variableCounts, 0);
+      for (int i = 0; i < firstAuxiliaryId; i++) {
+         if (searchable[i]) {
+            for (int constraintId : constraintsByVariable[i]) {
+               variablesByConstraint[constraintId][variableCounts[constraintId]++] = i;
+            }
+         }
+      }
+
+      this.current = new Assignment(aliases, new long[variableCtr]);
+      this.conflicts = new int[variableCtr];
+      this.violated = new IntSet(constraints.length);
+      this.conflicted = new IntSet(variableCtr);
+      this.tabuValues = new long[variableCtr];
+      this.tabuUntil = new long[variableCtr];
+   }
+
+   /** Returns, indexed by variable state, the auxiliary variables whose values depend on the variable. */
+   private int[][] getDependents(int variableCtr) {
+      List<List<Integer>> result = new ArrayList<>();
+      for (int i = 0; i < variableCtr; i++) {
+         result.add(new ArrayList<>());
+      }
+      // as definitions only refer to auxiliary variables created before them, the sources of those are already known
+      List<Set<Integer>> sources = new ArrayList<>();
+      for (int i = 0; i < auxiliaryDefinitions.length; i++) {
+         Set<Integer> s = new TreeSet<>();
+         auxiliaryDefinitions[i].walk(e -> {
+            if (e instanceof Variable) {
+               int id = aliases[((Variable) e).getId()];
+               if (id < firstAuxiliaryId) {
+                  s.add(id);
+               } else {
+                  s.addAll(sources.get(id - firstAuxiliaryId));
+               }
+            }
+         });
+         sources.add(s);
+         for (int source : s) {
+            result.get(source).add(firstAuxiliaryId + i);
+         }
+      }
+      int[][] dependents = new int[variableCtr][];
+      for (int i = 0; i < variableCtr; i++) {
+         dependents[i] = result.get(i).stream().mapToInt(Integer::intValue).toArray();
+      }
+      return dependents;
+   }
+
+   /** Returns the given variable state followed by the auxiliary variables that depend on it. */
+   private int[] withDependents(int variable) {
+      int[] result = new int[dependents[variable].length + 1];
+      result[0] = variable;
+      System.arraycopy(dependents[variable], 0, result, 1, dependents[variable].length);
+      return result;
+   }
+
+   /** Sets the value of the given variable, and of the auxiliary variables that depend on it. */
+   private void assign(int variable, long value) {
+      current.values[variable] = value;
+      for (int auxiliary : dependents[variable]) {
+         current.values[auxiliary] = auxiliaryDefinitions[auxiliary - firstAuxiliaryId].getMin(current);
+      }
+   }
+
+   /** Sets the seed of the random number generator used to select variables and values. */
+   public void setSeed(long seed) {
+      this.random = new Random(seed);
+   }
+
+   /** Sets the number of steps during which a variable can not be given back the value it most recently had. */
+   public void setTabuTenure(int tabuTenure) {
+      if (tabuTenure < 0) {
+         throw new IllegalArgumentException("Tabu tenure must not be negative but got: " + tabuTenure);
+      }
+      this.tabuTenure = tabuTenure;
+   }
+
+   /** Sets the probability that a step gives the selected variable a random value rather than the best value. */
+   public void setRandomWalkProbability(double randomWalkProbability) {
+      if (randomWalkProbability < 0 || randomWalkProbability > 1) {
+         throw new IllegalArgumentException("Probability must be between 0 and 1 but got: " + randomWalkProbability);
+      }
+      this.randomWalkProbability = randomWalkProbability;
+   }
+
+   /**
+    * Performs steps until either an assignment that violates no constraints is found or the given number of steps have
+    * been performed.
+    * <p>
+    * The first call assigns a random value to every variable. Subsequent calls continue from the current assignment.
+    *
+    * @return {@code true} if an assignment that violates no constraints has been found
+    */
+   public boolean solve(long maxSteps) {
+      if (!consistent) {
+         return false;
+      }
+      if (!initialised) {
+         initialise();
+      }
+      // stop if there are no variables that could be altered to reduce the number of violations
+      for (long i = 0; i < maxSteps && bestViolations > 0 && conflicted.size() > 0; i++) {
+         step();
+      }
+      return bestViolations == 0;
+   }
+
+   /** Returns the number of steps that have been performed. */
+   public long getSteps() {
+      return steps;
+   }
+
+   /**
+    * Returns the number of constraints violated by the best assignment found so far.
+    *
+    * @throws IllegalStateException if {@link #solve(long)} has not been called, or the constraints can not be satisfied
+    */
+   public int getViolationCount() {
+      getBest();
+      return bestViolations;
+   }
+
+   /**
+    * Returns the value of the given variable in the best assignment found so far.
+    *
+    * @throws IllegalStateException if {@link #solve(long)} has not been called, or the constraints can not be satisfied
+    */
+   public long getValue(Variable v) {
+      return getBest()[aliases[v.getId()]];
+   }
+
+   private long[] getBest() {
+      if (best == null) {
+         throw new IllegalStateException("No assignment");
+      }
+      return best;
+   }
+
+   private void initialise() {
+      initialised = true;
+      for (int i = 0; i < firstAuxiliaryId; i++) {
+         if (domains[i] != null) {
+            current.values[i] = searchable[i] ? getRandomValue(i) : domains[i].getMin();
+         }
+      }
+      for (int i = 0; i < auxiliaryDefinitions.length; i++) {
+         current.values[firstAuxiliaryId + i] = auxiliaryDefinitions[i].getMin(current);
+      }
+      for (int constraintId = 0; constraintId < constraints.length; constraintId++) {
+         if (isViolated(constraintId)) {
+            setViolated(constraintId, true);
+         }
+      }
+      best = current.values.clone();
+      bestViolations = violated.size();
+   }
+
+   private void step() {
+      steps++;
+      int variable = conflicted.get(random.nextInt(conflicted.size()));
+      long value = random.nextDouble() < randomWalkProbability ? getRandomValue(variable) : getBestValue(variable);
+      if (value == current.values[variable]) {
+         return;
+      }
+
+      tabuValues[variable] = current.values[variable];
+      tabuUntil[variable] = steps + tabuTenure;
+      assign(variable, value);
+      for (int constraintId : constraintsByVariable[variable]) {
+         boolean isViolated = isViolated(constraintId);
+         if (isViolated != violated.contains(constraintId)) {
+            setViolated(constraintId, isViolated);
+         }
+      }
+
+      if (violated.size() < bestViolations) {
+         best = current.values.clone();
+         bestViolations = violated.size();
+      }
+   }
+
+   /**
+    * Returns the value that results in the fewest violated constraints if given to the given variable - ties are broken
+    * at random. Returns the current value if every other value is tabu.
+    */
+   private long getBestValue(int variable) {
+      long original = current.values[variable];
+      int originalViolations = countViolations(variable);
+      long result = original;
+      int bestDelta = Integer.MAX_VALUE;
+      int ties = 0;
+      long[] values = candidateValues[variable];
+      int candidateCtr = values == null ? MAX_CANDIDATE_VALUES : values.length;
+      for (int i = 0; i < candidateCtr; i++) {
+         long value = values == null ? getRandomValue(variable) : values[i];
+         if (value == original) {
+            continue;
+         }
+         assign(variable, value);
+         int delta = countViolations(variable) - originalViolations;
+         boolean tabu = value == tabuValues[variable] && steps <= tabuUntil[variable];
+         // aspiration - a tabu value is allowed if it results in the best assignment found so far
+         if (tabu && violated.size() + delta >= bestViolations) {
+            continue;
+         }
+         if (delta < bestDelta) {
+            result = value;
+            bestDelta = delta;
+            ties = 1;
+         } else if (delta == bestDelta && random.nextInt(++ties) == 0) {
+            result = value;
+         }
+      }
+      assign(variable, original);
+      return result;
+   }
+
+   /** Returns the number of constraints, that can be altered by the given variable, violated by the current assignment. */
+   private int countViolations(int variable) {
+      int ctr = 0;
+      for (int constraintId : constraintsByVariable[variable]) {
+         if (isViolated(constraintId)) {
+            ctr++;
+         }
+      }
+      return ctr;
+   }
+
+   private boolean isViolated(int constraintId) {
+      return constraints[constraintId].reify(current) != ConstraintResult.MATCHED;
+   }
+
+   private void setViolated(int constraintId, boolean isViolated) {
+      if (isViolated) {
+         violated.add(constraintId);
+      } else {
+         violated.remove(constraintId);
+      }
+      for (int variable : variablesByConstraint[constraintId]) {
+         conflicts[variable] += isViolated ? 1 : -1;
+         if (conflicts[variable] == 0) {
+            conflicted.remove(variable);
+         } else {
+            conflicted.add(variable);
+         }
+      }
+   }
+
+   private long getRandomValue(int variable) {
+      long[] values = candidateValues[variable];
+      if (values != null) {
+         return values[random.nextInt(values.length)];
+      }
+      VariableState domain = domains[variable];
+      int span = (int) (domain.getMax() - domain.getMin()) + 1;
+      for (int i = 0; i < MAX_CANDIDATE_VALUES; i++) {
+         long value = domain.getMin() + random.nextInt(span);
+         if (domain.contains(value)) {
+            return value;
+         }
+      }
+      return domain.getMin();
+   }
+
+   /** A store where every variable has a single value. */
+   private static final class Assignment implements ReadConstraintStore {
+      private final int[] aliases;
+      /** Indexed by variable state. */
+      private final long[] values;
+
+      Assignment(int[] aliases, long[] values) {
+         this.aliases = aliases;
+         this.values = values;
+      }
+
+      @Override
+      public long getMin(Expression id) {
+         return values[aliases[((Variable) id).getId()]];
+      }
+
+      @Override
+      public long getMax(Expression id) {
+         return values[aliases[((Variable) id).getId()]];
+      }
+   }
+
+   /** A set of integers, between zero and a fixed maximum, where any element can be selected in constant time. */
+   private static final class IntSet {
+      private final int[] elements;
+      /** Indexed by integer, the position of the integer in {@link #elements}, or -1 if not in the set. */
+      private final int[] positions;
+      private int size;
+
+      IntSet(int capacity) {
+         this.elements = new int[capacity];
+         this.positions = new int[capacity];
+         Arrays.fill(positions, -1);
+      }
+
+      int size() {
+         return size;
+      }
+
+      int get(int idx) {
+         return elements[idx];
+      }
+
+      boolean contains(int i) {
+         return positions[i] != -1;
+      }
+
+      void add(int i) {
+         if (positions[i] == -1) {
+            elements[size] = i;
+            positions[i] = size++;
+         }
+      }
+
+      void remove(int i) {
+         int position = positions[i];
+         if (position != -1) {
+            int last = elements[--size];
+            elements[position] = last;
+            positions[last] = position;
+            positions[i] = -1;
+         }
+      }
+   }
+}
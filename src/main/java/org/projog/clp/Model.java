@@ -0,0 +1,271 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+
+import org.projog.clp.math.LinearExpression;
+import org.projog.clp.math.VariableView;
+
+/**
+ * The compiled variables and constraints of a problem domain.
+ * <p>
+ * Created by {@link ClpConstraintStore.Builder#buildModel()}. The rewriting of constraints specified by the builder,
+ * and the indexing of constraints by the variables they refer to, is done once when the model is created. A model is
+ * never altered after it has been created - the possible values of its variables, and which of its constraints still
+ * need to be enforced, are recorded by the {@link ClpConstraintStore}s returned by {@link #createStore()}. As a
+ * result a single model can be shared by any number of threads, each creating and searching their own stores without
+ * any locking.
+ * </p>
+ * <p>
+ * A store and the copies made of it while it is being searched share data with each other, so they should only be
+ * used by a single thread.
+ * </p>
+ */
+public final class Model {
+   final int variableCtr;
+   /** The number of variables, at the end of {@link #variables}, that were created to represent common sub-expressions. */
+   final int auxiliaryVariableCtr;
+   final Variable[] variables;
+   /** Indexed by position in the auxiliary variables, the sub-expression each auxiliary variable represents. */
+   final Expression[] auxiliaryDefinitions;
+   /** Indexed by variable ID, the ID of the variable whose state is used by each variable. */
+   final int[] aliases;
+   /** The variables whose values are specified by the arguments of {@link #createStore(long...)}. */
+   private final Variable[] parameters;
+   final Constraint[] constraints;
+   /** The constraints to enforce again when a variable raises an event, indexed by event and then variable. */
+   final Map<VariableEvent, Map<Variable, List<Integer>>> constraintsByVariable;
+   /** An empty queue, copied by each store created from this model. */
+   final ConstraintQueue constraintQueue;
+   /** The number of {@link CachedExpression}s contained in {@link #constraints}. */
+   final int cachedExpressionCtr;
+   /** Indexed by variable ID, the slots of the {@link CachedExpression}s whose bounds depend on each variable's state. */
+   final int[][] cachedExpressionsByVariable;
+
+   Model(ClpConstraintStore.Builder b) {
+      List<Constraint> builderConstraints = b.constraints;
+      if (b.createViews) {
+         builderConstraints = rewrite(builderConstraints, VariableView::create);
+      }
+      if (b.compileExpressions) {
+         builderConstraints = rewrite(builderConstraints, LinearExpression::compile);
+      }
+      List<Variable> builderVariables = b.variables;
+      List<Expression> definitions = new ArrayList<>();
+      if (b.eliminateCommonSubexpressions) {
+         CommonSubexpressions cse = new CommonSubexpressions(builderConstraints, b.variables.size());
+         builderConstraints = cse.getConstraints();
+         builderVariables = new ArrayList<>(b.variables);
+         builderVariables.addAll(cse.getAuxiliaryVariables());
+         definitions = cse.getDefinitions();
+      }
+      this.auxiliaryDefinitions = definitions.toArray(new Expression[definitions.size()]);
+      int[] slots = new int[1];
+      if (b.cacheBounds) {
+         builderConstraints = rewrite(builderConstraints, e -> e instanceof LeafExpression ? null : new CachedExpression(slots[0]++, e));
+      }
+      this.cachedExpressionCtr = slots[0];
+
+      this.variableCtr = builderVariables.size();
+      this.auxiliaryVariableCtr = variableCtr - b.variables.size();
+      this.variables = builderVariables.toArray(new Variable[variableCtr]);
+      this.aliases = new int[variableCtr];
+      for (int i = 0; i < variableCtr; i++) {
+         aliases[i] = i < b.variables.size() ? b.findAlias(i) : i;
+      }
+      this.parameters = b.parameters.toArray(new Variable[b.parameters.size()]);
+
+      this.constraints = builderConstraints.toArray(new Constraint[builderConstraints.size()]);
+      this.constraintsByVariable = index(variables, aliases, constraints);
+      this.constraintQueue = new ConstraintQueue(b.scheduling, getPropagationCosts(constraints));
+      this.cachedExpressionsByVariable = indexCachedExpressions(variableCtr, aliases, constraints);
+   }
+
+   /** Creates a model with the same variables as {@code original} but with the given constraints. */
+   Model(Model original, List<Constraint> constraints) {
+      this.variableCtr = original.variableCtr;
+      this.auxiliaryVariableCtr = original.auxiliaryVariableCtr;
+      this.variables = original.variables;
+      this.auxiliaryDefinitions = original.auxiliaryDefinitions;
+      this.aliases = original.aliases;
+      this.parameters = original.parameters;
+      this.constraints = constraints.toArray(new Constraint[constraints.size()]);
+      this.constraintsByVariable = index(variables, aliases, this.constraints);
+      this.constraintQueue = new ConstraintQueue(original.constraintQueue.getScheduling(), getPropagationCosts(this.constraints));
+      this.cachedExpressionCtr = original.cachedExpressionCtr;
+      this.cachedExpressionsByVariable = indexCachedExpressions(variableCtr, aliases, this.constraints);
+   }
+
+   /**
+    * Returns a new store where no restrictions have yet been applied to the variables of this model.
+    * <p>
+    * Every constraint is scheduled to be enforced when {@link ClpConstraintStore#resolve()} is first called. The
+    * returned store does not share any modifiable data with any other store created by this method.
+    *
+    * @throws IllegalStateException if this model has parameters - use {@link #createStore(long...)} instead
+    */
+   public ClpConstraintStore createStore() {
+      if (parameters.length != 0) {
+         throw new IllegalStateException("Expected values for " + parameters.length + " parameters");
+      }
+      return new ClpConstraintStore(this);
+   }
+
+   /**
+    * Returns a new store where each parameter of this model is set to the corresponding element of the given values.
+    * <p>
+    * Other than the parameters, no restrictions have yet been applied to the variables of this model. Every constraint
+    * is scheduled to be enforced when {@link ClpConstraintStore#resolve()} is first called - if the values of the
+    * parameters do not satisfy the constraints then {@code resolve()} will return {@code false}.
+    *
+    * @param values the values of the parameters, in the order the parameters were created by
+    * {@link ClpConstraintStore.Builder#createParameter()}
+    * @throws IllegalArgumentException if the number of values does not match the number of parameters, or if
+    * parameters that have been declared equal to each other are given different values
+    */
+   public ClpConstraintStore createStore(long... values) {
+      if (values.length != parameters.length) {
+         throw new IllegalArgumentException("Expected " + parameters.length + " values but got " + values.length);
+      }
+      ClpConstraintStore s = new ClpConstraintStore(this);
+      for (int i = 0; i < values.length; i++) {
+         if (parameters[i].setValue(s, values[i]) == ExpressionResult.INVALID) {
+            throw new IllegalArgumentException("Could not set " + parameters[i] + " to " + values[i]);
+         }
+      }
+      return s;
+   }
+
+   /** Returns the number of values that need to be provided to {@link #createStore(long...)}. */
+   public int getParametersCount() {
+      return parameters.length;
+   }
+
+   /** Returns the number of variables created by {@link ClpConstraintStore.Builder#createVariable()}. */
+   public int getVariablesCount() {
+      return variableCtr - auxiliaryVariableCtr;
+   }
+
+   public Variable getVariable(int idx) {
+      return variables[idx];
+   }
+
+   /**
+    * Returns, indexed by variable state, the IDs of the constraints that subscribe to any event of each variable - in
+    * ascending order and without duplicates.
+    */
+   int[][] getConstraintIdsByVariable() {
+      Map<Variable, Set<Integer>> union = new HashMap<>();
+      for (Map<Variable, List<Integer>> index : constraintsByVariable.values()) {
+         index.forEach((v, constraintIds) -> union.computeIfAbsent(v, k -> new TreeSet<>()).addAll(constraintIds));
+      }
+      int[][] result = new int[variableCtr][];
+      for (int i = 0; i < variableCtr; i++) {
+         Set<Integer> constraintIds = union.get(variables[i]);
+         result[i] = constraintIds == null ? new int[0] : constraintIds.stream().mapToInt(Integer::intValue).toArray();
+      }
+      return result;
+   }
+
+   private static List<Constraint> rewrite(List<Constraint> constraints, Function<Expression, Expression> function) {
+      List<Constraint> result = new ArrayList<>(constraints.size());
+      for (Constraint c : constraints) {
+         result.add(c.rewrite(function));
+      }
+      return result;
+   }
+
+   private static PropagationCost[] getPropagationCosts(Constraint[] constraints) {
+      PropagationCost[] costs = new PropagationCost[constraints.length];
+      for (int i = 0; i < constraints.length; i++) {
+         costs[i] = constraints[i].getPropagationCost();
+      }
+      return costs;
+   }
+
+   /**
+    * Returns, for each event, the IDs of the constraints that have subscribed to that event of each of the variables
+    * they refer to.
+    */
+   private static Map<VariableEvent, Map<Variable, List<Integer>>> index(Variable[] variables, int[] aliases, Constraint[] constraints) {
+      Map<VariableEvent, Map<Variable, List<Integer>>> constraintsByVariable = new EnumMap<>(VariableEvent.class);
+      for (int constraintId = 0; constraintId < constraints.length; constraintId++) {
+         index(constraintsByVariable, getRepresentatives(variables, aliases, constraints[constraintId]), constraints[constraintId], constraintId);
+      }
+      return constraintsByVariable;
+   }
+
+   /**
+    * Adds the given constraint ID to the lists of constraints associated with the given variables, for each of the
+    * events the constraint has subscribed to.
+    */
+   static void index(Map<VariableEvent, Map<Variable, List<Integer>>> constraintsByVariable, Set<Variable> representatives, Constraint c, int constraintId) {
+      for (VariableEvent event : c.getSubscribedEvents()) {
+         Map<Variable, List<Integer>> index = constraintsByVariable.computeIfAbsent(event, k -> new HashMap<>());
+         for (Variable v : representatives) {
+            index.computeIfAbsent(v, k -> new ArrayList<>()).add(constraintId);
+         }
+      }
+   }
+
+   /**
+    * Returns, indexed by the ID of each variable that has a state, the slots of the cached expressions that refer to
+    * that variable or to a variable that uses its state.
+    */
+   private static int[][] indexCachedExpressions(int variableCtr, int[] aliases, Constraint[] constraints) {
+      List<Set<Integer>> slots = new ArrayList<>();
+      for (int i = 0; i < variableCtr; i++) {
+         slots.add(new HashSet<>());
+      }
+      for (Constraint c : constraints) {
+         c.walk(e -> {
+            if (e instanceof CachedExpression) {
+               int slot = ((CachedExpression) e).getSlot();
+               ((CachedExpression) e).getExpression().walk(v -> {
+                  if (v instanceof Variable) {
+                     slots.get(aliases[((Variable) v).getId()]).add(slot);
+                  }
+               });
+            }
+         });
+      }
+      int[][] result = new int[variableCtr][];
+      for (int i = 0; i < variableCtr; i++) {
+         result[i] = slots.get(i).stream().mapToInt(Integer::intValue).toArray();
+      }
+      return result;
+   }
+
+   /** Returns the variables whose states are used by the variables that the given constraint refers to. */
+   static Set<Variable> getRepresentatives(Variable[] variables, int[] aliases, Constraint c) {
+      Set<Variable> representatives = new HashSet<>();
+      c.walk(v -> {
+         if (v instanceof Variable) {
+            representatives.add(variables[aliases[((Variable) v).getId()]]);
+         }
+      });
+      return representatives;
+   }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+/**
+ * How {@link LargeNeighbourhoodSearch} selects the variables that are relaxed - i.e. not fixed to the values of the
+ * best solution found so far - when searching for a better solution.
+ */
+public enum Neighbourhood {
+   /** Variables are selected at random. */
+   RANDOM,
+   /**
+    * Variables are fixed in a random order, propagating after each, until no more than the required number of variables
+    * are left with more than one possible value. Variables whose values are implied by those already fixed do not need
+    * to be fixed themselves, so the relaxed variables tend to be those that are least constrained by the others.
+    */
+   PROPAGATION_GUIDED,
+   /**
+    * Starting from a random variable, variables are selected in breadth-first order of the graph where variables are
+    * connected if they are both referred to by the same constraint. The relaxed variables tend to be closely related,
+    * so can be altered together without violating the constraints that connect them to the fixed variables.
+    */
+   CONSTRAINT_GRAPH
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The constraints added to a {@link ClpConstraintStore} by {@link ClpConstraintStore#post(Constraint)}.
+ * <p>
+ * The IDs of posted constraints follow on from the IDs of the constraints of the store's {@link Model}. Constraints are
+ * only ever removed in the reverse order to how they were added, which is all that is needed to undo the constraints
+ * posted since a checkpoint was created by {@link ClpConstraintStore#push()}.
+ * </p>
+ */
+final class PostedConstraints {
+   private final int firstId;
+   private final List<Constraint> constraints;
+   /** Indexed by position in {@link #constraints}, the constraints that have been proven to always be satisfied. */
+   private final BitSet inactive;
+   /** The constraints to enforce again when a variable raises an event, indexed by event and then variable. */
+   private final Map<VariableEvent, Map<Variable, List<Integer>>> constraintsByVariable;
+
+   /** @param firstId the ID to use for the first constraint that is added */
+   PostedConstraints(int firstId) {
+      this.firstId = firstId;
+      this.constraints = new ArrayList<>();
+      this.inactive = new BitSet();
+      this.constraintsByVariable = new EnumMap<>(VariableEvent.class);
+   }
+
+   private PostedConstraints(PostedConstraints original) {
+      this.firstId = original.firstId;
+      this.constraints = new ArrayList<>(original.constraints);
+      this.inactive = (BitSet) original.inactive.clone();
+      this.constraintsByVariable = new EnumMap<>(VariableEvent.class);
+      for (Map.Entry<VariableEvent, Map<Variable, List<Integer>>> e : original.constraintsByVariable.entrySet()) {
+         Map<Variable, List<Integer>> index = new HashMap<>();
+         for (Map.Entry<Variable, List<Integer>> v : e.getValue().entrySet()) {
+            index.put(v.getKey(), new ArrayList<>(v.getValue()));
+         }
+         constraintsByVariable.put(e.getKey(), index);
+      }
+   }
+
+   PostedConstraints copy() {
+      return new PostedConstraints(this);
+   }
+
+   /** Returns the number of constraints that have been added. */
+   int size() {
+      return constraints.size();
+   }
+
+   /**
+    * Adds the given constraint.
+    *
+    * @param variables indexed by variable ID, the variables of the store
+    * @param aliases indexed by variable ID, the ID of the variable whose state is used by each variable
+    * @return the ID of the constraint
+    */
+   int add(Constraint c, Variable[] variables, int[] aliases) {
+      int constraintId = firstId + constraints.size();
+      constraints.add(c);
+      Model.index(constraintsByVariable, Model.getRepresentatives(variables, aliases, c), c, constraintId);
+      return constraintId;
+   }
+
+   /** Removes the most recently added constraint. */
+   void removeLast(Variable[] variables, int[] aliases) {
+      int position = constraints.size() - 1;
+      Constraint c = constraints.remove(position);
+      inactive.clear(position);
+      for (VariableEvent event : c.getSubscribedEvents()) {
+         Map<Variable, List<Integer>> index = constraintsByVariable.get(event);
+         for (Variable v : Model.getRepresentatives(variables, aliases, c)) {
+            // as constraints are removed in reverse order, the constraint is the last element of each list
+            List<Integer> list = index.get(v);
+            list.remove(list.size() - 1);
+         }
+      }
+   }
+
+   Constraint get(int constraintId) {
+      return constraints.get(constraintId - firstId);
+   }
+
+   boolean isActive(int constraintId) {
+      return !inactive.get(constraintId - firstId);
+   }
+
+   void setActive(int constraintId, boolean active) {
+      inactive.set(constraintId - firstId, !active);
+   }
+
+   /** Returns the IDs of the constraints that have subscribed to the given event of the given variable. */
+   List<Integer> getConstraints(VariableEvent event, Variable v) {
+      Map<Variable, List<Integer>> index = constraintsByVariable.get(event);
+      List<Integer> list = index == null ? null : index.get(v);
+      return list == null ? Collections.emptyList() : list;
+   }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+/**
+ * The outcome of simplifying a {@code ClpConstraintStore} before a search is started.
+ *
+ * @see ClpConstraintStore#presolve()
+ */
+public final class PresolveResult {
+   private static final PresolveResult FAILED = new PresolveResult(null, 0, 0, 0, 0);
+
+   private final ClpConstraintStore constraintStore;
+   private final int foldedConstraints;
+   private final int entailedConstraints;
+   private final int boundedVariables;
+   private final int substitutedVariables;
+
+   PresolveResult(ClpConstraintStore constraintStore, int foldedConstraints, int entailedConstraints, int boundedVariables, int substitutedVariables) {
+      this.constraintStore = constraintStore;
+      this.foldedConstraints = foldedConstraints;
+      this.entailedConstraints = entailedConstraints;
+      this.boundedVariables = boundedVariables;
+      this.substitutedVariables = substitutedVariables;
+   }
+
+   static PresolveResult failed() {
+      return FAILED;
+   }
+
+   /** Returns {@code true} if it was proven that the constraints cannot be satisfied. */
+   public boolean isFailed() {
+      return constraintStore == null;
+   }
+
+   /**
+    * Returns the simplified store.
+    *
+    * @throws IllegalStateException if the constraints cannot be satisfied
+    */
+   public ClpConstraintStore getConstraintStore() {
+      if (isFailed()) {
+         throw new IllegalStateException("Constraints cannot be satisfied");
+      }
+      return constraintStore;
+   }
+
+   /** Returns the number of constraints that were removed as they did not refer to any variables. */
+   public int getFoldedConstraints() {
+      return foldedConstraints;
+   }
+
+   /** Returns the number of constraints that were removed as they were proven to always be satisfied. */
+   public int getEntailedConstraints() {
+      return entailedConstraints;
+   }
+
+   /** Returns the number of variables whose minimum or maximum values were restricted. */
+   public int getBoundedVariables() {
+      return boundedVariables;
+   }
+
+   /** Returns the number of variables that were replaced by their value in the remaining constraints. */
+   public int getSubstitutedVariables() {
+      return substitutedVariables;
+   }
+
+   @Override
+   public String toString() {
+      return "PresolveResult [failed=" + isFailed() + ", foldedConstraints=" + foldedConstraints + ", entailedConstraints=" + entailedConstraints + ", boundedVariables="
+             + boundedVariables + ", substitutedVariables=" + substitutedVariables + "]";
+   }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+/**
+ * An estimate of how expensive it is to enforce a {@link Constraint}.
+ * <p>
+ * When {@link Scheduling#PRIORITY} is used then cheaper constraints are enforced before more expensive ones, so the
+ * restrictions made by cheap constraints are already in place when the expensive ones are run.
+ *
+ * @see Constraint#getPropagationCost()
+ */
+public enum PropagationCost {
+   /** e.g. a comparison between two variables. */
+   LOW,
+   /** e.g. a constraint containing arithmetic expressions. */
+   MEDIUM,
+   /** e.g. a global constraint over a collection of variables. */
+   HIGH;
+
+   /** Returns {@link #LOW} if all the given expressions are {@code LeafExpression}s, else {@link #MEDIUM}. */
+   public static PropagationCost ofArguments(Expression... arguments) {
+      for (Expression e : arguments) {
+         if (!(e instanceof LeafExpression)) {
+            return MEDIUM;
+         }
+      }
+      return LOW;
+   }
+
+   /** Returns the highest cost of the given constraints. */
+   public static PropagationCost max(Constraint... constraints) {
+      PropagationCost max = LOW;
+      for (Constraint c : constraints) {
+         PropagationCost cost = c.getPropagationCost();
+         if (cost.compareTo(max) > 0) {
+            max = cost;
+         }
+      }
+      return max;
+   }
+}
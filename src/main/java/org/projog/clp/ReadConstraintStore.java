@@ -19,4 +19,14 @@ public interface ReadConstraintStore {
    long getMin(Expression id);
 
    long getMax(Expression id);
+
+   /**
+    * Returns {@code true} if the given value is one of the possible values of the given {@code Expression}.
+    * <p>
+    * Unlike {@link #getMin(Expression)} and {@link #getMax(Expression)} this takes account of any values between the
+    * minimum and maximum that have been excluded.
+    */
+   default boolean contains(Expression id, long value) {
+      return value >= getMin(id) && value <= getMax(id);
+   }
 }
@@ -0,0 +1,33 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+/**
+ * The order in which {@link ClpConstraintStore#resolve()} enforces constraints that are waiting to be enforced.
+ *
+ * @see ClpConstraintStore.Builder#setScheduling(Scheduling)
+ */
+public enum Scheduling {
+   /** Constraints are enforced in the order they were scheduled. */
+   FIFO,
+   /** The most recently scheduled constraint is enforced first. */
+   LIFO,
+   /**
+    * Constraints with a lower {@link PropagationCost} are enforced first. Constraints with the same cost are enforced in
+    * the order they were scheduled.
+    */
+   PRIORITY
+}
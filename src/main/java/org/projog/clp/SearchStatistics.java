@@ -0,0 +1,171 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import java.util.Arrays;
+
+/**
+ * What has been learnt, while searching a model, about which variables should be selected first.
+ * <p>
+ * Records how many times enforcing each constraint has failed, how often the possible values of each variable have
+ * been reduced and how much assigning a value to each variable has reduced the size of the search space. The
+ * statistics are kept separately from the {@link BruteForceSearch} that gathers them - so, when a search is abandoned
+ * and restarted, passing the same statistics to the new search means it continues from what the previous search learnt.
+ * </p>
+ * <p>
+ * Not thread-safe - searches run concurrently should each use their own statistics.
+ * </p>
+ *
+ * @see VariableSelection
+ */
+public final class SearchStatistics {
+   /** How much the activity of every variable is reduced by each time a value is assigned. */
+   private static final double ACTIVITY_DECAY = 0.95;
+   /** When an activity exceeds this value every activity is scaled down, to avoid them overflowing. */
+   private static final double MAX_ACTIVITY = 1e100;
+   /** How much weight each new observation has when updating the impact of a variable. */
+   private static final double IMPACT_WEIGHT = 0.25;
+
+   private final Model model;
+   /** Indexed by variable state, the IDs of the constraints of the model that refer to the variable. */
+   private final int[][] constraintsByVariable;
+   /** Indexed by constraint ID, one plus the number of times enforcing the constraint has failed. */
+   private final double[] weights;
+   /** Indexed by variable state, a decaying count of the number of times the possible values have been reduced. */
+   private final double[] activities;
+   /** Indexed by variable state, a moving average of the proportion of the search space removed by assignments. */
+   private final double[] impacts;
+   /** The amount the activity of a variable is increased by - increased, rather than decaying every activity. */
+   private double activityIncrement = 1;
+
+   public SearchStatistics(Model model) {
+      this.model = model;
+      int variableCtr = model.variableCtr;
+      this.constraintsByVariable = model.getConstraintIdsByVariable();
+      this.weights = new double[model.constraints.length];
+      Arrays.fill(weights, 1);
+      this.activities = new double[variableCtr];
+      this.impacts = new double[variableCtr];
+      Arrays.fill(impacts, 1);
+   }
+
+   /** Returns the model these statistics were created for. */
+   public Model getModel() {
+      return model;
+   }
+
+   /** Returns the weight of the constraint with the given ID - one plus the number of times enforcing it has failed. */
+   public double getWeight(int constraintId) {
+      return weights[constraintId];
+   }
+
+   /** Returns the activity of the given variable, relative to the activities of the other variables. */
+   public double getActivity(Variable v) {
+      return activities[model.aliases[v.getId()]];
+   }
+
+   /** Returns the average proportion of the search space that has been removed by assigning a value to the given variable. */
+   public double getImpact(Variable v) {
+      return impacts[model.aliases[v.getId()]];
+   }
+
+   /** Called when enforcing a constraint fails. Constraints added by {@link ClpConstraintStore#post(Constraint)} are ignored. */
+   void recordFailure(int constraintId) {
+      if (constraintId < weights.length) {
+         weights[constraintId]++;
+      }
+   }
+
+   /** Called when the possible values of the given variable state are reduced. */
+   void recordReduction(int stateId) {
+      if ((activities[stateId] += activityIncrement) > MAX_ACTIVITY) {
+         for (int i = 0; i < activities.length; i++) {
+            activities[i] /= MAX_ACTIVITY;
+         }
+         activityIncrement /= MAX_ACTIVITY;
+      }
+   }
+
+   /** Called when a value is assigned, so that older reductions count less than newer ones. */
+   void decayActivities() {
+      activityIncrement /= ACTIVITY_DECAY;
+   }
+
+   /**
+    * Called after a value has been assigned to the given variable.
+    *
+    * @param impact the proportion of the search space that was removed - 1 if assigning the value failed
+    */
+   void recordImpact(Variable v, double impact) {
+      int stateId = model.aliases[v.getId()];
+      impacts[stateId] += (impact - impacts[stateId]) * IMPACT_WEIGHT;
+   }
+
+   /**
+    * Returns the position, in {@code indexes}, of the variable to assign a value to next.
+    *
+    * @param indexes the indexes of the variables that are searched
+    * @param from the position in {@code indexes} of the first variable that has not already been assigned a value
+    * @return the position of the selected variable, or -1 if none of the variables have more than one possible value
+    */
+   int select(VariableSelection selection, ClpConstraintStore s, int[] indexes, int from) {
+      int best = -1;
+      double bestScore = 0;
+      long bestCount = 0;
+      for (int i = from; i < indexes.length; i++) {
+         long count = s.getVariableState(indexes[i]).count();
+         if (count > 1) {
+            double score = getScore(selection, s, model.aliases[indexes[i]], count);
+            if (best == -1 || score < bestScore || (score == bestScore && count < bestCount)) {
+               best = i;
+               bestScore = score;
+               bestCount = count;
+            }
+         }
+      }
+      return best;
+   }
+
+   /** Returns the score of the given variable state - the variable with the lowest score is selected. */
+   private double getScore(VariableSelection selection, ClpConstraintStore s, int stateId, long count) {
+      switch (selection) {
+         case DOMAIN_OVER_WEIGHTED_DEGREE:
+            double weightedDegree = 0;
+            for (int constraintId : constraintsByVariable[stateId]) {
+               if (s.isActive(constraintId)) {
+                  weightedDegree += weights[constraintId];
+               }
+            }
+            // a variable with no active constraints has an infinite score, so is only selected if no others remain
+            return count / weightedDegree;
+         case ACTIVITY:
+            return -activities[stateId] / count;
+         case IMPACT:
+            return -impacts[stateId];
+         default:
+            return count;
+      }
+   }
+
+   /** Returns the logarithm of the number of combinations of possible values of the variables with the given indexes. */
+   static double getSearchSpace(ClpConstraintStore s, int[] indexes) {
+      double total = 0;
+      for (int i : indexes) {
+         total += Math.log(s.getVariableState(i).count());
+      }
+      return total;
+   }
+}
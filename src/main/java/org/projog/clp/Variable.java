@@ -44,6 +44,11 @@ public final class Variable implements LeafExpression {
       return s.getMax(this);
    }
 
+   @Override
+   public boolean contains(ReadConstraintStore s, long value) {
+      return s.contains(this, value);
+   }
+
    public ExpressionResult setValue(ConstraintStore s, long value) {
       return s.setValue(this, value);
    }
@@ -53,6 +58,11 @@ public final class Variable implements LeafExpression {
       return s.setNot(this, not);
    }
 
+   @Override
+   public ExpressionResult setNot(ConstraintStore s, long from, long to) {
+      return s.setNot(this, from, to);
+   }
+
    @Override
    public ExpressionResult setMin(ConstraintStore s, long min) {
       return s.setMin(this, min);
@@ -119,6 +129,22 @@ public final class Variable implements LeafExpression {
       return this;
    }
 
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      } else if (!(o instanceof Variable)) {
+         return false;
+      } else {
+         return id == ((Variable) o).id;
+      }
+   }
+
+   @Override
+   public int hashCode() {
+      return id;
+   }
+
    @Override
    public String toString() {
       return "Variable [id=" + id + "]";
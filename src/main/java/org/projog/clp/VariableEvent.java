@@ -0,0 +1,51 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The types of change to the possible values of a variable that a {@link Constraint} can subscribe to.
+ * <p>
+ * When the possible values of a variable are restricted then {@link #DOMAIN} is raised along with any of the other
+ * events that apply. Every constraint that refers to the variable, and has subscribed to at least one of the raised
+ * events, is scheduled to be enforced again.
+ *
+ * @see Constraint#getSubscribedEvents()
+ */
+public enum VariableEvent {
+   /** The variable now has a single possible value. */
+   FIX,
+   /** The minimum possible value of the variable has increased. */
+   MIN,
+   /** The maximum possible value of the variable has decreased. */
+   MAX,
+   /** One or more possible values of the variable have been removed. */
+   DOMAIN;
+
+   /**
+    * Returns the events raised when the minimum or maximum possible values of a variable change, combined with the
+    * events subscribed to by the given constraints.
+    */
+   public static Set<VariableEvent> bounds(Constraint... constraints) {
+      Set<VariableEvent> events = EnumSet.of(MIN, MAX);
+      for (Constraint c : constraints) {
+         events.addAll(c.getSubscribedEvents());
+      }
+      return events;
+   }
+}
@@ -0,0 +1,45 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+/**
+ * How {@link BruteForceSearch} selects the next variable to assign a value to.
+ * <p>
+ * Only variables with more than one possible value are selected. Variables with the same score are selected in order
+ * of their number of possible values.
+ * </p>
+ *
+ * @see SearchStatistics
+ */
+public enum VariableSelection {
+   /** The variable with the fewest possible values is selected. */
+   SMALLEST_DOMAIN,
+   /**
+    * The variable with the lowest ratio of possible values to the total weight of the active constraints that refer to
+    * it is selected. The weight of a constraint is increased every time enforcing it fails.
+    */
+   DOMAIN_OVER_WEIGHTED_DEGREE,
+   /**
+    * The variable with the highest ratio of activity to possible values is selected. The activity of a variable is
+    * increased every time its possible values are reduced, and gradually decays as values are assigned.
+    */
+   ACTIVITY,
+   /**
+    * The variable whose assignments have, on average, most reduced the size of the search space is selected. Variables
+    * that have not yet been assigned are treated as having the maximum impact, so are selected first.
+    */
+   IMPACT
+}
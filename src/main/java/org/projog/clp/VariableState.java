@@ -46,6 +46,20 @@ public final class VariableState {
     * longer be used.
     */
    private NumberSet bitset;
+   /**
+    * {@code true} if {@link #bitset} may also be used by another {@code VariableState}.
+    * <p>
+    * Copies share the same {@code NumberSet}, which is only cloned when one of them needs to alter it - as most copies
+    * created during a search never remove values from a variable's {@code NumberSet}, this avoids cloning every
+    * {@code NumberSet} of a store each time the store is copied.
+    */
+   private boolean shared;
+   /**
+    * The number of values in {@link #bitset}, or 0 if it has not been calculated since {@code bitset} was last altered.
+    * <p>
+    * Cached as {@link #count()} is called for many variables each time a search selects a variable.
+    */
+   private int cardinality;
 
    /** Creates a {@code VariableState} with the full range of possible values. */
    public VariableState() {
@@ -63,7 +77,10 @@ public final class VariableState {
       this.min = original.min;
       this.max = original.max;
       if (original.bitset != null) {
-         this.bitset = original.bitset.copy();
+         this.bitset = original.bitset;
+         this.shared = true;
+         this.cardinality = original.cardinality;
+         original.shared = true;
       }
    }
 
@@ -228,6 +245,12 @@ public final class VariableState {
       return max;
    }
 
+   /** Returns {@code true} if the given value is one of the possible values of this {@code VariableState}. */
+   public boolean contains(long value) {
+      validate();
+      return value >= min && value <= max && (bitset == null || bitset.get(value));
+   }
+
    public VariableStateResult setValue(long value) {
       validate();
       if (value == min && value == max) {
@@ -258,10 +281,9 @@ public final class VariableState {
       }
 
       if (bitset != null) {
-         bitset.clear(this.min, min - 1); // .clear(int,int) is *inclusive*
          min = bitset.nextSetValue(min);
-         if (bitset.cardinality() == 0) {
-            throw new IllegalStateException(); // should never happen
+         if (min != max) {
+            getWritableBitSet().clear(this.min, min - 1); // .clear(int,int) is *inclusive*
          }
       }
       this.min = min;
@@ -281,10 +303,9 @@ public final class VariableState {
       }
 
       if (bitset != null) {
-         bitset.clear(max + 1, this.max); // .clear(int,int) is *inclusive*
          max = bitset.previousSetValue(max);
-         if (bitset.cardinality() == 0) {
-            throw new IllegalStateException(); // should never happen
+         if (min != max) {
+            getWritableBitSet().clear(max + 1, this.max); // .clear(int,int) is *inclusive*
          }
       }
       this.max = max;
@@ -307,13 +328,10 @@ public final class VariableState {
             return VariableStateResult.NO_CHANGE;
          }
          bitset = new NumberSet(min, max);
+         shared = false;
+         cardinality = 0;
       }
       if (bitset.get(not)) {
-         if (bitset.cardinality() == 1) {
-            throw new IllegalStateException(); // should never happen
-         }
-
-         bitset.clear(not);
          if (min == not) {
             min = bitset.nextSetValue(min + 1);
          }
@@ -322,6 +340,8 @@ public final class VariableState {
          }
          if (min == max) {
             bitset = null;
+         } else {
+            getWritableBitSet().clear(not);
          }
          return VariableStateResult.UPDATED;
       } else {
@@ -329,6 +349,49 @@ public final class VariableState {
       }
    }
 
+   /** Removes every value between {@code from} and {@code to} (inclusive). */
+   public VariableStateResult setNot(long from, long to) {
+      validate();
+      from = Math.max(from, min);
+      to = Math.min(to, max);
+      if (from > to) {
+         return VariableStateResult.NO_CHANGE;
+      } else if (from == min) {
+         // fails if the range covers every value, as then to == max
+         return to == max ? fail() : setMin(to + 1);
+      } else if (to == max) {
+         return setMax(from - 1);
+      }
+
+      // the range is between the minimum and maximum, so they are not changed
+      if (bitset == null) {
+         if (MathUtils.safeSubtract(max, min) >= Integer.MAX_VALUE) {
+            return VariableStateResult.NO_CHANGE;
+         }
+         bitset = new NumberSet(min, max);
+         shared = false;
+         cardinality = 0;
+      } else if (bitset.nextSetValue(from) > to) {
+         return VariableStateResult.NO_CHANGE;
+      }
+      getWritableBitSet().clear(from, to);
+      return VariableStateResult.UPDATED;
+   }
+
+   /**
+    * Returns {@link #bitset}, first replacing it with a clone if it may also be used by another state.
+    * <p>
+    * As the returned {@code NumberSet} is about to be altered, its cached {@link #cardinality} is reset.
+    */
+   private NumberSet getWritableBitSet() {
+      if (shared) {
+         bitset = bitset.copy();
+         shared = false;
+      }
+      cardinality = 0;
+      return bitset;
+   }
+
    public VariableState copy() {
       validate();
       return new VariableState(this);
@@ -337,7 +400,10 @@ public final class VariableState {
    public long count() {
       validate();
       if (bitset != null) {
-         return bitset.cardinality();
+         if (cardinality == 0) {
+            cardinality = bitset.cardinality();
+         }
+         return cardinality;
       } else {
          return MathUtils.safeAdd(MathUtils.safeSubtract(max, min), 1);
       }
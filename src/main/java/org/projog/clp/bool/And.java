@@ -16,6 +16,7 @@
 package org.projog.clp.bool;
 
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -24,7 +25,9 @@ import org.projog.clp.ConstraintResult;
 import org.projog.clp.ConstraintStore;
 import org.projog.clp.Expression;
 import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
 import org.projog.clp.ReadConstraintStore;
+import org.projog.clp.VariableEvent;
 
 public final class And implements Constraint {
    private final Constraint left;
@@ -69,6 +72,16 @@ public final class And implements Constraint {
       return r1 == ConstraintResult.MATCHED && r2 == ConstraintResult.MATCHED ? ConstraintResult.MATCHED : ConstraintResult.UNRESOLVED;
    }
 
+   @Override
+   public Set<VariableEvent> getSubscribedEvents() {
+      return VariableEvent.bounds(left, right);
+   }
+
+   @Override
+   public PropagationCost getPropagationCost() {
+      return PropagationCost.max(left, right);
+   }
+
    @Override
    public ConstraintResult prevent(ConstraintStore constraintStore) {
       return Nand.enforce(left, right, constraintStore);
@@ -85,6 +98,13 @@ public final class And implements Constraint {
       return new And(left.replace(r), right.replace(r));
    }
 
+   @Override
+   public And rewrite(Function<Expression, Expression> f) {
+      Constraint l = left.rewrite(f);
+      Constraint r = right.rewrite(f);
+      return l == left && r == right ? this : new And(l, r);
+   }
+
    @Override
    public String toString() {
       return "And [left=" + left + ", right=" + right + "]";
@@ -16,6 +16,7 @@
 package org.projog.clp.bool;
 
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -24,7 +25,9 @@ import org.projog.clp.ConstraintResult;
 import org.projog.clp.ConstraintStore;
 import org.projog.clp.Expression;
 import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
 import org.projog.clp.ReadConstraintStore;
+import org.projog.clp.VariableEvent;
 
 public final class Equivalent implements Constraint {
    private final Constraint left;
@@ -75,6 +78,16 @@ public final class Equivalent implements Constraint {
       return r1 == r2 ? ConstraintResult.MATCHED : ConstraintResult.FAILED;
    }
 
+   @Override
+   public Set<VariableEvent> getSubscribedEvents() {
+      return VariableEvent.bounds(left, right);
+   }
+
+   @Override
+   public PropagationCost getPropagationCost() {
+      return PropagationCost.max(left, right);
+   }
+
    @Override
    public ConstraintResult prevent(ConstraintStore constraintStore) {
       return Xor.enforce(left, right, constraintStore);
@@ -91,6 +104,13 @@ public final class Equivalent implements Constraint {
       return new Equivalent(left.replace(r), right.replace(r));
    }
 
+   @Override
+   public Equivalent rewrite(Function<Expression, Expression> f) {
+      Constraint l = left.rewrite(f);
+      Constraint r = right.rewrite(f);
+      return l == left && r == right ? this : new Equivalent(l, r);
+   }
+
    @Override
    public String toString() {
       return "Equivalent [left=" + left + ", right=" + right + "]";
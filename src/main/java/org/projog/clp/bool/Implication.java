@@ -16,6 +16,7 @@
 package org.projog.clp.bool;
 
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -24,7 +25,9 @@ import org.projog.clp.ConstraintResult;
 import org.projog.clp.ConstraintStore;
 import org.projog.clp.Expression;
 import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
 import org.projog.clp.ReadConstraintStore;
+import org.projog.clp.VariableEvent;
 
 public final class Implication implements Constraint {
    private final Constraint left;
@@ -96,6 +99,16 @@ public final class Implication implements Constraint {
       return ConstraintResult.UNRESOLVED;
    }
 
+   @Override
+   public Set<VariableEvent> getSubscribedEvents() {
+      return VariableEvent.bounds(left, right);
+   }
+
+   @Override
+   public PropagationCost getPropagationCost() {
+      return PropagationCost.max(left, right);
+   }
+
    @Override
    public void walk(Consumer<Expression> r) {
       left.walk(r);
@@ -107,6 +120,13 @@ public final class Implication implements Constraint {
       return new Implication(left.replace(r), right.replace(r));
    }
 
+   @Override
+   public Implication rewrite(Function<Expression, Expression> f) {
+      Constraint l = left.rewrite(f);
+      Constraint r = right.rewrite(f);
+      return l == left && r == right ? this : new Implication(l, r);
+   }
+
    @Override
    public String toString() {
       return "Implication [left=" + left + ", right=" + right + "]";
@@ -16,6 +16,7 @@
 package org.projog.clp.bool;
 
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -24,7 +25,9 @@ import org.projog.clp.ConstraintResult;
 import org.projog.clp.ConstraintStore;
 import org.projog.clp.Expression;
 import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
 import org.projog.clp.ReadConstraintStore;
+import org.projog.clp.VariableEvent;
 
 public final class Not implements Constraint {
    private final Constraint constraint;
@@ -58,6 +61,16 @@ public final class Not implements Constraint {
       }
    }
 
+   @Override
+   public Set<VariableEvent> getSubscribedEvents() {
+      return VariableEvent.bounds(constraint);
+   }
+
+   @Override
+   public PropagationCost getPropagationCost() {
+      return constraint.getPropagationCost();
+   }
+
    @Override
    public void walk(Consumer<Expression> r) {
       constraint.walk(r);
@@ -68,6 +81,12 @@ public final class Not implements Constraint {
       return new Not(constraint.replace(r));
    }
 
+   @Override
+   public Not rewrite(Function<Expression, Expression> f) {
+      Constraint r = constraint.rewrite(f);
+      return r == constraint ? this : new Not(r);
+   }
+
    @Override
    public String toString() {
       return "Not [constraint=" + constraint + "]";
@@ -16,6 +16,7 @@
 package org.projog.clp.bool;
 
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -24,7 +25,9 @@ import org.projog.clp.ConstraintResult;
 import org.projog.clp.ConstraintStore;
 import org.projog.clp.Expression;
 import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
 import org.projog.clp.ReadConstraintStore;
+import org.projog.clp.VariableEvent;
 
 public final class Or implements Constraint {
    private final Constraint left;
@@ -85,6 +88,16 @@ public final class Or implements Constraint {
       return ConstraintResult.UNRESOLVED;
    }
 
+   @Override
+   public Set<VariableEvent> getSubscribedEvents() {
+      return VariableEvent.bounds(left, right);
+   }
+
+   @Override
+   public PropagationCost getPropagationCost() {
+      return PropagationCost.max(left, right);
+   }
+
    @Override
    public ConstraintResult prevent(ConstraintStore constraintStore) {
       return Nor.enforce(left, right, constraintStore);
@@ -101,6 +114,13 @@ public final class Or implements Constraint {
       return new Or(left.replace(r), right.replace(r));
    }
 
+   @Override
+   public Or rewrite(Function<Expression, Expression> f) {
+      Constraint l = left.rewrite(f);
+      Constraint r = right.rewrite(f);
+      return l == left && r == right ? this : new Or(l, r);
+   }
+
    @Override
    public String toString() {
       return "Or [left=" + left + ", right=" + right + "]";
@@ -16,6 +16,7 @@
 package org.projog.clp.bool;
 
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -24,7 +25,9 @@ import org.projog.clp.ConstraintResult;
 import org.projog.clp.ConstraintStore;
 import org.projog.clp.Expression;
 import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
 import org.projog.clp.ReadConstraintStore;
+import org.projog.clp.VariableEvent;
 
 public final class Xor implements Constraint {
    private final Constraint left;
@@ -75,6 +78,16 @@ public final class Xor implements Constraint {
       return r1 == r2 ? ConstraintResult.FAILED : ConstraintResult.MATCHED;
    }
 
+   @Override
+   public Set<VariableEvent> getSubscribedEvents() {
+      return VariableEvent.bounds(left, right);
+   }
+
+   @Override
+   public PropagationCost getPropagationCost() {
+      return PropagationCost.max(left, right);
+   }
+
    @Override
    public ConstraintResult prevent(ConstraintStore constraintStore) {
       return Equivalent.enforce(left, right, constraintStore);
@@ -91,6 +104,13 @@ public final class Xor implements Constraint {
       return new Xor(left.replace(r), right.replace(r));
    }
 
+   @Override
+   public Xor rewrite(Function<Expression, Expression> f) {
+      Constraint l = left.rewrite(f);
+      Constraint r = right.rewrite(f);
+      return l == left && r == right ? this : new Xor(l, r);
+   }
+
    @Override
    public String toString() {
       return "Xor [left=" + left + ", right=" + right + "]";
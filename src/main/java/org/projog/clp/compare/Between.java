@@ -24,6 +24,7 @@ import org.projog.clp.ConstraintStore;
 import org.projog.clp.Expression;
 import org.projog.clp.ExpressionResult;
 import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
 import org.projog.clp.ReadConstraintStore;
 
 /** Enforces that the possible values of a given {@code Expression} are within the given range. */
@@ -71,6 +72,11 @@ public final class Between implements Constraint {
       }
    }
 
+   @Override
+   public PropagationCost getPropagationCost() {
+      return PropagationCost.ofArguments(e);
+   }
+
    @Override
    public ConstraintResult prevent(ConstraintStore constraintStore) {
       switch (reify(constraintStore)) {
@@ -93,6 +99,12 @@ public final class Between implements Constraint {
       return new Between(e.replace(r), min, max);
    }
 
+   @Override
+   public Between rewrite(Function<Expression, Expression> f) {
+      Expression r = e.rewrite(f);
+      return r == e ? this : new Between(r, min, max);
+   }
+
    @Override
    public String toString() {
       return "Between [e=" + e + ", min=" + min + ", max=" + max + "]";
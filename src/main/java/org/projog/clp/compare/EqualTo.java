@@ -15,31 +15,55 @@
  */
 package org.projog.clp.compare;
 
+import java.util.EnumSet;
 import java.util.Objects;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import org.projog.clp.Consistency;
 import org.projog.clp.Constraint;
 import org.projog.clp.ConstraintResult;
 import org.projog.clp.ConstraintStore;
 import org.projog.clp.Expression;
 import org.projog.clp.ExpressionResult;
 import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
 import org.projog.clp.ReadConstraintStore;
+import org.projog.clp.VariableEvent;
+import org.projog.clp.math.DomainConsistency;
 
 /** Enforces that two {@code Expression}s have the same value. */
 public final class EqualTo implements Constraint {
    private final Expression left;
    private final Expression right;
+   private final Consistency consistency;
 
    public EqualTo(Expression left, Expression right) {
+      this(left, right, Consistency.BOUNDS);
+   }
+
+   /**
+    * Enforces that two {@code Expression}s have the same value, using the given level of consistency.
+    * <p>
+    * {@link Consistency#DOMAIN} is supported when both arguments are linear combinations of {@code LeafExpression}s - see
+    * {@link DomainConsistency}. For other arguments only the bounds are restricted.
+    */
+   public EqualTo(Expression left, Expression right, Consistency consistency) {
       this.left = Objects.requireNonNull(left);
       this.right = Objects.requireNonNull(right);
+      this.consistency = Objects.requireNonNull(consistency);
    }
 
    @Override
    public ConstraintResult enforce(ConstraintStore m) {
-      return enforce(left, right, m);
+      ConstraintResult result = enforce(left, right, m);
+      if (result == ConstraintResult.UNRESOLVED
+          && consistency == Consistency.DOMAIN
+          && DomainConsistency.enforceEqual(m, left, right) == ExpressionResult.INVALID) {
+         return ConstraintResult.FAILED;
+      }
+      return result;
    }
 
    static ConstraintResult enforce(Expression left, Expression right, ConstraintStore m) {
@@ -77,6 +101,16 @@ public final class EqualTo implements Constraint {
       }
    }
 
+   @Override
+   public Set<VariableEvent> getSubscribedEvents() {
+      return consistency == Consistency.DOMAIN ? EnumSet.of(VariableEvent.DOMAIN) : VariableEvent.bounds();
+   }
+
+   @Override
+   public PropagationCost getPropagationCost() {
+      return consistency == Consistency.DOMAIN ? PropagationCost.HIGH : PropagationCost.ofArguments(left, right);
+   }
+
    @Override
    public ConstraintResult prevent(ConstraintStore constraintStore) {
       return NotEqualTo.enforce(left, right, constraintStore);
@@ -90,11 +124,18 @@ public final class EqualTo implements Constraint {
 
    @Override
    public EqualTo replace(Function<LeafExpression, LeafExpression> r) {
-      return new EqualTo(left.replace(r), right.replace(r));
+      return new EqualTo(left.replace(r), right.replace(r), consistency);
+   }
+
+   @Override
+   public EqualTo rewrite(Function<Expression, Expression> f) {
+      Expression l = left.rewrite(f);
+      Expression r = right.rewrite(f);
+      return l == left && r == right ? this : new EqualTo(l, r, consistency);
    }
 
    @Override
    public String toString() {
-      return "EqualTo [left=" + left + ", right=" + right + "]";
+      return "EqualTo [left=" + left + ", right=" + right + (consistency == Consistency.DOMAIN ? ", consistency=DOMAIN" : "") + "]";
    }
 }
@@ -24,6 +24,7 @@ import org.projog.clp.ConstraintStore;
 import org.projog.clp.Expression;
 import org.projog.clp.ExpressionResult;
 import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
 import org.projog.clp.ReadConstraintStore;
 
 /** Enforces that the value of one {@code Expression} is less than or equal to another. */
@@ -71,6 +72,11 @@ public final class LessThanOrEqualTo implements Constraint {
       }
    }
 
+   @Override
+   public PropagationCost getPropagationCost() {
+      return PropagationCost.ofArguments(left, right);
+   }
+
    @Override
    public ConstraintResult prevent(ConstraintStore constraintStore) {
       return LessThan.enforce(right, left, constraintStore);
@@ -87,6 +93,13 @@ public final class LessThanOrEqualTo implements Constraint {
       return new LessThanOrEqualTo(left.replace(r), right.replace(r));
    }
 
+   @Override
+   public LessThanOrEqualTo rewrite(Function<Expression, Expression> f) {
+      Expression l = left.rewrite(f);
+      Expression r = right.rewrite(f);
+      return l == left && r == right ? this : new LessThanOrEqualTo(l, r);
+   }
+
    @Override
    public String toString() {
       return "LessThanOrEqualTo [left=" + left + ", right=" + right + "]";
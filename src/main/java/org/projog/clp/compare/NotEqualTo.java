@@ -15,6 +15,8 @@
  */
 package org.projog.clp.compare;
 
+import java.util.EnumSet;
+import java.util.Set;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
@@ -24,7 +26,9 @@ import org.projog.clp.ConstraintStore;
 import org.projog.clp.Expression;
 import org.projog.clp.ExpressionResult;
 import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
 import org.projog.clp.ReadConstraintStore;
+import org.projog.clp.VariableEvent;
 
 /** Enforces that two {@code Expression}s do not have the same value. */
 public final class NotEqualTo implements Constraint {
@@ -78,6 +82,21 @@ public final class NotEqualTo implements Constraint {
       }
    }
 
+   /** If both arguments are {@code LeafExpression}s then values are only removed when one of them is fixed. */
+   @Override
+   public Set<VariableEvent> getSubscribedEvents() {
+      if (left instanceof LeafExpression && right instanceof LeafExpression) {
+         return EnumSet.of(VariableEvent.FIX);
+      } else {
+         return VariableEvent.bounds();
+      }
+   }
+
+   @Override
+   public PropagationCost getPropagationCost() {
+      return PropagationCost.ofArguments(left, right);
+   }
+
    @Override
    public ConstraintResult prevent(ConstraintStore constraintStore) {
       return EqualTo.enforce(left, right, constraintStore);
@@ -94,6 +113,13 @@ public final class NotEqualTo implements Constraint {
       return new NotEqualTo(left.replace(r), right.replace(r));
    }
 
+   @Override
+   public NotEqualTo rewrite(Function<Expression, Expression> f) {
+      Expression l = left.rewrite(f);
+      Expression r = right.rewrite(f);
+      return l == left && r == right ? this : new NotEqualTo(l, r);
+   }
+
    @Override
    public String toString() {
       return "NotEqualTo [left=" + left + ", right=" + right + "]";
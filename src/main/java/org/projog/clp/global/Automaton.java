@@ -0,0 +1,189 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.global;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A deterministic finite automaton used to specify the sequences of values that are permitted by {@link Regular}.
+ * <p>
+ * States are identified by non-negative integers. Symbols are the numeric values that the variables of a
+ * {@code Regular} constraint can have. Instances are immutable and are created using {@link Automaton.Builder}.
+ * </p>
+ * <p>
+ * e.g. An automaton that accepts sequences of 0s (day shifts) and 1s (night shifts) that contain no more than 3 night
+ * shifts in a row:
+ * </p>
+ *
+ * <pre>
+ * Automaton.Builder b = new Automaton.Builder();
+ * for (int consecutiveNights = 0; consecutiveNights &lt;= 3; consecutiveNights++) {
+ *    b.transition(consecutiveNights, 0, 0).accept(consecutiveNights);
+ *    if (consecutiveNights &lt; 3) {
+ *       b.transition(consecutiveNights, 1, consecutiveNights + 1);
+ *    }
+ * }
+ * Automaton automaton = b.build();
+ * </pre>
+ */
+public final class Automaton {
+   /** Indicates there is no transition for a particular state and symbol. */
+   static final int NO_TRANSITION = -1;
+
+   private final int start;
+   /** The symbols used by the transitions of this automaton, in ascending order. */
+   private final long[] symbols;
+   /** The state transitioned to, indexed by the current state and then the index of the symbol in {@link #symbols}. */
+   private final int[][] transitions;
+   private final boolean[] accepting;
+
+   private Automaton(Builder b) {
+      TreeSet<Long> alphabet = new TreeSet<>();
+      int maxState = b.start;
+      for (Map.Entry<Integer, Map<Long, Integer>> e : b.transitions.entrySet()) {
+         maxState = Math.max(maxState, e.getKey());
+         for (Map.Entry<Long, Integer> t : e.getValue().entrySet()) {
+            alphabet.add(t.getKey());
+            maxState = Math.max(maxState, t.getValue());
+         }
+      }
+      for (int state : b.accepting) {
+         maxState = Math.max(maxState, state);
+      }
+
+      this.start = b.start;
+      this.symbols = new long[alphabet.size()];
+      int i = 0;
+      for (long symbol : alphabet) {
+         symbols[i++] = symbol;
+      }
+      this.transitions = new int[maxState + 1][symbols.length];
+      for (int[] t : transitions) {
+         Arrays.fill(t, NO_TRANSITION);
+      }
+      for (Map.Entry<Integer, Map<Long, Integer>> e : b.transitions.entrySet()) {
+         for (Map.Entry<Long, Integer> t : e.getValue().entrySet()) {
+            transitions[e.getKey()][indexOf(t.getKey())] = t.getValue();
+         }
+      }
+      this.accepting = new boolean[maxState + 1];
+      for (int state : b.accepting) {
+         accepting[state] = true;
+      }
+   }
+
+   /** Returns {@code true} if the given sequence of symbols ends in an accepting state. */
+   public boolean accepts(long... sequence) {
+      int state = start;
+      for (long symbol : sequence) {
+         int symbolIdx = indexOf(symbol);
+         if (symbolIdx < 0 || (state = transitions[state][symbolIdx]) == NO_TRANSITION) {
+            return false;
+         }
+      }
+      return accepting[state];
+   }
+
+   int getStart() {
+      return start;
+   }
+
+   int getStateCount() {
+      return transitions.length;
+   }
+
+   int getSymbolCount() {
+      return symbols.length;
+   }
+
+   long getSymbol(int symbolIdx) {
+      return symbols[symbolIdx];
+   }
+
+   /** Returns the index of the given symbol, or a negative number if the symbol is not used by this automaton. */
+   int indexOf(long symbol) {
+      return Arrays.binarySearch(symbols, symbol);
+   }
+
+   /** Returns the state transitioned to, or {@link #NO_TRANSITION} if no transition exists. */
+   int next(int state, int symbolIdx) {
+      return transitions[state][symbolIdx];
+   }
+
+   boolean isAccepting(int state) {
+      return accepting[state];
+   }
+
+   @Override
+   public String toString() {
+      return "Automaton [start=" + start + ", symbols=" + Arrays.toString(symbols) + ", transitions=" + Arrays.deepToString(transitions) + "]";
+   }
+
+   /** Used to construct instances of {@link Automaton}. */
+   public static final class Builder {
+      private final Map<Integer, Map<Long, Integer>> transitions = new HashMap<>();
+      private final Set<Integer> accepting = new HashSet<>();
+      private int start;
+
+      /** Sets the initial state. Defaults to {@code 0} if not specified. */
+      public Builder start(int state) {
+         this.start = validateState(state);
+         return this;
+      }
+
+      /**
+       * Adds a transition.
+       *
+       * @param from the state being transitioned from
+       * @param symbol the value that causes the transition
+       * @param to the state being transitioned to
+       * @throws IllegalArgumentException if a different transition has already been specified for {@code from} and
+       * {@code symbol}
+       */
+      public Builder transition(int from, long symbol, int to) {
+         Map<Long, Integer> stateTransitions = transitions.computeIfAbsent(validateState(from), k -> new HashMap<>());
+         Integer previous = stateTransitions.put(symbol, validateState(to));
+         if (previous != null && previous != to) {
+            throw new IllegalArgumentException("State " + from + " already has transition to " + previous + " for " + symbol);
+         }
+         return this;
+      }
+
+      /** Specifies states that a sequence is allowed to end in. */
+      public Builder accept(int... states) {
+         for (int state : states) {
+            accepting.add(validateState(state));
+         }
+         return this;
+      }
+
+      public Automaton build() {
+         return new Automaton(this);
+      }
+
+      private static int validateState(int state) {
+         if (state < 0) {
+            throw new IllegalArgumentException("Negative state: " + state);
+         }
+         return state;
+      }
+   }
+}
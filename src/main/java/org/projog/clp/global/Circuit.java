@@ -0,0 +1,293 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.global;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.projog.clp.Constraint;
+import org.projog.clp.ConstraintResult;
+import org.projog.clp.ConstraintStore;
+import org.projog.clp.Expression;
+import org.projog.clp.ExpressionResult;
+import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
+import org.projog.clp.ReadConstraintStore;
+import org.projog.clp.Variable;
+
+/**
+ * Enforces that a collection of successor variables form a single circuit.
+ * <p>
+ * The value of the element at index {@code i} is the index of the node that is visited immediately after node
+ * {@code i}. Every node must be visited exactly once and every node must be reachable from every other node - i.e.
+ * subtours are not allowed.
+ * </p>
+ * <p>
+ * As well as ensuring that no two nodes have the same successor, the end of every partial path formed by the
+ * successors that have already been determined is prevented from linking back to the start of the same path. This
+ * allows subtours to be pruned before they are closed.
+ * </p>
+ * <p>
+ * The successors that have already been determined are found with a single pass over the nodes. Their values are
+ * grouped into runs of consecutive values, and each run that is within the bounds of an undetermined successor is
+ * removed from it by a single call to {@link LeafExpression#setNot(ConstraintStore, long, long)} - rather than removing
+ * the successor of every determined node from every other node one value at a time.
+ */
+public final class Circuit implements Constraint {
+   private static final int UNKNOWN = -1;
+
+   private final LeafExpression[] successors;
+
+   /**
+    * Enforces that the given successors form a single circuit.
+    *
+    * @param successors the element at index {@code i} represents the index of the node visited after node {@code i}
+    */
+   public Circuit(Variable[] successors) {
+      this((LeafExpression[]) successors);
+   }
+
+   private Circuit(LeafExpression[] successors) {
+      if (successors.length == 0) {
+         throw new IllegalArgumentException("No successors specified");
+      }
+      this.successors = Arrays.copyOf(successors, successors.length, LeafExpression[].class);
+   }
+
+   @Override
+   public ConstraintResult enforce(ConstraintStore m) {
+      final int n = successors.length;
+
+      // every successor must refer to a node other than itself
+      for (int i = 0; i < n; i++) {
+         LeafExpression e = successors[i];
+         if (e.setMin(m, 0) == ExpressionResult.INVALID || e.setMax(m, n - 1) == ExpressionResult.INVALID) {
+            return ConstraintResult.FAILED;
+         }
+         if (n > 1 && e.setNot(m, i) == ExpressionResult.INVALID) {
+            return ConstraintResult.FAILED;
+         }
+      }
+
+      Links links = Links.create(successors, m);
+      if (links == null) {
+         return ConstraintResult.FAILED;
+      }
+
+      // no two nodes can have the same successor - rather than removing the successor of each fixed node from every
+      // other node, each node that is not fixed has the runs of used values that are within its bounds removed
+      Runs used = Runs.create(links.previous);
+      for (int j = 0; j < n; j++) {
+         if (links.next[j] == UNKNOWN && used.remove(successors[j], m) == ExpressionResult.INVALID) {
+            return ConstraintResult.FAILED;
+         }
+      }
+
+      // the end of a partial path cannot link back to the start of the path unless the path visits every node
+      int linkedCount = 0;
+      for (int start = 0; start < n; start++) {
+         if (links.previous[start] == UNKNOWN) {
+            int end = start;
+            int length = 1;
+            while (links.next[end] != UNKNOWN) {
+               end = links.next[end];
+               length++;
+            }
+            linkedCount += length - 1;
+            if (length < n && successors[end].setNot(m, start) == ExpressionResult.INVALID) {
+               return ConstraintResult.FAILED;
+            }
+         }
+      }
+
+      if (linkedCount < links.fixedCount) {
+         // some nodes are part of a closed loop that was not reached from the start of any path
+         return links.fixedCount == n && links.isSingleCircuit() ? ConstraintResult.MATCHED : ConstraintResult.FAILED;
+      } else {
+         return ConstraintResult.UNRESOLVED;
+      }
+   }
+
+   @Override
+   public ConstraintResult reify(ReadConstraintStore m) {
+      final int n = successors.length;
+      for (int i = 0; i < n; i++) {
+         LeafExpression e = successors[i];
+         long min = e.getMin(m);
+         long max = e.getMax(m);
+         if (max < 0 || min > n - 1 || (n > 1 && min == i && max == i)) {
+            return ConstraintResult.FAILED;
+         }
+      }
+
+      Links links = Links.create(successors, m);
+      if (links == null) {
+         return ConstraintResult.FAILED;
+      } else if (links.fixedCount == n) {
+         return links.isSingleCircuit() ? ConstraintResult.MATCHED : ConstraintResult.FAILED;
+      } else if (links.containsLoop()) {
+         return ConstraintResult.FAILED;
+      } else {
+         return ConstraintResult.UNRESOLVED;
+      }
+   }
+
+   @Override
+   public PropagationCost getPropagationCost() {
+      return PropagationCost.HIGH;
+   }
+
+   @Override
+   public ConstraintResult prevent(ConstraintStore m) {
+      switch (reify(m)) {
+         case MATCHED:
+            return ConstraintResult.FAILED;
+         case FAILED:
+            return ConstraintResult.MATCHED;
+         default:
+            return ConstraintResult.UNRESOLVED;
+      }
+   }
+
+   @Override
+   public void walk(Consumer<Expression> r) {
+      for (LeafExpression e : successors) {
+         e.walk(r);
+      }
+   }
+
+   @Override
+   public Circuit replace(Function<LeafExpression, LeafExpression> r) {
+      LeafExpression[] replacements = new LeafExpression[successors.length];
+      for (int i = 0; i < successors.length; i++) {
+         replacements[i] = successors[i].replace(r);
+      }
+      return new Circuit(replacements);
+   }
+
+   @Override
+   public String toString() {
+      return "Circuit [successors=" + Arrays.toString(successors) + "]";
+   }
+
+   /** Runs of consecutive values that are the successor of a fixed node, in ascending order. */
+   private static final class Runs {
+      private final int[] starts;
+      private final int[] ends;
+      private final int count;
+
+      private Runs(int[] starts, int[] ends, int count) {
+         this.starts = starts;
+         this.ends = ends;
+         this.count = count;
+      }
+
+      /** @param previous indexed by node, the fixed node whose successor it is, or {@link #UNKNOWN} if none */
+      private static Runs create(int[] previous) {
+         int[] starts = new int[previous.length];
+         int[] ends = new int[previous.length];
+         int count = 0;
+         for (int value = 0; value < previous.length; value++) {
+            if (previous[value] != UNKNOWN) {
+               if (count == 0 || ends[count - 1] != value - 1) {
+                  starts[count++] = value;
+               }
+               ends[count - 1] = value;
+            }
+         }
+         return new Runs(starts, ends, count);
+      }
+
+      /** Removes the values of the runs that are within the bounds of the given expression. */
+      private ExpressionResult remove(LeafExpression e, ConstraintStore m) {
+         long min = e.getMin(m);
+         long max = e.getMax(m);
+         // the first run that ends at or after the minimum - ends are distinct, so a match is the only such run
+         int r = Arrays.binarySearch(ends, 0, count, (int) Math.max(min, 0));
+         for (r = r < 0 ? -r - 1 : r; r < count && starts[r] <= max; r++) {
+            if (e.setNot(m, starts[r], ends[r]) == ExpressionResult.INVALID) {
+               return ExpressionResult.INVALID;
+            }
+         }
+         return ExpressionResult.VALID;
+      }
+   }
+
+   /** The links between nodes whose successors have already been determined. */
+   private static final class Links {
+      private final int[] next;
+      private final int[] previous;
+      private final int fixedCount;
+
+      private Links(int[] next, int[] previous, int fixedCount) {
+         this.next = next;
+         this.previous = previous;
+         this.fixedCount = fixedCount;
+      }
+
+      /** Returns the links between nodes, or {@code null} if two nodes share the same successor. */
+      private static Links create(LeafExpression[] successors, ReadConstraintStore m) {
+         final int n = successors.length;
+         int[] next = new int[n];
+         int[] previous = new int[n];
+         Arrays.fill(next, UNKNOWN);
+         Arrays.fill(previous, UNKNOWN);
+         int fixedCount = 0;
+         for (int i = 0; i < n; i++) {
+            long min = successors[i].getMin(m);
+            if (min == successors[i].getMax(m)) {
+               if (min < 0 || min >= n) {
+                  return null;
+               }
+               int value = (int) min;
+               if (previous[value] != UNKNOWN) {
+                  return null;
+               }
+               next[i] = value;
+               previous[value] = i;
+               fixedCount++;
+            }
+         }
+         return new Links(next, previous, fixedCount);
+      }
+
+      /** Returns {@code true} if following the successors from the first node visits every node exactly once. */
+      private boolean isSingleCircuit() {
+         int node = 0;
+         for (int i = 1; i < next.length; i++) {
+            node = next[node];
+            if (node == 0) {
+               return false;
+            }
+         }
+         return next[node] == 0;
+      }
+
+      /** Returns {@code true} if any of the determined successors form a closed loop. */
+      private boolean containsLoop() {
+         int linkedCount = 0;
+         for (int start = 0; start < next.length; start++) {
+            if (previous[start] == UNKNOWN) {
+               for (int end = start; next[end] != UNKNOWN; end = next[end]) {
+                  linkedCount++;
+               }
+            }
+         }
+         return linkedCount < fixedCount;
+      }
+   }
+}
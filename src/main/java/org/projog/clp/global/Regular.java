@@ -0,0 +1,240 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.global;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.projog.clp.Constraint;
+import org.projog.clp.ConstraintResult;
+import org.projog.clp.ConstraintStore;
+import org.projog.clp.Expression;
+import org.projog.clp.ExpressionResult;
+import org.projog.clp.LeafExpression;
+import org.projog.clp.PropagationCost;
+import org.projog.clp.ReadConstraintStore;
+import org.projog.clp.Variable;
+import org.projog.clp.VariableEvent;
+
+/**
+ * Enforces that a sequence of values is accepted by an {@link Automaton}.
+ * <p>
+ * Enforcing the constraint removes every value that is not part of a path from the start state to an accepting state
+ * of the layered graph formed by unfolding the automaton over the sequence.
+ * <p>
+ * The layered graph is not kept between calls and pruned incrementally, as a {@code ConstraintStore} has nowhere to
+ * keep state for a constraint that is restored when backtracking. Instead each call to
+ * {@link #enforce(ConstraintStore)} or {@link #reify(ReadConstraintStore)} derives the whole graph from the possible
+ * values held in the store, taking O(n * |Q| * |&Sigma;|) time and space, where n is the length of the sequence, |Q|
+ * the number of states and |&Sigma;| the number of symbols - regardless of how few values have been removed since the
+ * previous call.
+ * </p>
+ */
+public final class Regular implements Constraint {
+   private final LeafExpression[] sequence;
+   private final Automaton automaton;
+
+   public Regular(Variable[] sequence, Automaton automaton) {
+      this((LeafExpression[]) sequence, automaton);
+   }
+
+   private Regular(LeafExpression[] sequence, Automaton automaton) {
+      this.sequence = Arrays.copyOf(sequence, sequence.length, LeafExpression[].class);
+      this.automaton = Objects.requireNonNull(automaton);
+   }
+
+   @Override
+   public ConstraintResult enforce(ConstraintStore m) {
+      final int n = sequence.length;
+      final int stateCount = automaton.getStateCount();
+      final int symbolCount = automaton.getSymbolCount();
+
+      boolean[][] possible = getPossibleSymbols(m);
+      boolean[][] reachable = getReachableStates(possible);
+
+      // backward pass - only keep transitions that lead to an accepting state
+      boolean[] alive = new boolean[stateCount];
+      for (int state = 0; state < stateCount; state++) {
+         alive[state] = reachable[n][state] && automaton.isAccepting(state);
+      }
+      boolean[][] supported = new boolean[n][symbolCount];
+      boolean[] previousAlive = new boolean[stateCount];
+      for (int i = n - 1; i > -1; i--) {
+         Arrays.fill(previousAlive, false);
+         for (int state = 0; state < stateCount; state++) {
+            if (reachable[i][state]) {
+               for (int symbolIdx = 0; symbolIdx < symbolCount; symbolIdx++) {
+                  int next = automaton.next(state, symbolIdx);
+                  if (possible[i][symbolIdx] && next != Automaton.NO_TRANSITION && alive[next]) {
+                     previousAlive[state] = true;
+                     supported[i][symbolIdx] = true;
+                  }
+               }
+            }
+         }
+         boolean[] tmp = alive;
+         alive = previousAlive;
+         previousAlive = tmp;
+      }
+      if (!alive[automaton.getStart()]) {
+         return ConstraintResult.FAILED;
+      }
+
+      // remove values that are not supported by any path through the layered graph
+      boolean resolved = true;
+      for (int i = 0; i < n; i++) {
+         if (prune(m, sequence[i], supported[i]) == ExpressionResult.INVALID) {
+            return ConstraintResult.FAILED;
+         }
+         resolved &= sequence[i].getMin(m) == sequence[i].getMax(m);
+      }
+      return resolved ? ConstraintResult.MATCHED : ConstraintResult.UNRESOLVED;
+   }
+
+   private ExpressionResult prune(ConstraintStore m, LeafExpression e, boolean[] supported) {
+      int first = 0;
+      while (!supported[first]) {
+         first++;
+      }
+      int last = supported.length - 1;
+      while (!supported[last]) {
+         last--;
+      }
+
+      long min = automaton.getSymbol(first);
+      long max = automaton.getSymbol(last);
+      if (e.setMin(m, min) == ExpressionResult.INVALID || e.setMax(m, max) == ExpressionResult.INVALID) {
+         return ExpressionResult.INVALID;
+      }
+      // remove the values between each pair of consecutive supported symbols - i.e. the unsupported symbols and the
+      // values that are not part of the alphabet - as a single range, rather than one value at a time
+      long previous = min;
+      for (int symbolIdx = first + 1; symbolIdx <= last; symbolIdx++) {
+         if (supported[symbolIdx]) {
+            long symbol = automaton.getSymbol(symbolIdx);
+            if (previous + 1 < symbol && e.setNot(m, previous + 1, symbol - 1) == ExpressionResult.INVALID) {
+               return ExpressionResult.INVALID;
+            }
+            previous = symbol;
+         }
+      }
+      return ExpressionResult.VALID;
+   }
+
+   @Override
+   public ConstraintResult reify(ReadConstraintStore m) {
+      final int n = sequence.length;
+      boolean[][] reachable = getReachableStates(getPossibleSymbols(m));
+
+      boolean acceptable = false;
+      for (int state = 0; state < automaton.getStateCount(); state++) {
+         acceptable |= reachable[n][state] && automaton.isAccepting(state);
+      }
+      if (!acceptable) {
+         return ConstraintResult.FAILED;
+      }
+
+      for (LeafExpression e : sequence) {
+         if (e.getMin(m) != e.getMax(m)) {
+            return ConstraintResult.UNRESOLVED;
+         }
+      }
+      return ConstraintResult.MATCHED;
+   }
+
+   /** Values are removed based on all the possible values of the sequence, not just the minimum and maximum. */
+   @Override
+   public Set<VariableEvent> getSubscribedEvents() {
+      return EnumSet.of(VariableEvent.DOMAIN);
+   }
+
+   @Override
+   public PropagationCost getPropagationCost() {
+      return PropagationCost.HIGH;
+   }
+
+   @Override
+   public ConstraintResult prevent(ConstraintStore m) {
+      switch (reify(m)) {
+         case MATCHED:
+            return ConstraintResult.FAILED;
+         case FAILED:
+            return ConstraintResult.MATCHED;
+         default:
+            return ConstraintResult.UNRESOLVED;
+      }
+   }
+
+   /** Returns the symbols that are possible values, indexed by position in the sequence and then by symbol. */
+   private boolean[][] getPossibleSymbols(ReadConstraintStore m) {
+      final int symbolCount = automaton.getSymbolCount();
+      boolean[][] possible = new boolean[sequence.length][symbolCount];
+      for (int i = 0; i < sequence.length; i++) {
+         LeafExpression e = sequence[i];
+         for (int symbolIdx = 0; symbolIdx < symbolCount; symbolIdx++) {
+            possible[i][symbolIdx] = e.contains(m, automaton.getSymbol(symbolIdx));
+         }
+      }
+      return possible;
+   }
+
+   /** Forward pass - returns the states that can be reached from the start state, indexed by layer and then state. */
+   private boolean[][] getReachableStates(boolean[][] possible) {
+      final int n = sequence.length;
+      final int stateCount = automaton.getStateCount();
+      final int symbolCount = automaton.getSymbolCount();
+      boolean[][] reachable = new boolean[n + 1][stateCount];
+      reachable[0][automaton.getStart()] = true;
+      for (int i = 0; i < n; i++) {
+         for (int state = 0; state < stateCount; state++) {
+            if (reachable[i][state]) {
+               for (int symbolIdx = 0; symbolIdx < symbolCount; symbolIdx++) {
+                  int next = automaton.next(state, symbolIdx);
+                  if (possible[i][symbolIdx] && next != Automaton.NO_TRANSITION) {
+                     reachable[i + 1][next] = true;
+                  }
+               }
+            }
+         }
+      }
+      return reachable;
+   }
+
+   @Override
+   public void walk(Consumer<Expression> r) {
+      for (LeafExpression e : sequence) {
+         e.walk(r);
+      }
+   }
+
+   @Override
+   public Regular replace(Function<LeafExpression, LeafExpression> r) {
+      LeafExpression[] replacements = new LeafExpression[sequence.length];
+      for (int i = 0; i < sequence.length; i++) {
+         replacements[i] = sequence[i].replace(r);
+      }
+      return new Regular(replacements, automaton);
+   }
+
+   @Override
+   public String toString() {
+      return "Regular [sequence=" + Arrays.toString(sequence) + ", automaton=" + automaton + "]";
+   }
+}
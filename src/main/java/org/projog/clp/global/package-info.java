@@ -0,0 +1,4 @@
+/**
+ * Contains global constraints which restrict the values of a collection of {@code Expression}s.
+ */
+package org.projog.clp.global;
@@ -30,9 +30,11 @@ import org.projog.clp.ReadConstraintStore;
 
 public final class Absolute implements Expression {
    private final Expression e;
+   private final int hash;
 
    public Absolute(Expression e) {
       this.e = Objects.requireNonNull(e);
+      this.hash = Objects.hash("Absolute", e);
    }
 
    @Override
@@ -102,6 +104,31 @@ public final class Absolute implements Expression {
       return new Absolute(e.replace(function));
    }
 
+   @Override
+   public Expression rewrite(Function<Expression, Expression> f) {
+      Expression r = e.rewrite(f);
+      Expression rewritten = r == e ? this : new Absolute(r);
+      Expression result = f.apply(rewritten);
+      return result == null ? rewritten : result;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      } else if (!(o instanceof Absolute)) {
+         return false;
+      } else {
+         Absolute other = (Absolute) o;
+         return hash == other.hash && e.equals(other.e);
+      }
+   }
+
+   @Override
+   public int hashCode() {
+      return hash;
+   }
+
    @Override
    public String toString() {
       return "Absolute [e=" + e + "]";
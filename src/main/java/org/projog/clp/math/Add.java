@@ -32,10 +32,21 @@ import org.projog.clp.ReadConstraintStore;
 public final class Add implements Expression {
    private final Expression left;
    private final Expression right;
+   private final int hash;
 
    public Add(Expression left, Expression right) {
       this.left = Objects.requireNonNull(left);
       this.right = Objects.requireNonNull(right);
+      // the order of the arguments does not affect the result, so is ignored when comparing instances
+      this.hash = 31 * "Add".hashCode() + left.hashCode() + right.hashCode();
+   }
+
+   Expression getLeft() {
+      return left;
+   }
+
+   Expression getRight() {
+      return right;
    }
 
    @Override
@@ -96,6 +107,32 @@ public final class Add implements Expression {
       return new Add(left.replace(r), right.replace(r));
    }
 
+   @Override
+   public Expression rewrite(Function<Expression, Expression> f) {
+      Expression l = left.rewrite(f);
+      Expression r = right.rewrite(f);
+      Expression e = l == left && r == right ? this : new Add(l, r);
+      Expression result = f.apply(e);
+      return result == null ? e : result;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      } else if (!(o instanceof Add)) {
+         return false;
+      } else {
+         Add other = (Add) o;
+         return hash == other.hash && ((left.equals(other.left) && right.equals(other.right)) || (left.equals(other.right) && right.equals(other.left)));
+      }
+   }
+
+   @Override
+   public int hashCode() {
+      return hash;
+   }
+
    @Override
    public String toString() {
       return "Add [left=" + left + ", right=" + right + "]";
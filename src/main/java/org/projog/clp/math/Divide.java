@@ -36,10 +36,12 @@ public final class Divide implements Expression {
    private final Expression left;
    /** The divisor. What the divided is being divided by. */
    private final Expression right;
+   private final int hash;
 
    public Divide(Expression left, Expression right) {
       this.left = Objects.requireNonNull(left);
       this.right = Objects.requireNonNull(right);
+      this.hash = Objects.hash("Divide", left, right);
    }
 
    @Override
@@ -328,6 +330,32 @@ public final class Divide implements Expression {
       return new Divide(left.replace(r), right.replace(r));
    }
 
+   @Override
+   public Expression rewrite(Function<Expression, Expression> f) {
+      Expression l = left.rewrite(f);
+      Expression r = right.rewrite(f);
+      Expression e = l == left && r == right ? this : new Divide(l, r);
+      Expression result = f.apply(e);
+      return result == null ? e : result;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      } else if (!(o instanceof Divide)) {
+         return false;
+      } else {
+         Divide other = (Divide) o;
+         return hash == other.hash && left.equals(other.left) && right.equals(other.right);
+      }
+   }
+
+   @Override
+   public int hashCode() {
+      return hash;
+   }
+
    @Override
    public String toString() {
       return "Divide [left=" + left + ", right=" + right + "]";
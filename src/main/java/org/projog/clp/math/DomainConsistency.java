@@ -0,0 +1,289 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.math;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.projog.clp.CachedExpression;
+import org.projog.clp.ConstraintStore;
+import org.projog.clp.Expression;
+import org.projog.clp.ExpressionResult;
+import org.projog.clp.FixedValue;
+import org.projog.clp.LeafExpression;
+import org.projog.clp.ReadConstraintStore;
+
+/**
+ * Removes every value that can not be part of a solution of an equality between linear sums.
+ * <p>
+ * Supports equalities where both sides are made up of {@link Add}, {@link Subtract}, {@link Minus},
+ * {@link LinearExpression} and multiplication by a {@link FixedValue} of {@code LeafExpression}s. The possible values of
+ * each leaf, multiplied by its coefficient, are represented as a bitset. The sumset of the other leaves is calculated by
+ * shifting and ORing their bitsets, and any value of the leaf that, when added to a value of the sumset, can not
+ * satisfy the equality is removed. As the leaves are processed in turn using the already restricted bitsets of the
+ * leaves processed before them, a single pass is sufficient to remove every unsupported value.
+ * </p>
+ * <p>
+ * Leaves whose bitset would need more than {@link #MAX_SPAN} bits, or values that are large enough that their sums
+ * could overflow, are not supported. In that case no values are removed.
+ * </p>
+ */
+public final class DomainConsistency {
+   /** The maximum number of bits in the bitset representing the values of a leaf multiplied by its coefficient. */
+   static final int MAX_SPAN = 1 << 20;
+   /** The maximum number of bits in the bitset representing the sum of the values of all the leaves. */
+   private static final int MAX_TOTAL_SPAN = 1 << 24;
+   private static final long MAX_MAGNITUDE = 1L << 32;
+
+   private DomainConsistency() {
+   }
+
+   /**
+    * Removes values from the leaves of the given expressions that can not satisfy {@code left == right}.
+    *
+    * @return {@code ExpressionResult.INVALID} if it has been determined that the equality can not be satisfied, else
+    * {@code ExpressionResult.VALID} - including when the expressions are not supported
+    */
+   public static ExpressionResult enforceEqual(ConstraintStore s, Expression left, Expression right) {
+      // move everything to the left so the constraint is: sum of (coefficient * leaf) + constant == 0
+      List<LeafExpression> leaves = new ArrayList<>();
+      List<Long> coefficients = new ArrayList<>();
+      long[] constant = new long[1];
+      if (!collect(left, 1, leaves, coefficients, constant) || !collect(right, -1, leaves, coefficients, constant)) {
+         return ExpressionResult.VALID;
+      }
+      if (leaves.isEmpty() || Math.abs(constant[0]) > MAX_MAGNITUDE) {
+         return ExpressionResult.VALID;
+      }
+
+      final int n = leaves.size();
+      Domain[] domains = new Domain[n];
+      long totalSpan = 0;
+      for (int i = 0; i < n; i++) {
+         domains[i] = Domain.create(s, leaves.get(i), coefficients.get(i));
+         if (domains[i] == null || (totalSpan += domains[i].span) > MAX_TOTAL_SPAN) {
+            return ExpressionResult.VALID;
+         }
+      }
+
+      final long target = -constant[0];
+      for (int i = 0; i < n; i++) {
+         Domain others = null;
+         for (int j = 0; j < n; j++) {
+            if (j != i) {
+               others = others == null ? domains[j] : others.add(domains[j]);
+            }
+         }
+         // the values this leaf can have are the target minus the sum of the other leaves
+         Domain allowed = others == null ? Domain.singleton(target) : others.negate().shift(target);
+         if (restrict(s, leaves.get(i), coefficients.get(i), domains[i], allowed) == ExpressionResult.INVALID) {
+            return ExpressionResult.INVALID;
+         }
+      }
+      return ExpressionResult.VALID;
+   }
+
+   private static boolean collect(Expression e, long coefficient, List<LeafExpression> leaves, List<Long> coefficients, long[] constant) {
+      if (coefficient == 0 || Math.abs(coefficient) > MAX_SPAN) {
+         return false;
+      } else if (e instanceof FixedValue) {
+         long value = ((FixedValue) e).getValue();
+         if (Math.abs(value) > MAX_MAGNITUDE) {
+            return false;
+         }
+         constant[0] += coefficient * value;
+         return true;
+      } else if (e instanceof LeafExpression) {
+         leaves.add((LeafExpression) e);
+         coefficients.add(coefficient);
+         return true;
+      } else if (e instanceof CachedExpression) {
+         return collect(((CachedExpression) e).getExpression(), coefficient, leaves, coefficients, constant);
+      } else if (e instanceof Add) {
+         Add a = (Add) e;
+         return collect(a.getLeft(), coefficient, leaves, coefficients, constant) && collect(a.getRight(), coefficient, leaves, coefficients, constant);
+      } else if (e instanceof Subtract) {
+         Subtract a = (Subtract) e;
+         return collect(a.getLeft(), coefficient, leaves, coefficients, constant) && collect(a.getRight(), -coefficient, leaves, coefficients, constant);
+      } else if (e instanceof Minus) {
+         return collect(((Minus) e).getExpression(), -coefficient, leaves, coefficients, constant);
+      } else if (e instanceof Multiply && ((Multiply) e).getLeft() instanceof FixedValue) {
+         long k = ((FixedValue) ((Multiply) e).getLeft()).getValue();
+         return Math.abs(k) <= MAX_SPAN && collect(((Multiply) e).getRight(), coefficient * k, leaves, coefficients, constant);
+      } else if (e instanceof Multiply && ((Multiply) e).getRight() instanceof FixedValue) {
+         long k = ((FixedValue) ((Multiply) e).getRight()).getValue();
+         return Math.abs(k) <= MAX_SPAN && collect(((Multiply) e).getLeft(), coefficient * k, leaves, coefficients, constant);
+      } else if (e instanceof LinearExpression) {
+         LinearExpression l = (LinearExpression) e;
+         for (int i = 0; i < l.getTermCount(); i++) {
+            long k = l.getCoefficient(i);
+            if (Math.abs(k) > MAX_SPAN || !collect(l.getTerm(i), coefficient * k, leaves, coefficients, constant)) {
+               return false;
+            }
+         }
+         return collect(new FixedValue(l.getConstant()), coefficient, leaves, coefficients, constant);
+      } else {
+         return false;
+      }
+   }
+
+   /**
+    * Removes the values of {@code leaf} whose product with {@code coefficient} is in {@code current} but not in
+    * {@code allowed}.
+    */
+   private static ExpressionResult restrict(ConstraintStore s, LeafExpression leaf, long coefficient, Domain current, Domain allowed) {
+      for (int bit = current.nextSetBit(0); bit != -1; bit = current.nextSetBit(bit + 1)) {
+         long value = current.min + bit;
+         if (!allowed.contains(value)) {
+            if (leaf.setNot(s, value / coefficient) == ExpressionResult.INVALID) {
+               return ExpressionResult.INVALID;
+            }
+            current.clear(bit);
+         }
+      }
+      return current.isEmpty() ? ExpressionResult.INVALID : ExpressionResult.VALID;
+   }
+
+   /** A set of values represented as a bitset, where bit {@code i} represents the value {@code min + i}. */
+   private static final class Domain {
+      private final long min;
+      private final int span;
+      private final long[] words;
+
+      private Domain(long min, int span) {
+         this(min, span, new long[(span + 63) >>> 6]);
+      }
+
+      private Domain(long min, int span, long[] words) {
+         this.min = min;
+         this.span = span;
+         this.words = words;
+      }
+
+      /** Returns the possible values of {@code coefficient * leaf}, or {@code null} if there are too many. */
+      private static Domain create(ReadConstraintStore s, LeafExpression leaf, long coefficient) {
+         long min = leaf.getMin(s);
+         long max = leaf.getMax(s);
+         long scale = Math.abs(coefficient);
+         if (min < -MAX_MAGNITUDE || max > MAX_MAGNITUDE || (max - min) * scale >= MAX_SPAN) {
+            return null;
+         }
+         Domain d = new Domain(min * scale, (int) ((max - min) * scale + 1));
+         for (long v = min; v <= max; v++) {
+            if (leaf.contains(s, v)) {
+               d.set((int) ((v - min) * scale));
+            }
+         }
+         return coefficient < 0 ? d.negate() : d;
+      }
+
+      private static Domain singleton(long value) {
+         Domain d = new Domain(value, 1);
+         d.set(0);
+         return d;
+      }
+
+      /** Returns the set of values {@code a + b} where {@code a} is in this set and {@code b} is in {@code other}. */
+      private Domain add(Domain other) {
+         if (cardinality() > other.cardinality()) {
+            // shift the set with more values once for each value of the set with fewer values
+            return other.add(this);
+         }
+         Domain result = new Domain(min + other.min, span + other.span - 1);
+         for (int bit = nextSetBit(0); bit != -1; bit = nextSetBit(bit + 1)) {
+            result.orShifted(other, bit);
+         }
+         return result;
+      }
+
+      /** Returns the set of values {@code -a} where {@code a} is in this set. */
+      private Domain negate() {
+         Domain result = new Domain(-(min + span - 1), span);
+         for (int bit = nextSetBit(0); bit != -1; bit = nextSetBit(bit + 1)) {
+            result.set(span - 1 - bit);
+         }
+         return result;
+      }
+
+      /** Returns the set of values {@code a + offset} where {@code a} is in this set. */
+      private Domain shift(long offset) {
+         return new Domain(min + offset, span, words);
+      }
+
+      /** Sets the bits of this set that are set in {@code other} after it has been shifted left by {@code shift}. */
+      private void orShifted(Domain other, int shift) {
+         int wordShift = shift >>> 6;
+         int bitShift = shift & 63;
+         for (int i = 0; i < other.words.length; i++) {
+            long w = other.words[i];
+            if (w != 0) {
+               words[i + wordShift] |= w << bitShift;
+               if (bitShift != 0 && i + wordShift + 1 < words.length) {
+                  words[i + wordShift + 1] |= w >>> (64 - bitShift);
+               }
+            }
+         }
+      }
+
+      private boolean contains(long value) {
+         long bit = value - min;
+         return bit >= 0 && bit < span && (words[(int) (bit >>> 6)] & (1L << bit)) != 0;
+      }
+
+      private void set(int bit) {
+         words[bit >>> 6] |= 1L << bit;
+      }
+
+      private void clear(int bit) {
+         words[bit >>> 6] &= ~(1L << bit);
+      }
+
+      private int cardinality() {
+         int total = 0;
+         for (long w : words) {
+            total += Long.bitCount(w);
+         }
+         return total;
+      }
+
+      private boolean isEmpty() {
+         for (long w : words) {
+            if (w != 0) {
+               return false;
+            }
+         }
+         return true;
+      }
+
+      /** Returns the index of the first set bit that is greater than or equal to {@code from}, or -1 if none. */
+      private int nextSetBit(int from) {
+         int wordIdx = from >>> 6;
+         if (wordIdx >= words.length) {
+            return -1;
+         }
+         long w = words[wordIdx] & (-1L << from);
+         while (true) {
+            if (w != 0) {
+               return (wordIdx << 6) + Long.numberOfTrailingZeros(w);
+            }
+            if (++wordIdx == words.length) {
+               return -1;
+            }
+            w = words[wordIdx];
+         }
+      }
+   }
+}
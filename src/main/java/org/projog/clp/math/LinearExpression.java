@@ -0,0 +1,336 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.math;
+
+import static org.projog.clp.math.MathUtils.safeAdd;
+import static org.projog.clp.math.MathUtils.safeMultiply;
+import static org.projog.clp.math.MathUtils.safeSubtract;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.projog.clp.ConstraintStore;
+import org.projog.clp.Expression;
+import org.projog.clp.ExpressionResult;
+import org.projog.clp.FixedValue;
+import org.projog.clp.LeafExpression;
+import org.projog.clp.ReadConstraintStore;
+
+/**
+ * The sum of a collection of expressions, each multiplied by a fixed coefficient, plus a fixed constant.
+ * <p>
+ * Created by {@link #compile(Expression)} to replace a tree of {@link Add}, {@link Subtract}, {@link Minus} and
+ * {@link Multiply} (where one of the arguments is a {@link FixedValue}) with a single flat expression. The terms and
+ * coefficients are stored in arrays so the bounds of the whole sum are calculated in a single loop, rather than by
+ * recursively calling the {@code getMin} and {@code getMax} methods of every node of the tree.
+ * </p>
+ */
+public final class LinearExpression implements Expression {
+   private final Expression[] terms;
+   private final long[] coefficients;
+   private final long constant;
+   private final int hash;
+
+   private LinearExpression(Expression[] terms, long[] coefficients, long constant) {
+      this.terms = terms;
+      this.coefficients = coefficients;
+      this.constant = constant;
+      // the order of the terms does not affect the result, so is ignored when comparing instances
+      int h = 31 * "LinearExpression".hashCode() + Long.hashCode(constant);
+      for (int i = 0; i < terms.length; i++) {
+         h += 31 * terms[i].hashCode() + Long.hashCode(coefficients[i]);
+      }
+      this.hash = h;
+   }
+
+   /**
+    * Returns a flattened version of the given expression.
+    * <p>
+    * Intended to be used with {@link Expression#rewrite(Function)}. Returns {@code null} if the given expression is
+    * not a linear combination of its arguments, or if flattening it would overflow a long.
+    */
+   public static Expression compile(Expression e) {
+      Map<Expression, Long> terms = new LinkedHashMap<>();
+      long[] constant = new long[1];
+      try {
+         if (e instanceof Add) {
+            collect(((Add) e).getLeft(), 1, terms, constant);
+            collect(((Add) e).getRight(), 1, terms, constant);
+         } else if (e instanceof Subtract) {
+            collect(((Subtract) e).getLeft(), 1, terms, constant);
+            collect(((Subtract) e).getRight(), -1, terms, constant);
+         } else if (e instanceof Minus) {
+            collect(((Minus) e).getExpression(), -1, terms, constant);
+         } else if (e instanceof Multiply && ((Multiply) e).getLeft() instanceof FixedValue) {
+            collect(((Multiply) e).getRight(), ((FixedValue) ((Multiply) e).getLeft()).getValue(), terms, constant);
+         } else if (e instanceof Multiply && ((Multiply) e).getRight() instanceof FixedValue) {
+            collect(((Multiply) e).getLeft(), ((FixedValue) ((Multiply) e).getRight()).getValue(), terms, constant);
+         } else {
+            return null;
+         }
+      } catch (ArithmeticException ex) {
+         return null;
+      }
+
+      terms.values().removeIf(coefficient -> coefficient == 0);
+      if (terms.isEmpty()) {
+         return new FixedValue(constant[0]);
+      }
+      if (terms.size() == 1 && constant[0] == 0) {
+         Map.Entry<Expression, Long> term = terms.entrySet().iterator().next();
+         if (term.getValue() == 1) {
+            return term.getKey();
+         }
+      }
+
+      Expression[] termArray = new Expression[terms.size()];
+      long[] coefficientArray = new long[terms.size()];
+      int i = 0;
+      for (Map.Entry<Expression, Long> term : terms.entrySet()) {
+         termArray[i] = term.getKey();
+         coefficientArray[i++] = term.getValue();
+      }
+      return new LinearExpression(termArray, coefficientArray, constant[0]);
+   }
+
+   private static void collect(Expression e, long multiplier, Map<Expression, Long> terms, long[] constant) {
+      if (e instanceof FixedValue) {
+         constant[0] = Math.addExact(constant[0], Math.multiplyExact(multiplier, ((FixedValue) e).getValue()));
+      } else if (e instanceof LinearExpression) {
+         LinearExpression l = (LinearExpression) e;
+         for (int i = 0; i < l.terms.length; i++) {
+            collect(l.terms[i], Math.multiplyExact(multiplier, l.coefficients[i]), terms, constant);
+         }
+         constant[0] = Math.addExact(constant[0], Math.multiplyExact(multiplier, l.constant));
+      } else {
+         Long previous = terms.get(e);
+         terms.put(e, previous == null ? multiplier : Math.addExact(previous, multiplier));
+      }
+   }
+
+   int getTermCount() {
+      return terms.length;
+   }
+
+   Expression getTerm(int idx) {
+      return terms[idx];
+   }
+
+   long getCoefficient(int idx) {
+      return coefficients[idx];
+   }
+
+   long getConstant() {
+      return constant;
+   }
+
+   /**
+    * Returns an expression whose value is the negation of the value of this expression.
+    *
+    * @return the negation of this expression, or {@code null} if negating a coefficient or the constant would overflow
+    */
+   public LinearExpression negate() {
+      try {
+         long[] negated = new long[coefficients.length];
+         for (int i = 0; i < coefficients.length; i++) {
+            negated[i] = Math.negateExact(coefficients[i]);
+         }
+         return new LinearExpression(terms, negated, Math.negateExact(constant));
+      } catch (ArithmeticException ex) {
+         return null;
+      }
+   }
+
+   @Override
+   public long getMin(ReadConstraintStore s) {
+      return getBound(s, false);
+   }
+
+   @Override
+   public long getMax(ReadConstraintStore s) {
+      return getBound(s, true);
+   }
+
+   /**
+    * Returns the lowest or highest possible value of this expression.
+    * <p>
+    * If any part of the calculation overflows a long then {@code Long.MIN_VALUE} or {@code Long.MAX_VALUE} is
+    * returned. As a result, if {@code Long.MIN_VALUE} or {@code Long.MAX_VALUE} is not returned then the contribution
+    * of every term can be calculated without overflowing.
+    */
+   private long getBound(ReadConstraintStore s, boolean upper) {
+      final long overflow = upper ? Long.MAX_VALUE : Long.MIN_VALUE;
+      long total = constant;
+      for (int i = 0; i < terms.length; i++) {
+         long contribution = getContribution(s, i, upper);
+         if (contribution == Long.MAX_VALUE || contribution == Long.MIN_VALUE) {
+            return overflow;
+         }
+         total = safeAdd(total, contribution);
+         if (total == Long.MAX_VALUE || total == Long.MIN_VALUE) {
+            return overflow;
+         }
+      }
+      return total;
+   }
+
+   /** Returns the lowest or highest possible value of the term at the given index multiplied by its coefficient. */
+   private long getContribution(ReadConstraintStore s, int idx, boolean upper) {
+      long coefficient = coefficients[idx];
+      // a negative coefficient means the maximum contribution is derived from the minimum value of the term
+      long value = upper == coefficient > 0 ? terms[idx].getMax(s) : terms[idx].getMin(s);
+      return safeMultiply(coefficient, value);
+   }
+
+   @Override
+   public ExpressionResult setMin(ConstraintStore s, long min) {
+      long max = getMax(s);
+      if (max < min) {
+         return ExpressionResult.INVALID;
+      }
+      if (max == Long.MAX_VALUE) {
+         // unbounded, so no restrictions can be derived for the individual terms
+         return ExpressionResult.VALID;
+      }
+
+      for (int i = 0; i < terms.length; i++) {
+         // coefficient * term >= min - (maximum of the sum of all the other terms)
+         long required = safeSubtract(min, safeSubtract(max, getContribution(s, i, true)));
+         if (required != Long.MIN_VALUE && required != Long.MAX_VALUE) {
+            long coefficient = coefficients[i];
+            ExpressionResult r;
+            if (coefficient > 0) {
+               r = terms[i].setMin(s, ceilDiv(required, coefficient));
+            } else {
+               r = terms[i].setMax(s, Math.floorDiv(required, coefficient));
+            }
+            if (r == ExpressionResult.INVALID) {
+               return ExpressionResult.INVALID;
+            }
+         }
+      }
+
+      return ExpressionResult.VALID;
+   }
+
+   @Override
+   public ExpressionResult setMax(ConstraintStore s, long max) {
+      long min = getMin(s);
+      if (min > max) {
+         return ExpressionResult.INVALID;
+      }
+      if (min == Long.MIN_VALUE) {
+         // unbounded, so no restrictions can be derived for the individual terms
+         return ExpressionResult.VALID;
+      }
+
+      for (int i = 0; i < terms.length; i++) {
+         // coefficient * term <= max - (minimum of the sum of all the other terms)
+         long allowed = safeSubtract(max, safeSubtract(min, getContribution(s, i, false)));
+         if (allowed != Long.MIN_VALUE && allowed != Long.MAX_VALUE) {
+            long coefficient = coefficients[i];
+            ExpressionResult r;
+            if (coefficient > 0) {
+               r = terms[i].setMax(s, Math.floorDiv(allowed, coefficient));
+            } else {
+               r = terms[i].setMin(s, ceilDiv(allowed, coefficient));
+            }
+            if (r == ExpressionResult.INVALID) {
+               return ExpressionResult.INVALID;
+            }
+         }
+      }
+
+      return ExpressionResult.VALID;
+   }
+
+   private static long ceilDiv(long x, long y) {
+      return -Math.floorDiv(-x, y);
+   }
+
+   @Override
+   public void walk(Consumer<Expression> r) {
+      r.accept(this);
+      for (Expression e : terms) {
+         e.walk(r);
+      }
+   }
+
+   @Override
+   public LinearExpression replace(Function<LeafExpression, LeafExpression> r) {
+      Expression[] replacements = new Expression[terms.length];
+      for (int i = 0; i < terms.length; i++) {
+         replacements[i] = terms[i].replace(r);
+      }
+      return new LinearExpression(replacements, coefficients, constant);
+   }
+
+   @Override
+   public Expression rewrite(Function<Expression, Expression> f) {
+      Expression[] rewrites = new Expression[terms.length];
+      boolean updated = false;
+      for (int i = 0; i < terms.length; i++) {
+         rewrites[i] = terms[i].rewrite(f);
+         updated |= rewrites[i] != terms[i];
+      }
+      Expression e = updated ? new LinearExpression(rewrites, coefficients, constant) : this;
+      Expression result = f.apply(e);
+      return result == null ? e : result;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      } else if (!(o instanceof LinearExpression)) {
+         return false;
+      }
+      LinearExpression other = (LinearExpression) o;
+      if (hash != other.hash || constant != other.constant || terms.length != other.terms.length) {
+         return false;
+      }
+      // the terms of a single instance are distinct, so each term must match exactly one term of the other instance
+      for (int i = 0; i < terms.length; i++) {
+         int j = other.indexOf(terms[i]);
+         if (j == -1 || coefficients[i] != other.coefficients[j]) {
+            return false;
+         }
+      }
+      return true;
+   }
+
+   private int indexOf(Expression term) {
+      for (int i = 0; i < terms.length; i++) {
+         if (terms[i].equals(term)) {
+            return i;
+         }
+      }
+      return -1;
+   }
+
+   @Override
+   public int hashCode() {
+      return hash;
+   }
+
+   @Override
+   public String toString() {
+      return "LinearExpression [terms=" + Arrays.toString(terms) + ", coefficients=" + Arrays.toString(coefficients) + ", constant=" + constant + "]";
+   }
+}
@@ -28,10 +28,13 @@ import org.projog.clp.ReadConstraintStore;
 public class Minimum implements Expression {
    private final Expression left;
    private final Expression right;
+   private final int hash;
 
    public Minimum(Expression left, Expression right) {
       this.left = Objects.requireNonNull(left);
       this.right = Objects.requireNonNull(right);
+      // the order of the arguments does not affect the result, so is ignored when comparing instances
+      this.hash = 31 * "Minimum".hashCode() + left.hashCode() + right.hashCode();
    }
 
    @Override
@@ -82,6 +85,32 @@ public class Minimum implements Expression {
       return new Minimum(left.replace(r), right.replace(r));
    }
 
+   @Override
+   public Expression rewrite(Function<Expression, Expression> f) {
+      Expression l = left.rewrite(f);
+      Expression r = right.rewrite(f);
+      Expression e = l == left && r == right ? this : new Minimum(l, r);
+      Expression result = f.apply(e);
+      return result == null ? e : result;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      } else if (!(o instanceof Minimum)) {
+         return false;
+      } else {
+         Minimum other = (Minimum) o;
+         return hash == other.hash && ((left.equals(other.left) && right.equals(other.right)) || (left.equals(other.right) && right.equals(other.left)));
+      }
+   }
+
+   @Override
+   public int hashCode() {
+      return hash;
+   }
+
    @Override
    public String toString() {
       return "Minimum [left=" + left + ", right=" + right + "]";
@@ -29,9 +29,15 @@ import org.projog.clp.ReadConstraintStore;
 
 public final class Minus implements Expression {
    private final Expression e;
+   private final int hash;
 
    public Minus(Expression e) {
       this.e = Objects.requireNonNull(e);
+      this.hash = Objects.hash("Minus", e);
+   }
+
+   Expression getExpression() {
+      return e;
    }
 
    @Override
@@ -65,6 +71,31 @@ public final class Minus implements Expression {
       return new Minus(e.replace(function));
    }
 
+   @Override
+   public Expression rewrite(Function<Expression, Expression> f) {
+      Expression r = e.rewrite(f);
+      Expression rewritten = r == e ? this : new Minus(r);
+      Expression result = f.apply(rewritten);
+      return result == null ? rewritten : result;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      } else if (!(o instanceof Minus)) {
+         return false;
+      } else {
+         Minus other = (Minus) o;
+         return hash == other.hash && e.equals(other.e);
+      }
+   }
+
+   @Override
+   public int hashCode() {
+      return hash;
+   }
+
    @Override
    public String toString() {
       return "Minus [e=" + e + "]";
@@ -32,6 +32,7 @@ import org.projog.clp.ReadConstraintStore;
 public final class Subtract implements Expression {
    private final Expression left;
    private final Expression right;
+   private final int hash;
 
    /**
     * @param left the expression to subtract {@code right} from
@@ -40,6 +41,20 @@ public final class Subtract implements Expression {
    public Subtract(Expression left, Expression right) {
       this.left = Objects.requireNonNull(left);
       this.right = Objects.requireNonNull(right);
+      this.hash = Objects.hash("Subtract", left, right);
+   }
+
+   Expression getLeft() {
+      return left;
+   }
+
+   Expression getRight() {
+      return right;
+   }
+
+   /** Returns an expression whose value is the negation of the value of this expression. */
+   public Subtract negate() {
+      return new Subtract(right, left);
    }
 
    @Override
@@ -102,6 +117,32 @@ public final class Subtract implements Expression {
       return new Subtract(left.replace(r), right.replace(r));
    }
 
+   @Override
+   public Expression rewrite(Function<Expression, Expression> f) {
+      Expression l = left.rewrite(f);
+      Expression r = right.rewrite(f);
+      Expression e = l == left && r == right ? this : new Subtract(l, r);
+      Expression result = f.apply(e);
+      return result == null ? e : result;
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      } else if (!(o instanceof Subtract)) {
+         return false;
+      } else {
+         Subtract other = (Subtract) o;
+         return hash == other.hash && left.equals(other.left) && right.equals(other.right);
+      }
+   }
+
+   @Override
+   public int hashCode() {
+      return hash;
+   }
+
    @Override
    public String toString() {
       return "Subtract [left=" + left + ", right=" + right + "]";
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.math;
+
+import static org.projog.clp.math.MathUtils.safeAdd;
+import static org.projog.clp.math.MathUtils.safeMultiply;
+import static org.projog.clp.math.MathUtils.safeSubtract;
+
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.projog.clp.ConstraintResult;
+import org.projog.clp.ConstraintStore;
+import org.projog.clp.Expression;
+import org.projog.clp.ExpressionResult;
+import org.projog.clp.FixedValue;
+import org.projog.clp.LeafExpression;
+import org.projog.clp.ReadConstraintStore;
+import org.projog.clp.Variable;
+
+/**
+ * The value of a {@code LeafExpression} multiplied by a fixed, non-zero, scale and then added to a fixed offset.
+ * <p>
+ * Created by {@link #create(Expression)} to replace an {@link Add} or {@link Subtract} of a variable and a
+ * {@link FixedValue}, a {@link Multiply} of a variable by a {@code FixedValue} or the {@link Minus} of a variable. Every
+ * operation is mapped directly onto the corresponding operation of the underlying variable - including
+ * {@link #contains(ReadConstraintStore, long)} and {@link #setNot(ConstraintStore, long)}, so, unlike the expressions it
+ * replaces, values removed from the variable are also removed from the view and vice versa.
+ * </p>
+ */
+public final class VariableView implements LeafExpression {
+   private static final int TRUE = 1;
+   private static final int FALSE = 0;
+
+   private final LeafExpression e;
+   private final long scale;
+   private final long offset;
+   private final int hash;
+
+   private VariableView(LeafExpression e, long scale, long offset) {
+      this.e = Objects.requireNonNull(e);
+      this.scale = scale;
+      this.offset = offset;
+      this.hash = Objects.hash("VariableView", e, scale, offset);
+   }
+
+   /**
+    * Returns a view that replaces the given expression.
+    * <p>
+    * Intended to be used with {@link Expression#rewrite(Function)}. Returns {@code null} if the given expression is not
+    * an offset, scale or negation of a variable.
+    */
+   public static Expression create(Expression e) {
+      if (e instanceof Add) {
+         Add a = (Add) e;
+         if (a.getRight() instanceof FixedValue) {
+            return create(a.getLeft(), 1, ((FixedValue) a.getRight()).getValue());
+         } else if (a.getLeft() instanceof FixedValue) {
+            return create(a.getRight(), 1, ((FixedValue) a.getLeft()).getValue());
+         }
+      } else if (e instanceof Subtract) {
+         Subtract a = (Subtract) e;
+         if (a.getRight() instanceof FixedValue && ((FixedValue) a.getRight()).getValue() != Long.MIN_VALUE) {
+            return create(a.getLeft(), 1, -((FixedValue) a.getRight()).getValue());
+         } else if (a.getLeft() instanceof FixedValue) {
+            return create(a.getRight(), -1, ((FixedValue) a.getLeft()).getValue());
+         }
+      } else if (e instanceof Multiply) {
+         Multiply a = (Multiply) e;
+         if (a.getRight() instanceof FixedValue) {
+            return create(a.getLeft(), ((FixedValue) a.getRight()).getValue(), 0);
+         } else if (a.getLeft() instanceof FixedValue) {
+            return create(a.getRight(), ((FixedValue) a.getLeft()).getValue(), 0);
+         }
+      } else if (e instanceof Minus) {
+         return create(((Minus) e).getExpression(), -1, 0);
+      }
+      return null;
+   }
+
+   /** Returns a view of {@code scale * e + offset}, or {@code null} if {@code e} is not a variable or a view. */
+   private static LeafExpression create(Expression e, long scale, long offset) {
+      if (scale == 0) {
+         return null;
+      } else if (e instanceof Variable) {
+         return new VariableView((Variable) e, scale, offset);
+      } else if (e instanceof VariableView) {
+         // combine with the existing view, rather than creating a view of a view
+         VariableView v = (VariableView) e;
+         try {
+            long combinedScale = Math.multiplyExact(scale, v.scale);
+            long combinedOffset = Math.addExact(Math.multiplyExact(scale, v.offset), offset);
+            return combinedScale == 1 && combinedOffset == 0 ? v.e : new VariableView(v.e, combinedScale, combinedOffset);
+         } catch (ArithmeticException ex) {
+            return null;
+         }
+      } else {
+         return null;
+      }
+   }
+
+   @Override
+   public long getMin(ReadConstraintStore s) {
+      return toView(scale > 0 ? e.getMin(s) : e.getMax(s));
+   }
+
+   @Override
+   public long getMax(ReadConstraintStore s) {
+      return toView(scale > 0 ? e.getMax(s) : e.getMin(s));
+   }
+
+   @Override
+   public boolean contains(ReadConstraintStore s, long value) {
+      long d = safeSubtract(value, offset);
+      if (d % scale != 0) {
+         return false;
+      }
+      long underlying = d / scale;
+      return toView(underlying) == value && e.contains(s, underlying);
+   }
+
+   @Override
+   public ExpressionResult setNot(ConstraintStore s, long not) {
+      long d = safeSubtract(not, offset);
+      if (d % scale != 0) {
+         return ExpressionResult.VALID;
+      }
+      long underlying = d / scale;
+      return toView(underlying) == not ? e.setNot(s, underlying) : ExpressionResult.VALID;
+   }
+
+   @Override
+   public ExpressionResult setNot(ConstraintStore s, long from, long to) {
+      long dFrom = safeSubtract(from, offset);
+      long dTo = safeSubtract(to, offset);
+      return scale > 0 ? e.setNot(s, ceilDiv(dFrom, scale), floorDiv(dTo, scale)) : e.setNot(s, ceilDiv(dTo, scale), floorDiv(dFrom, scale));
+   }
+
+   @Override
+   public ExpressionResult setMin(ConstraintStore s, long min) {
+      long d = safeSubtract(min, offset);
+      return scale > 0 ? e.setMin(s, ceilDiv(d, scale)) : e.setMax(s, floorDiv(d, scale));
+   }
+
+   @Override
+   public ExpressionResult setMax(ConstraintStore s, long max) {
+      long d = safeSubtract(max, offset);
+      return scale > 0 ? e.setMax(s, floorDiv(d, scale)) : e.setMin(s, ceilDiv(d, scale));
+   }
+
+   private long toView(long underlying) {
+      return safeAdd(safeMultiply(scale, underlying), offset);
+   }
+
+   private static long floorDiv(long x, long y) {
+      if (x == Long.MIN_VALUE && y == -1) {
+         return Long.MAX_VALUE;
+      }
+      return Math.floorDiv(x, y);
+   }
+
+   private static long ceilDiv(long x, long y) {
+      if (x == Long.MIN_VALUE && y == -1) {
+         return Long.MAX_VALUE;
+      }
+      long q = x / y;
+      return x % y != 0 && (x ^ y) >= 0 ? q + 1 : q;
+   }
+
+   @Override
+   public ConstraintResult enforce(ConstraintStore s) {
+      long min = getMin(s);
+      long max = getMax(s);
+      if (min > TRUE || max < FALSE) {
+         throw new IllegalStateException("Expected 0 or 1");
+      } else if (setMin(s, TRUE) == ExpressionResult.INVALID || setMax(s, TRUE) == ExpressionResult.INVALID) {
+         return ConstraintResult.FAILED;
+      } else {
+         return ConstraintResult.MATCHED;
+      }
+   }
+
+   @Override
+   public ConstraintResult prevent(ConstraintStore s) {
+      long min = getMin(s);
+      long max = getMax(s);
+      if (min > TRUE || max < FALSE) {
+         throw new IllegalStateException("Expected 0 or 1");
+      } else if (setMin(s, FALSE) == ExpressionResult.INVALID || setMax(s, FALSE) == ExpressionResult.INVALID) {
+         return ConstraintResult.FAILED;
+      } else {
+         return ConstraintResult.MATCHED;
+      }
+   }
+
+   @Override
+   public ConstraintResult reify(ReadConstraintStore s) {
+      long min = getMin(s);
+      long max = getMax(s);
+
+      if (min != max) {
+         return ConstraintResult.UNRESOLVED;
+      } else if (min == TRUE) {
+         return ConstraintResult.MATCHED;
+      } else if (min == FALSE) {
+         return ConstraintResult.FAILED;
+      } else {
+         throw new IllegalStateException("Expected 0 or 1 but got " + min);
+      }
+   }
+
+   @Override
+   public void walk(Consumer<Expression> r) {
+      r.accept(this);
+      e.walk(r);
+   }
+
+   @Override
+   public LeafExpression replace(Function<LeafExpression, LeafExpression> function) {
+      LeafExpression r = function.apply(this);
+      if (r != null) {
+         return r;
+      }
+      LeafExpression replacement = e.replace(function);
+      if (replacement == e) {
+         return this;
+      } else if (replacement instanceof FixedValue) {
+         return new FixedValue(toView(((FixedValue) replacement).getValue()));
+      } else {
+         return new VariableView(replacement, scale, offset);
+      }
+   }
+
+   @Override
+   public boolean equals(Object o) {
+      if (this == o) {
+         return true;
+      } else if (!(o instanceof VariableView)) {
+         return false;
+      } else {
+         VariableView other = (VariableView) o;
+         return hash == other.hash && scale == other.scale && offset == other.offset && e.equals(other.e);
+      }
+   }
+
+   @Override
+   public int hashCode() {
+      return hash;
+   }
+
+   @Override
+   public String toString() {
+      return "VariableView [e=" + e + ", scale=" + scale + ", offset=" + offset + "]";
+   }
+}
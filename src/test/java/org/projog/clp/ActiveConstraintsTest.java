@@ -0,0 +1,99 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class ActiveConstraintsTest {
+   @Test
+   public void testDeactivate() {
+      ActiveConstraints a = new ActiveConstraints(6);
+      assertActive(a, 0, 1, 2, 3, 4, 5);
+
+      a.deactivate(1);
+      assertActive(a, 0, 2, 3, 4, 5);
+
+      a.deactivate(4);
+      a.deactivate(0);
+      assertActive(a, 2, 3, 5);
+
+      // deactivating an inactive constraint has no effect
+      a.deactivate(0);
+      assertActive(a, 2, 3, 5);
+   }
+
+   @Test
+   public void testCopy() {
+      ActiveConstraints parent = new ActiveConstraints(6);
+      parent.deactivate(2);
+
+      ActiveConstraints child = parent.copy();
+      child.deactivate(0);
+      child.deactivate(4);
+      assertActive(child, 1, 3, 5);
+      assertActive(parent, 0, 1, 3, 4, 5);
+
+      ActiveConstraints grandchild = child.copy();
+      grandchild.deactivate(3);
+      assertActive(grandchild, 1, 5);
+      assertActive(child, 1, 3, 5);
+      assertActive(parent, 0, 1, 3, 4, 5);
+   }
+
+   @Test
+   public void testSiblings() {
+      ActiveConstraints parent = new ActiveConstraints(6);
+
+      ActiveConstraints first = parent.copy();
+      first.deactivate(0);
+      first.deactivate(1);
+      first.deactivate(2);
+
+      // altering a copy with more active constraints than the first copy must not alter the first copy
+      ActiveConstraints second = parent.copy();
+      second.deactivate(3);
+      second.deactivate(5);
+      assertActive(second, 0, 1, 2, 4);
+      assertActive(first, 3, 4, 5);
+      assertActive(parent, 0, 1, 2, 3, 4, 5);
+
+      // altering the parent after it has been copied must not alter its copies
+      parent.deactivate(4);
+      assertActive(parent, 0, 1, 2, 3, 5);
+      assertActive(first, 3, 4, 5);
+      assertActive(second, 0, 1, 2, 4);
+
+      first.deactivate(4);
+      assertActive(first, 3, 5);
+      assertActive(second, 0, 1, 2, 4);
+   }
+
+   /** Asserts that only the given IDs, out of the six IDs used by these tests, are active. */
+   private static void assertActive(ActiveConstraints a, int... expected) {
+      boolean[] isExpected = new boolean[6];
+      for (int e : expected) {
+         isExpected[e] = true;
+      }
+      for (int i = 0; i < isExpected.length; i++) {
+         assertEquals(a.isActive(i), isExpected[i], "constraint " + i);
+      }
+      assertEquals(a.size(), expected.length);
+   }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.projog.clp.example.Queens;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class BruteForceSearchTest {
+   private static final int NUM_QUEENS = 7;
+   private static final int NUM_SOLUTIONS = 40;
+
+   @DataProvider
+   public static Object[][] recomputation() {
+      return new Object[][] {{1, false}, {2, false}, {3, false}, {NUM_QUEENS, false}, {3, true}, {NUM_QUEENS, true}};
+   }
+
+   @Test(dataProvider = "recomputation")
+   public void testRecomputation(int maxRecomputationDistance, boolean adaptive) {
+      List<String> expected = findSolutions(new BruteForceSearch(createQueens()));
+      List<String> actual = findSolutions(new BruteForceSearch(createQueens(), maxRecomputationDistance, adaptive));
+
+      // solutions are found in the same order, regardless of how many copies are kept
+      assertEquals(actual, expected);
+      assertEquals(actual.size(), NUM_SOLUTIONS);
+   }
+
+   @Test
+   public void testInvalidRecomputationDistance() {
+      ClpConstraintStore environment = createQueens();
+      assertThrows(IllegalArgumentException.class, () -> new BruteForceSearch(environment, 0, false));
+   }
+
+   @Test
+   public void testFailureLimit() {
+      List<String> expected = findSolutions(new BruteForceSearch(createQueens()));
+      BruteForceSearch search = new BruteForceSearch(createQueens());
+      search.setFailureLimit(10);
+      List<String> actual = findSolutions(search);
+
+      assertTrue(search.isFailureLimitReached());
+      assertEquals(search.getFailures(), 10);
+      assertTrue(actual.size() < expected.size());
+      assertEquals(actual, expected.subList(0, actual.size()));
+      assertNull(search.next());
+
+      BruteForceSearch unlimited = new BruteForceSearch(createQueens());
+      assertEquals(findSolutions(unlimited), expected);
+      assertFalse(unlimited.isFailureLimitReached());
+      assertThrows(IllegalArgumentException.class, () -> unlimited.setFailureLimit(-1));
+   }
+
+   @DataProvider
+   public static Object[][] selections() {
+      VariableSelection[] values = VariableSelection.values();
+      Object[][] result = new Object[values.length][];
+      for (int i = 0; i < values.length; i++) {
+         result[i] = new Object[] {values[i]};
+      }
+      return result;
+   }
+
+   @Test(dataProvider = "selections")
+   public void testVariableSelection(VariableSelection selection) {
+      List<String> expected = findSolutions(new BruteForceSearch(createQueens()));
+      Collections.sort(expected);
+      BruteForceSearch search = new BruteForceSearch(createQueens(), selection);
+      List<String> actual = findSolutions(search);
+      Collections.sort(actual);
+
+      // the same solutions are found, although possibly in a different order
+      assertEquals(actual, expected);
+   }
+
+   @Test
+   public void testRestartKeepsStatistics() {
+      ClpConstraintStore environment = createQueens();
+      BruteForceSearch first = new BruteForceSearch(environment, VariableSelection.DOMAIN_OVER_WEIGHTED_DEGREE);
+      first.next();
+      SearchStatistics statistics = first.getStatistics();
+      double totalWeight = getTotalWeight(environment, statistics);
+
+      BruteForceSearch restart = new BruteForceSearch(environment, VariableSelection.DOMAIN_OVER_WEIGHTED_DEGREE, statistics);
+      assertSame(restart.getStatistics(), statistics);
+      assertEquals(findSolutions(restart).size(), NUM_SOLUTIONS);
+      assertTrue(getTotalWeight(environment, statistics) > totalWeight);
+   }
+
+   @Test
+   public void testInvalidStatistics() {
+      ClpConstraintStore environment = createQueens();
+      SearchStatistics other = new SearchStatistics(createQueens().getModel());
+      assertThrows(IllegalArgumentException.class, () -> new BruteForceSearch(environment, VariableSelection.ACTIVITY, other));
+      assertThrows(IllegalArgumentException.class, () -> new BruteForceSearch(environment, VariableSelection.ACTIVITY, null));
+   }
+
+   private static double getTotalWeight(ClpConstraintStore environment, SearchStatistics statistics) {
+      double total = 0;
+      for (int i = 0; i < environment.getModel().constraints.length; i++) {
+         total += statistics.getWeight(i);
+      }
+      return total;
+   }
+
+   private static ClpConstraintStore createQueens() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Queens.addQueens(builder, NUM_QUEENS);
+      ClpConstraintStore environment = builder.build();
+      environment.resolve();
+      return environment;
+   }
+
+   private static List<String> findSolutions(BruteForceSearch search) {
+      List<String> solutions = new ArrayList<>();
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         StringBuilder sb = new StringBuilder();
+         for (int i = 0; i < NUM_QUEENS; i++) {
+            sb.append(solution.getValue(solution.getVariable(i)));
+         }
+         solutions.add(sb.toString());
+      }
+      return solutions;
+   }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.projog.clp.compare.EqualTo;
+import org.projog.clp.compare.LessThan;
+import org.projog.clp.math.Add;
+import org.testng.annotations.Test;
+
+public class CachedExpressionTest {
+   @Test
+   public void testBoundsReusedUntilVariableAltered() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setCacheBounds(true);
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      // slot 0 of the bounds cache is cleared when x is altered, and slot 1 when y is altered
+      builder.addConstraint(new LessThan(new Add(x, x), new FixedValue(10)));
+      builder.addConstraint(new LessThan(new Add(y, y), new FixedValue(10)));
+      ClpConstraintStore environment = builder.build();
+      x.setMin(environment, 0);
+      x.setMax(environment, 5);
+
+      BoundsCounter counter = new BoundsCounter(x);
+      CachedExpression e = new CachedExpression(0, counter);
+
+      assertEquals(e.getMin(environment), 0);
+      assertEquals(e.getMax(environment), 5);
+      assertEquals(e.getMin(environment), 0);
+      assertEquals(counter.ctr, 2);
+
+      // altering a variable that the expression does not refer to does not clear its cached bounds
+      y.setMin(environment, 7);
+      assertEquals(e.getMax(environment), 5);
+      assertEquals(counter.ctr, 2);
+
+      x.setMax(environment, 3);
+      assertEquals(e.getMax(environment), 3);
+      assertEquals(e.getMin(environment), 0);
+      assertEquals(counter.ctr, 4);
+
+      // copies have their own cache
+      ClpConstraintStore copy = environment.copy();
+      assertEquals(e.getMax(copy), 3);
+      assertEquals(counter.ctr, 6);
+      x.setMax(copy, 2);
+      assertEquals(e.getMax(copy), 2);
+      assertEquals(e.getMax(environment), 3);
+      assertEquals(counter.ctr, 8);
+   }
+
+   @Test
+   public void testBoundsClearedByPop() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setCacheBounds(true);
+      Variable x = builder.createVariable();
+      builder.addConstraint(new LessThan(new Add(x, x), new FixedValue(10)));
+      ClpConstraintStore environment = builder.build();
+      x.setMin(environment, 0);
+      x.setMax(environment, 5);
+
+      BoundsCounter counter = new BoundsCounter(x);
+      CachedExpression e = new CachedExpression(0, counter);
+
+      environment.push();
+      x.setMax(environment, 3);
+      assertEquals(e.getMax(environment), 3);
+      environment.pop();
+      assertEquals(e.getMax(environment), 5);
+      assertEquals(counter.ctr, 4);
+   }
+
+   /** The cached bounds of an expression are cleared when a variable that shares the state of its variable changes. */
+   @Test
+   public void testAliases() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setCacheBounds(true);
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.addConstraint(new EqualTo(x, y));
+      builder.addConstraint(new LessThan(new Add(x, z), new FixedValue(20)));
+      ClpConstraintStore environment = builder.build();
+      x.setMax(environment, 9);
+
+      BoundsCounter counter = new BoundsCounter(x);
+      CachedExpression e = new CachedExpression(0, counter);
+
+      assertEquals(e.getMax(environment), 9);
+      y.setMax(environment, 4);
+      assertEquals(e.getMax(environment), 4);
+      assertEquals(counter.ctr, 4);
+   }
+
+   @Test
+   public void testSetMinMaxUseCachedBounds() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setCacheBounds(true);
+      Variable x = builder.createVariable();
+      builder.addConstraint(new LessThan(new Add(x, x), new FixedValue(10)));
+      ClpConstraintStore environment = builder.build();
+      x.setMin(environment, 0);
+      x.setMax(environment, 5);
+
+      BoundsCounter counter = new BoundsCounter(x);
+      CachedExpression e = new CachedExpression(0, counter);
+
+      // restrictions that would not alter the expression, or that can never be satisfied, do not visit it
+      assertEquals(e.setMin(environment, -1), ExpressionResult.VALID);
+      assertEquals(e.setMax(environment, 5), ExpressionResult.VALID);
+      assertEquals(e.setMin(environment, 6), ExpressionResult.INVALID);
+      assertEquals(e.setMax(environment, -1), ExpressionResult.INVALID);
+      assertEquals(counter.ctr, 2);
+      assertEquals(counter.setCtr, 0);
+
+      assertEquals(e.setMin(environment, 2), ExpressionResult.VALID);
+      assertEquals(counter.setCtr, 1);
+      assertEquals(x.getMin(environment), 2);
+      assertEquals(e.getMin(environment), 2);
+   }
+
+   @Test
+   public void testOtherConstraintStore() {
+      ConstraintStore s = new DummyConstraintStore(new Variable(0), 7);
+      BoundsCounter counter = new BoundsCounter(new FixedValue(7));
+      CachedExpression e = new CachedExpression(0, counter);
+
+      assertEquals(e.getMin(s), 7);
+      assertEquals(e.getMin(s), 7);
+      assertEquals(counter.ctr, 2);
+   }
+
+   @Test
+   public void testBuilder() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setCacheBounds(true);
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 9);
+      builder.addConstraint(new LessThan(new Add(new Add(x, y), y), new FixedValue(4)));
+
+      ClpConstraintStore environment = builder.build();
+      environment.resolve();
+
+      assertEquals(x.getMax(environment), 3);
+      assertEquals(y.getMax(environment), 3);
+   }
+
+   /** Counts the number of times the bounds of an expression are requested. */
+   private static class BoundsCounter implements Expression {
+      private final Expression e;
+      private int ctr;
+      private int setCtr;
+
+      BoundsCounter(Expression e) {
+         this.e = e;
+      }
+
+      @Override
+      public long getMin(ReadConstraintStore s) {
+         ctr++;
+         return e.getMin(s);
+      }
+
+      @Override
+      public long getMax(ReadConstraintStore s) {
+         ctr++;
+         return e.getMax(s);
+      }
+
+      @Override
+      public ExpressionResult setMin(ConstraintStore s, long min) {
+         setCtr++;
+         return e.setMin(s, min);
+      }
+
+      @Override
+      public ExpressionResult setMax(ConstraintStore s, long max) {
+         setCtr++;
+         return e.setMax(s, max);
+      }
+
+      @Override
+      public void walk(Consumer<Expression> consumer) {
+         consumer.accept(this);
+         e.walk(consumer);
+      }
+
+      @Override
+      public Expression replace(Function<LeafExpression, LeafExpression> function) {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
@@ -0,0 +1,535 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.projog.clp.compare.EqualTo;
+import org.projog.clp.compare.LessThan;
+import org.projog.clp.compare.NotEqualTo;
+import org.projog.clp.math.Add;
+import org.testng.annotations.Test;
+
+public class ClpConstraintStoreTest {
+   @Test
+   public void testEqualVariablesShareState() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x).equalTo(y);
+      builder.addConstraint(new EqualTo(z, y));
+
+      ClpConstraintStore environment = builder.build();
+      assertSame(environment.getVariableState(0), environment.getVariableState(1));
+      assertSame(environment.getVariableState(0), environment.getVariableState(2));
+
+      z.setMin(environment, 3);
+      y.setMax(environment, 5);
+      assertEquals(3, x.getMin(environment));
+      assertEquals(5, x.getMax(environment));
+
+      ClpConstraintStore copy = environment.copy();
+      assertSame(copy.getVariableState(0), copy.getVariableState(2));
+      assertNotSame(environment.getVariableState(0), copy.getVariableState(0));
+      x.setValue(copy, 4);
+      assertEquals(4, copy.getValue(y));
+      assertEquals(4, copy.getValue(z));
+      assertEquals(3, z.getMin(environment));
+   }
+
+   @Test
+   public void testConstraintsOnAliasesAreWoken() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(y).between(1, 3);
+      builder.enforce(z).equalTo(new Add(y, new FixedValue(10)));
+      builder.enforce(x).equalTo(y);
+
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+      assertEquals(11, z.getMin(environment));
+      assertEquals(13, z.getMax(environment));
+
+      // restricting x should wake the constraint that refers to y
+      x.setMax(environment, 1);
+      assertTrue(environment.resolve());
+      assertEquals(11, environment.getValue(z));
+   }
+
+   @Test
+   public void testSearchWithAliases() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(1, 3);
+      builder.enforce(y).equalTo(x);
+      builder.enforce(x).notEqualTo(new FixedValue(2));
+
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+      BruteForceSearch search = new BruteForceSearch(environment);
+      ClpConstraintStore solution = search.next();
+      assertEquals(1, solution.getValue(x));
+      assertEquals(1, solution.getValue(y));
+      solution = search.next();
+      assertEquals(3, solution.getValue(x));
+      assertEquals(3, solution.getValue(y));
+      assertNull(search.next());
+   }
+
+   @Test
+   public void testConflictingAliases() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x).between(1, 3);
+      builder.enforce(y).between(5, 7);
+      builder.enforce(x).equalTo(y);
+
+      assertFalse(builder.build().resolve());
+   }
+
+   @Test
+   public void testEventSubscriptions() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      builder.enforce(x).between(0, 9);
+      EventCounter fix = new EventCounter(x, EnumSet.of(VariableEvent.FIX));
+      EventCounter min = new EventCounter(x, EnumSet.of(VariableEvent.MIN));
+      EventCounter bounds = new EventCounter(x, VariableEvent.bounds());
+      EventCounter domain = new EventCounter(x, EnumSet.of(VariableEvent.DOMAIN));
+      builder.addConstraint(fix);
+      builder.addConstraint(min);
+      builder.addConstraint(bounds);
+      builder.addConstraint(domain);
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+      assertEnforceCounts(1, 1, 1, 1, fix, min, bounds, domain);
+
+      // removing a value from within the range only raises DOMAIN
+      x.setNot(environment, 5);
+      assertTrue(environment.resolve());
+      assertEnforceCounts(1, 1, 1, 2, fix, min, bounds, domain);
+
+      // no events are raised if the possible values are unchanged
+      x.setMax(environment, 9);
+      assertTrue(environment.resolve());
+      assertEnforceCounts(1, 1, 1, 2, fix, min, bounds, domain);
+
+      x.setMax(environment, 7);
+      assertTrue(environment.resolve());
+      assertEnforceCounts(1, 1, 2, 3, fix, min, bounds, domain);
+
+      x.setMin(environment, 6);
+      assertTrue(environment.resolve());
+      assertEnforceCounts(1, 2, 3, 4, fix, min, bounds, domain);
+
+      // removing 6 also removes 5, which was already removed, so 7 is the only remaining value
+      x.setNot(environment, 6);
+      assertTrue(environment.resolve());
+      assertEquals(7, environment.getValue(x));
+      assertEnforceCounts(2, 3, 4, 5, fix, min, bounds, domain);
+   }
+
+   @Test
+   public void testPost() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 9);
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+
+      assertTrue(environment.post(new LessThan(x, y)));
+      assertBounds(environment, x, 0, 8);
+      assertBounds(environment, y, 1, 9);
+
+      // restrictions made by constraints of the model wake posted constraints
+      assertEquals(y.setMax(environment, 4), ExpressionResult.VALID);
+      assertTrue(environment.resolve());
+      assertBounds(environment, x, 0, 3);
+
+      // restrictions made by posted constraints wake other posted constraints
+      assertTrue(environment.post(new LessThan(new FixedValue(1), x)));
+      assertBounds(environment, x, 2, 3);
+      assertBounds(environment, y, 3, 4);
+
+      assertFalse(environment.post(new EqualTo(y, new FixedValue(2))));
+   }
+
+   @Test
+   public void testPostedConstraintsUsedBySearch() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 3);
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+      assertTrue(environment.post(new NotEqualTo(x, y)));
+
+      int solutionCtr = 0;
+      BruteForceSearch search = new BruteForceSearch(environment);
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         assertTrue(solution.getValue(x) != solution.getValue(y));
+         solutionCtr++;
+      }
+      assertEquals(solutionCtr, 12);
+   }
+
+   @Test
+   public void testPushPop() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 9);
+      builder.enforce(x).notEqualTo(y);
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+
+      environment.push();
+      assertTrue(environment.post(new LessThan(x, y)));
+      assertBounds(environment, x, 0, 8);
+
+      environment.push();
+      assertTrue(environment.post(new EqualTo(y, new FixedValue(5))));
+      assertBounds(environment, x, 0, 4);
+      assertBounds(environment, y, 5, 5);
+
+      environment.pop();
+      assertBounds(environment, x, 0, 8);
+      assertBounds(environment, y, 1, 9);
+
+      environment.pop();
+      assertBounds(environment, x, 0, 9);
+      assertBounds(environment, y, 0, 9);
+
+      // the posted constraints have been removed, so are not enforced when the variables are altered
+      assertEquals(x.setValue(environment, 9), ExpressionResult.VALID);
+      assertTrue(environment.resolve());
+      assertBounds(environment, y, 0, 8);
+      assertThrows(IllegalStateException.class, () -> environment.pop());
+   }
+
+   @Test
+   public void testNestedPushPopWithChangesBetweenPops() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      assertEquals(x.setMin(environment, 0), ExpressionResult.VALID);
+      assertEquals(x.setMax(environment, 100), ExpressionResult.VALID);
+
+      environment.push();
+      assertEquals(x.setMin(environment, 5), ExpressionResult.VALID);
+      environment.push();
+      assertEquals(x.setMin(environment, 7), ExpressionResult.VALID);
+      environment.pop();
+      assertBounds(environment, x, 5, 100);
+
+      // altered again after the inner checkpoint was restored, but before the outer checkpoint is restored
+      assertEquals(x.setMin(environment, 8), ExpressionResult.VALID);
+      environment.push();
+      assertEquals(x.setMax(environment, 50), ExpressionResult.VALID);
+      environment.pop();
+      assertEquals(x.setMin(environment, 9), ExpressionResult.VALID);
+      assertBounds(environment, x, 9, 100);
+
+      environment.pop();
+      assertBounds(environment, x, 0, 100);
+   }
+
+   @Test
+   public void testPopAfterFailure() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 9);
+      builder.enforce(x).lessThan(y);
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+
+      environment.push();
+      assertFalse(environment.post(new EqualTo(x, new FixedValue(9))));
+      environment.pop();
+
+      assertBounds(environment, x, 0, 8);
+      assertBounds(environment, y, 1, 9);
+      assertTrue(environment.post(new EqualTo(x, new FixedValue(7))));
+      assertBounds(environment, y, 8, 9);
+   }
+
+   @Test
+   public void testPopReactivatesPostedConstraints() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 9);
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+      assertTrue(environment.post(new LessThan(x, y)));
+
+      environment.push();
+      // the posted constraint is always satisfied once x is less than the minimum of y
+      assertEquals(y.setMin(environment, 5), ExpressionResult.VALID);
+      assertEquals(x.setMax(environment, 2), ExpressionResult.VALID);
+      assertTrue(environment.resolve());
+      environment.pop();
+
+      assertEquals(x.setMin(environment, 6), ExpressionResult.VALID);
+      assertTrue(environment.resolve());
+      assertBounds(environment, y, 7, 9);
+   }
+
+   @Test
+   public void testCheckAssumptions() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x, y, z).between(0, 9);
+      builder.enforce(new Add(x, y)).equalTo(z);
+      ClpConstraintStore environment = builder.build();
+
+      assertTrue(environment.checkAssumptions(new EqualTo(x, new FixedValue(3)), new LessThan(y, new FixedValue(5))));
+      assertFalse(environment.checkAssumptions(new EqualTo(x, new FixedValue(3)), new LessThan(z, new FixedValue(3))));
+      assertTrue(environment.checkAssumptions());
+
+      // the store is not altered
+      assertBounds(environment, x, 0, 9);
+      assertBounds(environment, y, 0, 9);
+      assertBounds(environment, z, 0, 9);
+   }
+
+   @Test
+   public void testCheckAssumptionsWithinCheckpoint() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 9);
+      builder.enforce(x).lessThan(y);
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+
+      environment.push();
+      assertEquals(x.setMin(environment, 2), ExpressionResult.VALID);
+      assertTrue(environment.resolve());
+      assertTrue(environment.checkAssumptions(new EqualTo(y, new FixedValue(5))));
+      assertEquals(x.setMin(environment, 4), ExpressionResult.VALID);
+      assertTrue(environment.resolve());
+      assertBounds(environment, x, 4, 8);
+      assertBounds(environment, y, 5, 9);
+
+      environment.pop();
+      assertBounds(environment, x, 0, 8);
+      assertBounds(environment, y, 1, 9);
+   }
+
+   @Test
+   public void testSmallestDomainSharedWithCopies() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x).between(0, 5);
+      builder.enforce(y).between(0, 7);
+      builder.enforce(z).between(0, 9);
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+      assertEquals(environment.getSmallestDomain(null), 0);
+
+      ClpConstraintStore first = environment.copy();
+      assertEquals(x.setValue(first, 1), ExpressionResult.VALID);
+      assertEquals(first.getSmallestDomain(null), 1);
+
+      // the original store, and a copy of it, are not affected by the changes made to the first copy
+      ClpConstraintStore second = environment.copy();
+      assertEquals(second.getSmallestDomain(null), 0);
+      assertEquals(z.setMax(second, 2), ExpressionResult.VALID);
+      assertEquals(second.getSmallestDomain(null), 2);
+      assertEquals(environment.getSmallestDomain(null), 0);
+
+      // the version used by the first copy was discarded when the original store was restored
+      assertEquals(first.getSmallestDomain(null), 1);
+      assertEquals(second.getSmallestDomain(null), 2);
+   }
+
+   @Test
+   public void testSmallestDomainRestoredByPop() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x).between(0, 5);
+      builder.enforce(y).between(0, 7);
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+      assertEquals(environment.getSmallestDomain(null), 0);
+
+      assertEquals(environment.getUnfixedCount(), 2);
+
+      environment.push();
+      assertEquals(y.setMax(environment, 1), ExpressionResult.VALID);
+      assertEquals(environment.getSmallestDomain(null), 1);
+      assertEquals(x.setValue(environment, 3), ExpressionResult.VALID);
+      assertEquals(environment.getUnfixedCount(), 1);
+      environment.pop();
+
+      assertEquals(environment.getSmallestDomain(null), 0);
+      assertEquals(environment.getUnfixedCount(), 2);
+   }
+
+   @Test
+   public void testFindConflictingAssumptions() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x, y, z).between(0, 9);
+      builder.enforce(new Add(x, y)).equalTo(z);
+      ClpConstraintStore environment = builder.build();
+      Constraint xIs3 = new EqualTo(x, new FixedValue(3));
+      Constraint yIs2 = new EqualTo(y, new FixedValue(2));
+      Constraint yBelow5 = new LessThan(y, new FixedValue(5));
+      Constraint zBelow3 = new LessThan(z, new FixedValue(3));
+      Constraint zIs8 = new EqualTo(z, new FixedValue(8));
+
+      assertTrue(environment.findConflictingAssumptions(xIs3, yBelow5).isEmpty());
+      assertEquals(environment.findConflictingAssumptions(yIs2, xIs3, yBelow5, zBelow3), Arrays.asList(xIs3, zBelow3));
+      assertEquals(environment.findConflictingAssumptions(yBelow5, xIs3, yIs2, zIs8), Arrays.asList(yBelow5, xIs3, zIs8));
+      // the assumptions after the one that caused the failure are not considered
+      assertEquals(environment.findConflictingAssumptions(zBelow3, yIs2, xIs3, zIs8), Arrays.asList(zBelow3, xIs3));
+
+      assertBounds(environment, x, 0, 9);
+      assertBounds(environment, y, 0, 9);
+      assertBounds(environment, z, 0, 9);
+   }
+
+   @Test
+   public void testEnforceSingletonConsistency() {
+      ClpConstraintStore environment = createPigeonholes(1, 2, 0, 3);
+
+      assertTrue(environment.enforceSingletonConsistency(false));
+
+      // 1 and 2 are both needed by x and y, so z can only be 0 or 3
+      assertBounds(environment, environment.getVariable(2), 0, 3);
+      assertTrue(environment.getVariableState(2).contains(0));
+      assertFalse(environment.getVariableState(2).contains(1));
+      assertFalse(environment.getVariableState(2).contains(2));
+      assertTrue(environment.getVariableState(2).contains(3));
+   }
+
+   @Test
+   public void testEnforceSingletonConsistencyBoundsOnly() {
+      ClpConstraintStore environment = createPigeonholes(1, 2, 0, 3);
+      assertTrue(environment.enforceSingletonConsistency(true));
+      // the bounds of z do not fail, so no values are removed
+      assertEquals(environment.getVariableState(2).count(), 4);
+
+      environment = createPigeonholes(1, 2, 1, 4);
+      assertTrue(environment.enforceSingletonConsistency(true));
+      assertBounds(environment, environment.getVariable(2), 3, 4);
+   }
+
+   @Test
+   public void testEnforceSingletonConsistencyFailure() {
+      ClpConstraintStore environment = createPigeonholes(0, 1, 0, 1);
+      // not detected by enforcing the constraints
+      assertTrue(environment.resolve());
+
+      assertFalse(environment.enforceSingletonConsistency(true));
+   }
+
+   /** Returns a store containing variables x, y and z - where x and y are in the same range and all are distinct. */
+   private static ClpConstraintStore createPigeonholes(int xyMin, int xyMax, int zMin, int zMax) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x, y).between(xyMin, xyMax);
+      builder.enforce(z).between(zMin, zMax);
+      builder.enforce(x, y, z).distinct();
+      return builder.build();
+   }
+
+   private static void assertBounds(ClpConstraintStore environment, Variable v, long min, long max) {
+      assertEquals(v.getMin(environment), min);
+      assertEquals(v.getMax(environment), max);
+   }
+
+   private static void assertEnforceCounts(int fix, int min, int bounds, int domain, EventCounter... counters) {
+      assertEquals(fix, counters[0].enforceCtr);
+      assertEquals(min, counters[1].enforceCtr);
+      assertEquals(bounds, counters[2].enforceCtr);
+      assertEquals(domain, counters[3].enforceCtr);
+   }
+
+   /** Counts how many times it is enforced. */
+   private static class EventCounter implements Constraint {
+      private final Variable v;
+      private final Set<VariableEvent> events;
+      private int enforceCtr;
+
+      EventCounter(Variable v, Set<VariableEvent> events) {
+         this.v = v;
+         this.events = events;
+      }
+
+      @Override
+      public ConstraintResult enforce(ConstraintStore constraintStore) {
+         enforceCtr++;
+         return ConstraintResult.UNRESOLVED;
+      }
+
+      @Override
+      public ConstraintResult prevent(ConstraintStore constraintStore) {
+         throw new UnsupportedOperationException();
+      }
+
+      @Override
+      public ConstraintResult reify(ReadConstraintStore constraintStore) {
+         return ConstraintResult.UNRESOLVED;
+      }
+
+      @Override
+      public Set<VariableEvent> getSubscribedEvents() {
+         return events;
+      }
+
+      @Override
+      public void walk(Consumer<Expression> consumer) {
+         v.walk(consumer);
+      }
+
+      @Override
+      public Constraint replace(Function<LeafExpression, LeafExpression> function) {
+         throw new UnsupportedOperationException();
+      }
+   }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.projog.clp.bool.Not;
+import org.projog.clp.compare.EqualTo;
+import org.projog.clp.compare.LessThan;
+import org.projog.clp.compare.NotEqualTo;
+import org.projog.clp.example.Queens;
+import org.projog.clp.math.Absolute;
+import org.projog.clp.math.Add;
+import org.projog.clp.math.Divide;
+import org.projog.clp.math.LinearExpression;
+import org.projog.clp.math.Multiply;
+import org.projog.clp.math.Subtract;
+import org.testng.annotations.Test;
+
+public class CommonSubexpressionsTest {
+   @Test
+   public void testNoDuplicates() {
+      Variable x = new Variable(0);
+      Variable y = new Variable(1);
+      List<Constraint> constraints = Arrays.asList(new LessThan(new Add(x, y), new FixedValue(7)), new NotEqualTo(new Subtract(x, y), new FixedValue(3)));
+
+      CommonSubexpressions cse = new CommonSubexpressions(constraints, 2);
+
+      assertEquals(cse.getConstraints(), constraints);
+      assertTrue(cse.getAuxiliaryVariables().isEmpty());
+   }
+
+   @Test
+   public void testDuplicates() {
+      Variable x = new Variable(0);
+      Variable y = new Variable(1);
+      Variable z = new Variable(2);
+      List<Constraint> constraints = Arrays.asList(new LessThan(new Add(x, y), new FixedValue(7)), new NotEqualTo(new Add(x, y), new FixedValue(3)),
+               new LessThan(z, new Add(x, y)));
+
+      CommonSubexpressions cse = new CommonSubexpressions(constraints, 3);
+
+      assertEquals(cse.getAuxiliaryVariables().size(), 1);
+      Variable auxiliary = cse.getAuxiliaryVariables().get(0);
+      assertEquals(auxiliary.getId(), 3);
+      List<Constraint> result = cse.getConstraints();
+      assertEquals(result.size(), 4);
+      assertEquals(result.get(0).toString(), "LessThan [left=Variable [id=3], right=FixedValue [value=7]]");
+      assertEquals(result.get(1).toString(), "NotEqualTo [left=Variable [id=3], right=FixedValue [value=3]]");
+      assertEquals(result.get(2).toString(), "LessThan [left=Variable [id=2], right=Variable [id=3]]");
+      assertEquals(result.get(3).toString(), "EqualTo [left=Variable [id=3], right=Add [left=Variable [id=0], right=Variable [id=1]]]");
+   }
+
+   @Test
+   public void testNestedDuplicates() {
+      Variable x = new Variable(0);
+      Variable y = new Variable(1);
+      List<Constraint> constraints = Arrays.asList(new LessThan(new Absolute(new Subtract(x, y)), new FixedValue(4)),
+               new NotEqualTo(new Absolute(new Subtract(x, y)), new FixedValue(2)));
+
+      CommonSubexpressions cse = new CommonSubexpressions(constraints, 2);
+
+      assertEquals(cse.getAuxiliaryVariables().size(), 2);
+      List<Constraint> result = cse.getConstraints();
+      assertEquals(result.size(), 4);
+      assertEquals(result.get(0).toString(), "LessThan [left=Variable [id=3], right=FixedValue [value=4]]");
+      assertEquals(result.get(1).toString(), "NotEqualTo [left=Variable [id=3], right=FixedValue [value=2]]");
+      assertEquals(result.get(2).toString(), "EqualTo [left=Variable [id=2], right=Subtract [left=Variable [id=0], right=Variable [id=1]]]");
+      assertEquals(result.get(3).toString(), "EqualTo [left=Variable [id=3], right=Absolute [e=Variable [id=2]]]");
+      assertEquals(cse.getDefinitions().toString(), "[Subtract [left=Variable [id=0], right=Variable [id=1]], Absolute [e=Variable [id=2]]]");
+   }
+
+   @Test
+   public void testCommutativeArgumentsInDifferentOrder() {
+      Variable x = new Variable(0);
+      Variable y = new Variable(1);
+      List<Constraint> constraints = Arrays.asList(new LessThan(new Multiply(x, y), new FixedValue(7)), new NotEqualTo(new Multiply(y, x), new FixedValue(3)));
+
+      CommonSubexpressions cse = new CommonSubexpressions(constraints, 2);
+
+      assertEquals(cse.getAuxiliaryVariables().size(), 1);
+      List<Constraint> result = cse.getConstraints();
+      assertEquals(result.size(), 3);
+      assertEquals(result.get(0).toString(), "LessThan [left=Variable [id=2], right=FixedValue [value=7]]");
+      assertEquals(result.get(1).toString(), "NotEqualTo [left=Variable [id=2], right=FixedValue [value=3]]");
+      assertEquals(result.get(2).toString(), "EqualTo [left=Variable [id=2], right=Multiply [left=Variable [id=0], right=Variable [id=1]]]");
+   }
+
+   @Test
+   public void testSubtractAndNegation() {
+      Variable x = new Variable(0);
+      Variable y = new Variable(1);
+      Subtract xy = new Subtract(x, y);
+      Subtract yx = new Subtract(y, x);
+      List<Constraint> constraints = Arrays.asList(new NotEqualTo(new FixedValue(1), xy), new NotEqualTo(new FixedValue(1), yx));
+
+      CommonSubexpressions cse = new CommonSubexpressions(constraints, 2);
+
+      // whichever of the two is used as the definition, the other is replaced by a negated view of the same variable
+      Subtract definition = xy.hashCode() < yx.hashCode() ? xy : yx;
+      String negated = "VariableView [e=Variable [id=2], scale=-1, offset=0]";
+      assertEquals(cse.getAuxiliaryVariables().size(), 1);
+      assertEquals(cse.getDefinitions(), Arrays.asList(definition));
+      List<Constraint> result = cse.getConstraints();
+      assertEquals(result.size(), 3);
+      assertEquals(result.get(0).toString(), "NotEqualTo [left=FixedValue [value=1], right=" + (definition == xy ? "Variable [id=2]" : negated) + "]");
+      assertEquals(result.get(1).toString(), "NotEqualTo [left=FixedValue [value=1], right=" + (definition == yx ? "Variable [id=2]" : negated) + "]");
+      assertEquals(result.get(2).toString(), new EqualTo(new Variable(2), definition).toString());
+   }
+
+   @Test
+   public void testLinearExpressionAndNegation() {
+      Variable x = new Variable(0);
+      Variable y = new Variable(1);
+      Variable z = new Variable(2);
+      Expression e1 = new Add(new Subtract(x, y), new Multiply(new FixedValue(2), z)).rewrite(LinearExpression::compile);
+      Expression e2 = new Subtract(new Subtract(y, new Multiply(z, new FixedValue(2))), x).rewrite(LinearExpression::compile);
+      assertEquals(((LinearExpression) e1).negate(), e2);
+      List<Constraint> constraints = Arrays.asList(new NotEqualTo(e1, new FixedValue(1)), new NotEqualTo(e2, new FixedValue(1)));
+
+      CommonSubexpressions cse = new CommonSubexpressions(constraints, 3);
+
+      assertEquals(cse.getAuxiliaryVariables().size(), 1);
+      assertEquals(cse.getConstraints().size(), 3);
+   }
+
+   /** The differences between the positions of each pair of queens are shared - see {@link Queens}. */
+   @Test
+   public void testQueensDifferencesShared() {
+      int numQueens = 8;
+      Variable[] variables = new Variable[numQueens];
+      for (int i = 0; i < numQueens; i++) {
+         variables[i] = new Variable(i);
+      }
+      List<Constraint> constraints = Queens.createDiagonalConstraints(variables);
+
+      CommonSubexpressions cse = new CommonSubexpressions(constraints, numQueens);
+
+      int numPairs = numQueens * (numQueens - 1) / 2;
+      assertEquals(cse.getAuxiliaryVariables().size(), numPairs);
+      assertEquals(cse.getConstraints().size(), numPairs * 3);
+   }
+
+   @Test
+   public void testDivideNotReplaced() {
+      Variable x = new Variable(0);
+      Variable y = new Variable(1);
+      List<Constraint> constraints = Arrays.asList(new LessThan(new Divide(x, y), new FixedValue(7)), new NotEqualTo(new Divide(x, y), new FixedValue(3)));
+
+      CommonSubexpressions cse = new CommonSubexpressions(constraints, 2);
+
+      assertEquals(cse.getConstraints(), constraints);
+      assertTrue(cse.getAuxiliaryVariables().isEmpty());
+   }
+
+   /** Replacing a sub-expression of a domain consistent constraint would reduce it to bounds consistency. */
+   @Test
+   public void testDomainConsistentNotReplaced() {
+      Variable x = new Variable(0);
+      Variable y = new Variable(1);
+      Constraint domain = new EqualTo(new Add(x, y), new FixedValue(5), Consistency.DOMAIN);
+      List<Constraint> constraints = Arrays.asList(domain, new NotEqualTo(new Add(x, y), new FixedValue(3)), new LessThan(new Add(x, y), new FixedValue(7)));
+
+      CommonSubexpressions cse = new CommonSubexpressions(constraints, 2);
+
+      assertEquals(cse.getAuxiliaryVariables().size(), 1);
+      List<Constraint> result = cse.getConstraints();
+      assertEquals(result.size(), 4);
+      assertSame(result.get(0), domain);
+      assertEquals(result.get(1).toString(), "NotEqualTo [left=Variable [id=2], right=FixedValue [value=3]]");
+      assertEquals(result.get(2).toString(), "LessThan [left=Variable [id=2], right=FixedValue [value=7]]");
+   }
+
+   /** A domain consistent constraint nested in another constraint is also not altered. */
+   @Test
+   public void testNestedDomainConsistentNotReplaced() {
+      Variable x = new Variable(0);
+      Variable y = new Variable(1);
+      Variable z = new Variable(2);
+      List<Constraint> constraints = Arrays.asList(new Not(new EqualTo(new Add(x, y), z, Consistency.DOMAIN)),
+               new EqualTo(new Add(x, y), new FixedValue(5), Consistency.DOMAIN));
+
+      CommonSubexpressions cse = new CommonSubexpressions(constraints, 3);
+
+      assertEquals(cse.getConstraints(), constraints);
+      assertTrue(cse.getAuxiliaryVariables().isEmpty());
+   }
+
+   @Test
+   public void testBuilderKeepsDomainConsistency() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setEliminateCommonSubexpressions(true);
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x, y).between(0, 1);
+      builder.enforce(z).between(0, 20);
+      Expression sum = new Add(new Multiply(new FixedValue(5), x), new Multiply(new FixedValue(5), y));
+      builder.addConstraint(new EqualTo(sum, z, Consistency.DOMAIN));
+      builder.addConstraint(new NotEqualTo(sum, new FixedValue(15)));
+
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+
+      // only known if the domain consistent constraint still refers to x and y, rather than to an auxiliary variable
+      assertEquals(environment.getVariableState(z.getId()).toString(), "{0, 5, 10}");
+   }
+
+   @Test
+   public void testBuilder() {
+      Set<String> expected = findSolutions(false);
+      Set<String> actual = findSolutions(true);
+
+      assertEquals(actual, expected);
+      assertEquals(actual.size(), 14);
+   }
+
+   private static Set<String> findSolutions(boolean eliminateCommonSubexpressions) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setEliminateCommonSubexpressions(eliminateCommonSubexpressions);
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x, y, z).between(0, 5);
+      builder.addConstraint(new LessThan(new Absolute(new Subtract(x, y)), new FixedValue(3)));
+      builder.addConstraint(new NotEqualTo(new Absolute(new Subtract(x, y)), new FixedValue(1)));
+      builder.addConstraint(new EqualTo(z, new Absolute(new Subtract(x, y))));
+
+      ClpConstraintStore environment = builder.build();
+      assertEquals(environment.getVariablesCount(), 3);
+      assertSame(environment.getVariable(0), x);
+      assertTrue(environment.resolve());
+
+      Set<String> solutions = new HashSet<>();
+      BruteForceSearch search = new BruteForceSearch(environment);
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         solutions.add(solution.getValue(x) + " " + solution.getValue(y) + " " + solution.getValue(z));
+      }
+      return solutions;
+   }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.projog.clp.compare.LessThan;
+import org.projog.clp.compare.NotEqualTo;
+import org.projog.clp.math.Add;
+import org.testng.annotations.Test;
+
+public class ComponentSearchTest {
+   @Test
+   public void testGetComponents() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable a = builder.createVariable();
+      Variable b = builder.createVariable();
+      Variable c = builder.createVariable();
+      Variable d = builder.createVariable();
+      Variable e = builder.createVariable();
+      Variable f = builder.createVariable();
+      builder.addConstraint(new LessThan(a, d));
+      builder.addConstraint(new NotEqualTo(c, new Add(d, new FixedValue(1))));
+      builder.enforce(b).equalTo(e);
+
+      List<int[]> components = builder.build().getComponents();
+
+      assertEquals(components.size(), 3);
+      assertTrue(Arrays.equals(components.get(0), new int[] {0, 2, 3}));
+      assertTrue(Arrays.equals(components.get(1), new int[] {1, 4}));
+      assertTrue(Arrays.equals(components.get(2), new int[] {5}));
+   }
+
+   @Test
+   public void testSameSolutionsAsBruteForceSearch() {
+      ClpConstraintStore environment = createIndependentGroups();
+
+      Set<String> expected = new HashSet<>();
+      BruteForceSearch bruteForceSearch = new BruteForceSearch(environment);
+      ClpConstraintStore solution;
+      while ((solution = bruteForceSearch.next()) != null) {
+         assertTrue(expected.add(toString(solution)));
+      }
+
+      Set<String> actual = new HashSet<>();
+      ComponentSearch componentSearch = new ComponentSearch(environment);
+      assertEquals(componentSearch.getComponentCount(), 3);
+      while ((solution = componentSearch.next()) != null) {
+         assertTrue(actual.add(toString(solution)));
+      }
+      assertNull(componentSearch.next());
+
+      assertEquals(actual, expected);
+      // x != y: 6 solutions, a < b: 6 solutions, z: 2 solutions
+      assertEquals(actual.size(), 6 * 6 * 2);
+   }
+
+   @Test
+   public void testComponentWithNoSolutions() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable a = builder.createVariable();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(a, x, y, z).between(0, 1);
+      // three variables can not all have different values when there are only two possible values,
+      // but this is not detected by bounds propagation
+      builder.addConstraint(new NotEqualTo(x, y));
+      builder.addConstraint(new NotEqualTo(x, z));
+      builder.addConstraint(new NotEqualTo(y, z));
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+
+      ComponentSearch search = new ComponentSearch(environment);
+
+      assertEquals(search.getComponentCount(), 2);
+      assertNull(search.next());
+      assertNull(search.next());
+   }
+
+   private static ClpConstraintStore createIndependentGroups() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable a = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable b = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x, y).between(0, 2);
+      builder.enforce(a, b).between(0, 3);
+      builder.enforce(z).between(5, 6);
+      builder.addConstraint(new NotEqualTo(x, y));
+      builder.addConstraint(new LessThan(a, b));
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+      return environment;
+   }
+
+   private static String toString(ClpConstraintStore solution) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < solution.getVariablesCount(); i++) {
+         sb.append(solution.getValue(solution.getVariable(i))).append(' ');
+      }
+      return sb.toString();
+   }
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.testng.annotations.Test;
+
+public class ConstraintQueueTest {
+   private static final PropagationCost[] COSTS = {PropagationCost.HIGH, PropagationCost.LOW, PropagationCost.MEDIUM, PropagationCost.LOW};
+
+   @Test
+   public void testFifo() {
+      ConstraintQueue q = new ConstraintQueue(Scheduling.FIFO, COSTS);
+      assertTrue(q.isEmpty());
+      addAll(q, 2, 0, 3, 1);
+      assertPolled(q, 2, 0, 3, 1);
+   }
+
+   @Test
+   public void testLifo() {
+      ConstraintQueue q = new ConstraintQueue(Scheduling.LIFO, COSTS);
+      addAll(q, 2, 0, 3, 1);
+      assertPolled(q, 1, 3, 0, 2);
+   }
+
+   @Test
+   public void testPriority() {
+      ConstraintQueue q = new ConstraintQueue(Scheduling.PRIORITY, COSTS);
+      addAll(q, 2, 0, 3, 1);
+      assertPolled(q, 3, 1, 2, 0);
+   }
+
+   @Test
+   public void testDuplicatesIgnored() {
+      ConstraintQueue q = new ConstraintQueue(Scheduling.FIFO, COSTS);
+      addAll(q, 1, 2, 1, 2, 1);
+      assertPolled(q, 1, 2);
+
+      // once polled, a constraint can be added again
+      addAll(q, 2, 1);
+      assertPolled(q, 2, 1);
+   }
+
+   @Test
+   public void testWrapsAround() {
+      ConstraintQueue q = new ConstraintQueue(Scheduling.FIFO, COSTS);
+      addAll(q, 0, 1, 2);
+      assertEquals(0, q.poll());
+      assertEquals(1, q.poll());
+      addAll(q, 3, 0, 1);
+      assertPolled(q, 2, 3, 0, 1);
+   }
+
+   /** The buffers start small, so must keep the order of their contents when they grow. */
+   @Test
+   public void testGrows() {
+      PropagationCost[] costs = new PropagationCost[20];
+      Arrays.fill(costs, PropagationCost.LOW);
+      int[] ids = new int[costs.length];
+      for (int i = 0; i < ids.length; i++) {
+         ids[i] = i;
+      }
+
+      ConstraintQueue fifo = new ConstraintQueue(Scheduling.FIFO, costs);
+      // move the head of the buffer away from the start before it grows
+      addAll(fifo, 19, 18, 17);
+      assertPolled(fifo, 19, 18, 17);
+      addAll(fifo, 3, 4, 5, 6, 7);
+      assertEquals(fifo.poll(), 3);
+      addAll(fifo, ids);
+      assertPolled(fifo, 4, 5, 6, 7, 0, 1, 2, 3, 8, 9, 10, 11, 12, 13, 14, 15, 16, 17, 18, 19);
+
+      ConstraintQueue lifo = new ConstraintQueue(Scheduling.LIFO, costs);
+      addAll(lifo, ids);
+      assertPolled(lifo, 19, 18, 17, 16, 15, 14, 13, 12, 11, 10, 9, 8, 7, 6, 5, 4, 3, 2, 1, 0);
+   }
+
+   @Test
+   public void testEmptyCopy() {
+      ConstraintQueue original = new ConstraintQueue(Scheduling.PRIORITY, COSTS);
+      addAll(original, 0, 1);
+
+      ConstraintQueue copy = original.emptyCopy();
+      assertTrue(copy.isEmpty());
+      assertEquals(Scheduling.PRIORITY, copy.getScheduling());
+      addAll(copy, 2, 3);
+      assertPolled(copy, 3, 2);
+      assertPolled(original, 1, 0);
+   }
+
+   private static void addAll(ConstraintQueue q, int... constraintIds) {
+      for (int id : constraintIds) {
+         q.add(id);
+      }
+   }
+
+   private static void assertPolled(ConstraintQueue q, int... expected) {
+      for (int id : expected) {
+         assertFalse(q.isEmpty());
+         assertEquals(id, q.poll());
+      }
+      assertTrue(q.isEmpty());
+   }
+}
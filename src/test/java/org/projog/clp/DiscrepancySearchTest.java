@@ -0,0 +1,161 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.projog.clp.example.Queens;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class DiscrepancySearchTest {
+   @DataProvider
+   public static Object[][] strategies() {
+      return new Object[][] {{DiscrepancyStrategy.LIMITED}, {DiscrepancyStrategy.DEPTH_BOUNDED}};
+   }
+
+   @Test(dataProvider = "strategies")
+   public void testFindsEverySolutionOnce(DiscrepancyStrategy strategy) {
+      for (int n = 4; n < 8; n++) {
+         List<String> expected = findSolutions(new BruteForceSearch(createQueens(n)), n);
+         Collections.sort(expected);
+         List<String> actual = findSolutions(new DiscrepancySearch(createQueens(n), strategy), n);
+         Collections.sort(actual);
+
+         assertEquals(actual, expected);
+      }
+   }
+
+   @Test(dataProvider = "strategies")
+   public void testNoSolutions(DiscrepancyStrategy strategy) {
+      DiscrepancySearch search = new DiscrepancySearch(createQueens(3), strategy);
+      assertNull(search.next());
+      assertNull(search.next());
+   }
+
+   @Test(dataProvider = "strategies")
+   public void testHeuristicPathIsFirst(DiscrepancyStrategy strategy) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x, y, z).between(0, 9);
+      ClpConstraintStore environment = builder.build();
+      environment.resolve();
+
+      DiscrepancySearch search = new DiscrepancySearch(environment, strategy);
+      assertEquals(search.getIteration(), -1);
+      ClpConstraintStore solution = search.next();
+      assertEquals(search.getIteration(), 0);
+      assertEquals(getSolution(solution, 3), "000");
+
+      // the next solution differs from the heuristic by a single discrepancy
+      solution = search.next();
+      assertEquals(search.getIteration(), 1);
+      assertEquals(count(solution, x, y, z), 1);
+   }
+
+   @Test
+   public void testLimitedOrder() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 2);
+      ClpConstraintStore environment = builder.build();
+      environment.resolve();
+
+      List<String> solutions = findSolutions(new DiscrepancySearch(environment, DiscrepancyStrategy.LIMITED), 2);
+
+      assertEquals(solutions.toString(), "[00, 01, 10, 02, 11, 20, 12, 21, 22]");
+   }
+
+   @Test
+   public void testDepthBoundedOrder() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 2);
+      ClpConstraintStore environment = builder.build();
+      environment.resolve();
+
+      List<String> solutions = findSolutions(new DiscrepancySearch(environment, DiscrepancyStrategy.DEPTH_BOUNDED), 2);
+
+      // discrepancies at the first variable are explored before discrepancies at the second
+      assertEquals(solutions.toString(), "[00, 10, 20, 01, 02, 11, 12, 21, 22]");
+   }
+
+   @Test(dataProvider = "strategies")
+   public void testAlreadySolved(DiscrepancyStrategy strategy) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      builder.enforce(x).between(3, 3);
+      ClpConstraintStore environment = builder.build();
+      environment.resolve();
+
+      DiscrepancySearch search = new DiscrepancySearch(environment, strategy);
+      ClpConstraintStore solution = search.next();
+      assertEquals(solution.getValue(x), 3);
+      assertNull(search.next());
+      assertNull(search.next());
+   }
+
+   private static long count(ClpConstraintStore s, Variable... variables) {
+      long total = 0;
+      for (Variable v : variables) {
+         total += s.getValue(v);
+      }
+      return total;
+   }
+
+   private static ClpConstraintStore createQueens(int n) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Queens.addQueens(builder, n);
+      ClpConstraintStore environment = builder.build();
+      environment.resolve();
+      return environment;
+   }
+
+   private static List<String> findSolutions(BruteForceSearch search, int n) {
+      List<String> solutions = new ArrayList<>();
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         solutions.add(getSolution(solution, n));
+      }
+      return solutions;
+   }
+
+   private static List<String> findSolutions(DiscrepancySearch search, int n) {
+      List<String> solutions = new ArrayList<>();
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         solutions.add(getSolution(solution, n));
+      }
+      return solutions;
+   }
+
+   private static String getSolution(ClpConstraintStore solution, int n) {
+      StringBuilder sb = new StringBuilder();
+      for (int i = 0; i < n; i++) {
+         sb.append(solution.getValue(solution.getVariable(i)));
+      }
+      return sb.toString();
+   }
+}
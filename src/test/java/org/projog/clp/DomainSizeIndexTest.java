@@ -0,0 +1,166 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.testng.annotations.Test;
+
+public class DomainSizeIndexTest {
+   @Test
+   public void testSelect() {
+      VariableState[] states = createStates(0, 5, 0, 2, 0, 9, 0, 2);
+
+      DomainSizeIndex index = new DomainSizeIndex(states);
+
+      // variables 1 and 3 both have 3 possible values
+      assertEquals(index.select(states, null), 1);
+      assertEquals(index.select(states, new boolean[] {true, false, true, true}), 3);
+      assertEquals(index.select(states, new boolean[] {true, false, true, false}), 0);
+      assertEquals(index.select(states, new boolean[] {false, false, true, false}), 2);
+      assertEquals(index.select(states, new boolean[4]), -1);
+   }
+
+   @Test
+   public void testUpdate() {
+      VariableState[] states = createStates(0, 5, 0, 2, 0, 9);
+      DomainSizeIndex index = new DomainSizeIndex(states);
+      assertEquals(index.size(), 3);
+
+      states[2].setMax(1);
+      index.update(2, states[2]);
+      assertEquals(index.select(states, null), 2);
+      assertEquals(index.size(), 3);
+
+      // variables with a single possible value are not selected
+      states[2].setValue(1);
+      index.update(2, states[2]);
+      states[1].setValue(0);
+      index.update(1, states[1]);
+      assertEquals(index.select(states, null), 0);
+
+      assertEquals(index.size(), 1);
+
+      states[0].setValue(3);
+      index.update(0, states[0]);
+      assertEquals(index.select(states, null), -1);
+      assertEquals(index.size(), 0);
+   }
+
+   @Test
+   public void testOverflow() {
+      VariableState[] states = createStates(0, 20, 0, 1000, 0, Long.MAX_VALUE);
+      DomainSizeIndex index = new DomainSizeIndex(states);
+      assertEquals(index.select(states, null), 0);
+
+      // a variable with a large range of possible values but only a few values within that range
+      for (int i = 1; i < 1000; i++) {
+         states[1].setNot(i);
+      }
+      assertEquals(states[1].count(), 2);
+      index.update(1, states[1]);
+      assertEquals(index.select(states, null), 1);
+      assertEquals(index.select(states, new boolean[] {false, false, true}), 2);
+   }
+
+   @Test
+   public void testWideDomainsGroupedByNumberOfValues() {
+      VariableState[] states = createStates(0, 999, 0, 99, 0, 199, 0, 127, 0, 100);
+      DomainSizeIndex index = new DomainSizeIndex(states);
+
+      // variables 1, 3 and 4 all have between 64 and 127 values, of which variable 1 has the fewest
+      assertEquals(index.select(states, null), 1);
+      assertEquals(index.select(states, new boolean[] {true, false, true, true, true}), 4);
+      assertEquals(index.select(states, new boolean[] {true, false, true, false, false}), 2);
+
+      states[0].setMax(70);
+      index.update(0, states[0]);
+      assertEquals(index.select(states, null), 0);
+   }
+
+   @Test
+   public void testRestore() {
+      VariableState[] states = createStates(0, 5, 0, 9, 0, 7);
+      DomainSizeIndex index = new DomainSizeIndex(states);
+      int original = index.getVersion();
+
+      int first = index.fork();
+      VariableState[] firstStates = {states[0].copy(), states[1].copy(), states[2].copy()};
+      firstStates[0].setValue(2);
+      index.update(0, firstStates[0]);
+      assertEquals(index.select(firstStates, null), 2);
+
+      int second = index.fork();
+      firstStates[2].setValue(2);
+      index.update(2, firstStates[2]);
+      assertEquals(index.select(firstStates, null), 1);
+      assertEquals(index.size(), 1);
+
+      // restoring a version undoes the moves made since the version was replaced
+      assertTrue(index.restore(first));
+      firstStates[2] = states[2].copy();
+      assertEquals(index.select(firstStates, null), 2);
+      assertFalse(index.restore(second));
+
+      assertTrue(index.restore(original));
+      assertEquals(index.select(states, null), 0);
+      assertEquals(index.size(), 3);
+      assertEquals(index.getVersion(), original);
+      assertFalse(index.restore(first));
+   }
+
+   @Test
+   public void testRestoreKeepsOrderWithinBucket() {
+      VariableState[] states = createStates(0, 2, 0, 2, 0, 2);
+      DomainSizeIndex index = new DomainSizeIndex(states);
+      int original = index.getVersion();
+      assertEquals(index.select(states, null), 0);
+
+      index.fork();
+      VariableState[] copyStates = {states[0].copy(), states[1].copy(), states[2].copy()};
+      for (int i = 0; i < copyStates.length; i++) {
+         copyStates[i].setMax(1);
+         index.update(i, copyStates[i]);
+      }
+      assertEquals(index.select(copyStates, null), 2);
+
+      assertTrue(index.restore(original));
+      assertEquals(index.select(states, null), 0);
+      assertEquals(index.select(states, new boolean[] {false, true, true}), 1);
+   }
+
+   @Test
+   public void testNullStatesNotIndexed() {
+      VariableState[] states = createStates(0, 5, 0, 2);
+      VariableState[] indexed = {states[0], null};
+
+      DomainSizeIndex index = new DomainSizeIndex(indexed);
+
+      assertEquals(index.select(states, null), 0);
+   }
+
+   private static VariableState[] createStates(long... bounds) {
+      VariableState[] states = new VariableState[bounds.length / 2];
+      for (int i = 0; i < states.length; i++) {
+         states[i] = new VariableState();
+         states[i].setMin(bounds[i * 2]);
+         states[i].setMax(bounds[i * 2 + 1]);
+      }
+      return states;
+   }
+}
@@ -67,6 +67,16 @@ public class FixedValueTest {
       assertSame(ExpressionResult.INVALID, f.setNot(null, value));
    }
 
+   @Test
+   public void testSetNotRange() {
+      int value = 7;
+      FixedValue f = new FixedValue(value);
+
+      assertSame(ExpressionResult.VALID, f.setNot(null, Long.MIN_VALUE, value - 1));
+      assertSame(ExpressionResult.VALID, f.setNot(null, value + 1, Long.MAX_VALUE));
+      assertSame(ExpressionResult.INVALID, f.setNot(null, value - 1, value + 1));
+   }
+
    @Test
    public void testReifyMatched() {
       FixedValue f = new FixedValue(1);
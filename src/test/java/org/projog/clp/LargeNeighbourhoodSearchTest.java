@@ -0,0 +1,152 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.projog.clp.math.Add;
+import org.projog.clp.math.Multiply;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class LargeNeighbourhoodSearchTest {
+   private static final int NUM_VARIABLES = 10;
+   /** The objective value when the highest values are given to the variables with the lowest weights. */
+   private static final long OPTIMUM = 165;
+   /** The objective value of the first solution found - when the lowest values are given to the lowest weights. */
+   private static final long INITIAL = 330;
+
+   @DataProvider
+   public static Object[][] neighbourhoods() {
+      Neighbourhood[] values = Neighbourhood.values();
+      Object[][] result = new Object[values.length][];
+      for (int i = 0; i < values.length; i++) {
+         result[i] = new Object[] {values[i]};
+      }
+      return result;
+   }
+
+   @Test(dataProvider = "neighbourhoods")
+   public void testNeighbourhood(Neighbourhood neighbourhood) {
+      Variable[] variables = new Variable[NUM_VARIABLES];
+      Model model = createModel(variables);
+      LargeNeighbourhoodSearch lns = new LargeNeighbourhoodSearch(model, createObjective(variables));
+      lns.setNeighbourhoods(neighbourhood);
+      lns.setNeighbourhoodSize(3);
+      lns.setSeed(42);
+
+      assertFalse(lns.hasSolution());
+      assertTrue(lns.solve(0));
+      assertEquals(lns.getObjectiveValue(), INITIAL);
+
+      assertTrue(lns.solve(500));
+      assertEquals(lns.getObjectiveValue(), OPTIMUM);
+      assertSolution(lns, variables);
+   }
+
+   @Test
+   public void testMultipleThreads() {
+      Variable[] variables = new Variable[NUM_VARIABLES];
+      Model model = createModel(variables);
+      LargeNeighbourhoodSearch lns = new LargeNeighbourhoodSearch(model, createObjective(variables));
+      lns.setNeighbourhoodSize(3);
+
+      assertTrue(lns.solve(500, 4));
+      assertEquals(lns.getObjectiveValue(), OPTIMUM);
+      assertSolution(lns, variables);
+   }
+
+   @Test
+   public void testNoSolutions() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] variables = new Variable[3];
+      for (int i = 0; i < variables.length; i++) {
+         variables[i] = builder.createVariable();
+      }
+      builder.enforce(variables).distinct().between(0, 1);
+      LargeNeighbourhoodSearch lns = new LargeNeighbourhoodSearch(builder.buildModel(), variables[0]);
+
+      assertFalse(lns.solve(10));
+      assertFalse(lns.hasSolution());
+      assertThrows(IllegalStateException.class, () -> lns.getObjectiveValue());
+      assertThrows(IllegalStateException.class, () -> lns.getValue(variables[0]));
+   }
+
+   @Test
+   public void testParameters() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable p = builder.createParameter();
+      builder.enforce(x, y).between(0, 9);
+      builder.enforce(new Add(x, y)).equalTo(p);
+      Model model = builder.buildModel();
+
+      assertThrows(IllegalArgumentException.class, () -> new LargeNeighbourhoodSearch(model, x));
+      LargeNeighbourhoodSearch lns = new LargeNeighbourhoodSearch(model, new Multiply(new FixedValue(-1), x), 12);
+      lns.setNeighbourhoodSize(2);
+      assertTrue(lns.solve(100));
+      assertEquals(lns.getObjectiveValue(), -9);
+      assertEquals(lns.getValue(x), 9);
+      assertEquals(lns.getValue(y), 3);
+   }
+
+   @Test
+   public void testInvalidSettings() {
+      Variable[] variables = new Variable[NUM_VARIABLES];
+      LargeNeighbourhoodSearch lns = new LargeNeighbourhoodSearch(createModel(variables), createObjective(variables));
+      assertThrows(IllegalArgumentException.class, () -> lns.setNeighbourhoods());
+      assertThrows(IllegalArgumentException.class, () -> lns.setNeighbourhoodSize(0));
+      assertThrows(IllegalArgumentException.class, () -> lns.setFailureLimit(-1));
+      assertThrows(IllegalArgumentException.class, () -> lns.solve(1, 0));
+   }
+
+   private static void assertSolution(LargeNeighbourhoodSearch lns, Variable[] variables) {
+      Set<Long> values = new HashSet<>();
+      long total = 0;
+      for (int i = 0; i < variables.length; i++) {
+         long value = lns.getValue(variables[i]);
+         values.add(value);
+         total += (i + 1) * value;
+      }
+      assertEquals(values.size(), NUM_VARIABLES);
+      assertEquals(total, lns.getObjectiveValue());
+   }
+
+   private static Model createModel(Variable[] variables) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      for (int i = 0; i < variables.length; i++) {
+         variables[i] = builder.createVariable();
+      }
+      builder.enforce(variables).distinct().between(0, NUM_VARIABLES - 1);
+      return builder.buildModel();
+   }
+
+   /** Returns the sum of each variable multiplied by one more than its index. */
+   private static Expression createObjective(Variable[] variables) {
+      Expression objective = variables[0];
+      for (int i = 1; i < variables.length; i++) {
+         objective = new Add(objective, new Multiply(new FixedValue(i + 1), variables[i]));
+      }
+      return objective;
+   }
+}
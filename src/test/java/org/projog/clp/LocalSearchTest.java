@@ -0,0 +1,172 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import org.projog.clp.compare.EqualTo;
+import org.projog.clp.compare.NotEqualTo;
+import org.projog.clp.example.Queens;
+import org.projog.clp.math.Absolute;
+import org.projog.clp.math.Add;
+import org.projog.clp.math.Subtract;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+public class LocalSearchTest {
+   @DataProvider
+   public static Object[][] queens() {
+      return new Object[][] {{8}, {30}, {100}};
+   }
+
+   @Test(dataProvider = "queens")
+   public void testQueens(int n) {
+      Variable[] variables = new Variable[n];
+      Model model = createQueens(variables, false);
+      LocalSearch search = new LocalSearch(model);
+      search.setSeed(n);
+
+      assertTrue(search.solve(100000));
+      assertEquals(search.getViolationCount(), 0);
+      assertSolution(model, variables, search);
+   }
+
+   @Test
+   public void testCommonSubexpressions() {
+      Variable[] variables = new Variable[8];
+      Model model = createQueens(variables, true);
+      assertTrue(model.auxiliaryVariableCtr > 0);
+      LocalSearch search = new LocalSearch(model);
+      search.setSeed(1);
+
+      assertTrue(search.solve(100000));
+      assertSolution(model, variables, search);
+   }
+
+   @Test
+   public void testContinue() {
+      Variable[] variables = new Variable[30];
+      Model model = createQueens(variables, false);
+      LocalSearch search = new LocalSearch(model);
+      search.setSeed(7);
+      search.setRandomWalkProbability(0);
+
+      assertFalse(search.solve(1));
+      assertEquals(search.getSteps(), 1);
+      int violations = search.getViolationCount();
+      assertTrue(violations > 0);
+
+      assertTrue(search.solve(100000));
+      assertTrue(search.getSteps() > 1);
+      assertSolution(model, variables, search);
+
+      // once solved no further steps are performed
+      long steps = search.getSteps();
+      assertTrue(search.solve(100));
+      assertEquals(search.getSteps(), steps);
+   }
+
+   @Test
+   public void testParameters() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable p = builder.createParameter();
+      builder.enforce(x, y).between(0, 1000);
+      builder.addConstraint(new EqualTo(new Add(x, y), p));
+      builder.addConstraint(new NotEqualTo(x, y));
+      Model model = builder.buildModel();
+      LocalSearch search = new LocalSearch(model, 700);
+      search.setSeed(3);
+
+      assertTrue(search.solve(100000));
+      assertEquals(search.getValue(x) + search.getValue(y), 700);
+      assertEquals(search.getValue(p), 700);
+   }
+
+   @Test
+   public void testInconsistent() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] variables = new Variable[3];
+      for (int i = 0; i < variables.length; i++) {
+         variables[i] = builder.createVariable();
+      }
+      builder.enforce(variables).between(0, 0);
+      builder.addConstraint(new NotEqualTo(variables[0], variables[1]));
+      LocalSearch search = new LocalSearch(builder.buildModel());
+
+      assertFalse(search.solve(100));
+      assertEquals(search.getSteps(), 0);
+      assertThrows(IllegalStateException.class, () -> search.getViolationCount());
+      assertThrows(IllegalStateException.class, () -> search.getValue(variables[0]));
+   }
+
+   @Test
+   public void testNoVariablesToAlter() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 1);
+      builder.addConstraint(new NotEqualTo(x, y));
+      builder.addConstraint(new NotEqualTo(new Absolute(new Subtract(x, y)), new FixedValue(1)));
+      LocalSearch search = new LocalSearch(builder.buildModel());
+      search.setSeed(5);
+
+      // there are no solutions, so every assignment violates at least one constraint
+      assertFalse(search.solve(1000));
+      assertEquals(search.getViolationCount(), 1);
+   }
+
+   @Test
+   public void testNotSufficientlyBound() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.addConstraint(new NotEqualTo(x, y));
+      Model model = builder.buildModel();
+
+      assertThrows(IllegalStateException.class, () -> new LocalSearch(model));
+   }
+
+   @Test
+   public void testInvalidSettings() {
+      LocalSearch search = new LocalSearch(createQueens(new Variable[4], false));
+      assertThrows(IllegalArgumentException.class, () -> search.setTabuTenure(-1));
+      assertThrows(IllegalArgumentException.class, () -> search.setRandomWalkProbability(-0.1));
+      assertThrows(IllegalArgumentException.class, () -> search.setRandomWalkProbability(1.1));
+   }
+
+   /** Confirms the values found by the search satisfy the constraints, by setting them on a store of the model. */
+   private static void assertSolution(Model model, Variable[] variables, LocalSearch search) {
+      ClpConstraintStore s = model.createStore();
+      for (Variable v : variables) {
+         assertEquals(v.setValue(s, search.getValue(v)), ExpressionResult.VALID);
+      }
+      assertTrue(s.resolve());
+   }
+
+   private static Model createQueens(Variable[] variables, boolean eliminateCommonSubexpressions) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      // the differences between the variables are repeated, so will be replaced by auxiliary variables
+      builder.setEliminateCommonSubexpressions(eliminateCommonSubexpressions);
+      Variable[] queens = Queens.addQueens(builder, variables.length);
+      System.arraycopy(queens, 0, variables, 0, queens.length);
+      return builder.buildModel();
+   }
+}
@@ -0,0 +1,180 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.projog.clp.example.Queens;
+import org.projog.clp.math.Add;
+import org.testng.annotations.Test;
+
+public class ModelTest {
+   private static final int NUM_QUEENS = 7;
+   private static final int NUM_SOLUTIONS = 40;
+
+   @Test
+   public void testCreateStore() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 9);
+      builder.enforce(x).lessThan(y);
+      Model model = builder.buildModel();
+      assertEquals(model.getVariablesCount(), 2);
+      assertSame(model.getVariable(0), x);
+      assertSame(model.getVariable(1), y);
+
+      ClpConstraintStore a = model.createStore();
+      ClpConstraintStore b = model.createStore();
+      assertNotSame(a, b);
+      assertSame(a.getModel(), model);
+      assertSame(b.getModel(), model);
+
+      // altering one store does not alter another store created from the same model
+      assertTrue(a.resolve());
+      assertEquals(x.setMin(a, 5), ExpressionResult.VALID);
+      assertTrue(a.resolve());
+      assertEquals(a.getVariableState(0).getMin(), 5);
+      assertEquals(a.getVariableState(1).getMin(), 6);
+      assertEquals(b.getVariableState(0).getMin(), Long.MIN_VALUE);
+      assertTrue(b.resolve());
+      assertEquals(b.getVariableState(0).getMin(), 0);
+      assertEquals(b.getVariableState(1).getMin(), 1);
+   }
+
+   @Test
+   public void testModelNotAlteredByBuilder() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      builder.enforce(x).between(0, 9);
+      Model model = builder.buildModel();
+
+      builder.createVariable();
+      builder.enforce(x).between(3, 4);
+
+      assertEquals(model.getVariablesCount(), 1);
+      ClpConstraintStore environment = model.createStore();
+      assertTrue(environment.resolve());
+      assertEquals(environment.getVariableState(0).getMin(), 0);
+      assertEquals(environment.getVariableState(0).getMax(), 9);
+   }
+
+   @Test
+   public void testConcurrentSearches() throws Exception {
+      Model model = createQueens();
+      List<String> expected = findSolutions(model);
+      assertEquals(expected.size(), NUM_SOLUTIONS);
+
+      ExecutorService executor = Executors.newFixedThreadPool(4);
+      try {
+         List<Future<List<String>>> futures = new ArrayList<>();
+         for (int i = 0; i < 16; i++) {
+            futures.add(executor.submit(() -> findSolutions(model)));
+         }
+         for (Future<List<String>> f : futures) {
+            assertEquals(f.get(), expected);
+         }
+      } finally {
+         executor.shutdown();
+      }
+   }
+
+   @Test
+   public void testPresolveCreatesNewModel() {
+      Model model = createQueens();
+      ClpConstraintStore environment = model.createStore();
+
+      ClpConstraintStore presolved = environment.presolve().getConstraintStore();
+
+      assertNotSame(presolved.getModel(), model);
+      assertEquals(presolved.getModel().getVariablesCount(), NUM_QUEENS);
+   }
+
+   @Test
+   public void testParameters() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable p = builder.createParameter();
+      Variable q = builder.createParameter();
+      builder.enforce(x).between(0, 9);
+      builder.enforce(new Add(x, p)).equalTo(q);
+      Model model = builder.buildModel();
+      assertEquals(model.getParametersCount(), 2);
+      assertEquals(model.getVariablesCount(), 3);
+
+      ClpConstraintStore a = model.createStore(3, 10);
+      assertTrue(a.resolve());
+      assertEquals(a.getValue(x), 7);
+      assertEquals(a.getValue(p), 3);
+      assertEquals(a.getValue(q), 10);
+
+      ClpConstraintStore b = model.createStore(-2, 5);
+      assertTrue(b.resolve());
+      assertEquals(b.getValue(x), 7);
+
+      ClpConstraintStore c = model.createStore(5, 4);
+      assertFalse(c.resolve());
+   }
+
+   @Test
+   public void testParametersInvalidValues() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable p = builder.createParameter();
+      Variable q = builder.createParameter();
+      builder.enforce(p).equalTo(q);
+      Model model = builder.buildModel();
+
+      assertThrows(IllegalStateException.class, () -> model.createStore());
+      assertThrows(IllegalStateException.class, () -> builder.build());
+      assertThrows(IllegalArgumentException.class, () -> model.createStore(1));
+      assertThrows(IllegalArgumentException.class, () -> model.createStore(1, 2, 3));
+      assertThrows(IllegalArgumentException.class, () -> model.createStore(1, 2));
+      assertEquals(model.createStore(4, 4).getValue(q), 4);
+   }
+
+   private static Model createQueens() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Queens.addQueens(builder, NUM_QUEENS);
+      return builder.buildModel();
+   }
+
+   private static List<String> findSolutions(Model model) {
+      ClpConstraintStore environment = model.createStore();
+      assertTrue(environment.resolve());
+      List<String> solutions = new ArrayList<>();
+      BruteForceSearch search = new BruteForceSearch(environment);
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         StringBuilder sb = new StringBuilder();
+         for (int i = 0; i < NUM_QUEENS; i++) {
+            sb.append(solution.getValue(solution.getVariable(i)));
+         }
+         solutions.add(sb.toString());
+      }
+      return solutions;
+   }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.projog.clp.compare.EqualTo;
+import org.projog.clp.compare.LessThan;
+import org.projog.clp.compare.NotEqualTo;
+import org.projog.clp.math.Add;
+import org.testng.annotations.Test;
+
+public class PresolveResultTest {
+   @Test
+   public void testPresolve() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      Variable w = builder.createVariable();
+      builder.addConstraint(new EqualTo(new FixedValue(3), new FixedValue(3)));
+      builder.enforce(x).between(1, 5);
+      builder.enforce(y).between(0, 4);
+      builder.enforce(x).lessThan(y);
+      builder.enforce(z).equalTo(new Add(new FixedValue(1), new Add(x, y)));
+      builder.enforce(w).equalTo(new FixedValue(7));
+      builder.addConstraint(new NotEqualTo(z, w));
+      ClpConstraintStore original = builder.build();
+
+      PresolveResult result = original.presolve();
+
+      assertFalse(result.isFailed());
+      assertEquals(1, result.getFoldedConstraints());
+      assertEquals(3, result.getEntailedConstraints());
+      assertEquals(4, result.getBoundedVariables());
+      assertEquals(1, result.getSubstitutedVariables());
+      assertEquals("PresolveResult [failed=false, foldedConstraints=1, entailedConstraints=3, boundedVariables=4, substitutedVariables=1]", result.toString());
+
+      // original store is not altered
+      assertEquals(Long.MIN_VALUE, x.getMin(original));
+      assertEquals(Long.MAX_VALUE, x.getMax(original));
+
+      ClpConstraintStore presolved = result.getConstraintStore();
+      assertEquals(1, x.getMin(presolved));
+      assertEquals(3, x.getMax(presolved));
+      assertEquals(7, presolved.getValue(w));
+      assertEquals("{4, 5, 6, 8}", presolved.getVariableState(2).toString());
+
+      Set<String> solutions = new HashSet<>();
+      BruteForceSearch search = new BruteForceSearch(presolved);
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         assertEquals(7, solution.getValue(w));
+         solutions.add(solution.getValue(x) + "," + solution.getValue(y) + "," + solution.getValue(z));
+      }
+      assertEquals(new HashSet<>(Arrays.asList("1,2,4", "1,3,5", "1,4,6", "2,3,6", "3,4,8")), solutions);
+   }
+
+   @Test
+   public void testPresolveConstantsFailed() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.createVariable();
+      builder.addConstraint(new LessThan(new FixedValue(2), new FixedValue(1)));
+
+      PresolveResult result = builder.build().presolve();
+
+      assertTrue(result.isFailed());
+      assertThrows(IllegalStateException.class, () -> result.getConstraintStore());
+   }
+
+   @Test
+   public void testPresolveConflictingBoundsFailed() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      builder.enforce(x).between(1, 2);
+      builder.enforce(x).between(5, 6);
+
+      PresolveResult result = builder.build().presolve();
+
+      assertTrue(result.isFailed());
+      assertEquals("PresolveResult [failed=true, foldedConstraints=0, entailedConstraints=0, boundedVariables=0, substitutedVariables=0]", result.toString());
+   }
+}
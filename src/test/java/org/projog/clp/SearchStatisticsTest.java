@@ -0,0 +1,138 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import org.projog.clp.compare.LessThan;
+import org.projog.clp.compare.NotEqualTo;
+import org.testng.annotations.Test;
+
+public class SearchStatisticsTest {
+   @Test
+   public void testWeightIncreasedOnFailure() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x, y, z).between(1, 2);
+      builder.addConstraint(new NotEqualTo(x, y));
+      builder.addConstraint(new NotEqualTo(x, z));
+      builder.addConstraint(new NotEqualTo(y, z));
+      Model model = builder.buildModel();
+      ClpConstraintStore original = model.createStore();
+      assertTrue(original.resolve());
+      SearchStatistics statistics = new SearchStatistics(model);
+      assertEquals(getTotalWeight(statistics), (double) model.constraints.length);
+
+      ClpConstraintStore s = original.copy(statistics);
+      assertEquals(x.setValue(s, 1), ExpressionResult.VALID);
+      assertFalse(s.resolve());
+      assertEquals(getTotalWeight(statistics), model.constraints.length + 1.0);
+
+      // the original store does not update the statistics
+      assertEquals(x.setValue(original, 1), ExpressionResult.VALID);
+      assertFalse(original.resolve());
+      assertEquals(getTotalWeight(statistics), model.constraints.length + 1.0);
+   }
+
+   @Test
+   public void testActivity() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x, y, z).between(1, 10);
+      builder.addConstraint(new LessThan(x, y));
+      Model model = builder.buildModel();
+      ClpConstraintStore original = model.createStore();
+      assertTrue(original.resolve());
+      SearchStatistics statistics = new SearchStatistics(model);
+
+      ClpConstraintStore s = original.copy(statistics);
+      assertEquals(x.setMin(s, 5), ExpressionResult.VALID);
+      assertTrue(s.resolve());
+      assertEquals(statistics.getActivity(x), 1.0);
+      assertEquals(statistics.getActivity(y), 1.0);
+      assertEquals(statistics.getActivity(z), 0.0);
+
+      // after decaying, new reductions count for more than older ones
+      statistics.decayActivities();
+      assertEquals(y.setMin(s, 10), ExpressionResult.VALID);
+      assertTrue(s.resolve());
+      assertEquals(statistics.getActivity(x), 1.0);
+      assertEquals(statistics.getActivity(y), 1 + 1 / 0.95);
+   }
+
+   @Test
+   public void testImpact() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Model model = builder.buildModel();
+      SearchStatistics statistics = new SearchStatistics(model);
+      assertEquals(statistics.getImpact(x), 1.0);
+
+      statistics.recordImpact(x, 0);
+      assertEquals(statistics.getImpact(x), 0.75);
+      statistics.recordImpact(x, 0);
+      assertEquals(statistics.getImpact(x), 0.5625);
+      statistics.recordImpact(x, 1);
+      assertEquals(statistics.getImpact(x), 0.671875);
+   }
+
+   @Test
+   public void testSelect() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x, y, z).between(1, 10);
+      builder.addConstraint(new LessThan(y, z));
+      Model model = builder.buildModel();
+      SearchStatistics statistics = new SearchStatistics(model);
+      ClpConstraintStore s = model.createStore();
+      assertTrue(s.resolve());
+      assertEquals(x.setMax(s, 5), ExpressionResult.VALID);
+      int[] indexes = {0, 1, 2};
+
+      // x has the fewest possible values, but no constraints
+      assertEquals(statistics.select(VariableSelection.SMALLEST_DOMAIN, s, indexes, 0), 0);
+      assertEquals(statistics.select(VariableSelection.DOMAIN_OVER_WEIGHTED_DEGREE, s, indexes, 0), 1);
+      assertEquals(statistics.select(VariableSelection.DOMAIN_OVER_WEIGHTED_DEGREE, s, indexes, 2), 2);
+
+      // ties are broken by the number of possible values
+      assertEquals(statistics.select(VariableSelection.IMPACT, s, indexes, 0), 0);
+      statistics.recordImpact(x, 0);
+      assertEquals(statistics.select(VariableSelection.IMPACT, s, indexes, 0), 1);
+
+      statistics.recordReduction(2);
+      assertEquals(statistics.select(VariableSelection.ACTIVITY, s, indexes, 0), 2);
+
+      // variables with a single possible value are never selected
+      assertEquals(x.setValue(s, 3), ExpressionResult.VALID);
+      assertEquals(statistics.select(VariableSelection.SMALLEST_DOMAIN, s, new int[] {0}, 0), -1);
+   }
+
+   private static double getTotalWeight(SearchStatistics statistics) {
+      double total = 0;
+      for (int i = 0; i < statistics.getModel().constraints.length; i++) {
+         total += statistics.getWeight(i);
+      }
+      return total;
+   }
+}
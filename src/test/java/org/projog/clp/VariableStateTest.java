@@ -118,6 +118,52 @@ public class VariableStateTest {
       assertEquals(1, v.count());
    }
 
+   @Test
+   public void testContains() {
+      VariableState v = new VariableState();
+      assertTrue(v.contains(Long.MIN_VALUE));
+      assertTrue(v.contains(Long.MAX_VALUE));
+
+      v.setMin(3);
+      v.setMax(7);
+      v.setNot(5);
+      assertFalse(v.contains(2));
+      assertTrue(v.contains(3));
+      assertTrue(v.contains(4));
+      assertFalse(v.contains(5));
+      assertTrue(v.contains(6));
+      assertTrue(v.contains(7));
+      assertFalse(v.contains(8));
+   }
+
+   @Test
+   public void testSetNotRange() {
+      VariableState v = new VariableState();
+      v.setMin(3);
+      v.setMax(12);
+
+      assertSame(VariableStateResult.NO_CHANGE, v.setNot(13, 20));
+      assertSame(VariableStateResult.NO_CHANGE, v.setNot(6, 5));
+      assertSame(VariableStateResult.UPDATED, v.setNot(5, 7));
+      assertEquals("{3, 4, 8, 9, 10, 11, 12}", v.toString());
+      assertSame(VariableStateResult.NO_CHANGE, v.setNot(5, 7));
+      assertSame(VariableStateResult.UPDATED, v.setNot(0, 4));
+      assertEquals("8..12", v.toString());
+      assertSame(VariableStateResult.UPDATED, v.setNot(10, Long.MAX_VALUE));
+      assertEquals("8..9", v.toString());
+      assertSame(VariableStateResult.FAILED, v.setNot(8, 9));
+      assertTrue(v.isCorrupt());
+   }
+
+   @Test
+   public void testSetNotRangeOfUnboundedState() {
+      VariableState v = new VariableState();
+      assertSame(VariableStateResult.NO_CHANGE, v.setNot(5, 7));
+      assertSame(VariableStateResult.UPDATED, v.setNot(Long.MIN_VALUE, 7));
+      assertEquals(8, v.getMin());
+      assertEquals(Long.MAX_VALUE, v.getMax());
+   }
+
    @Test(dataProvider = "testDataRanges")
    public void testAnd_no_overlap(long min, long max) {
       assertTrue(max > min + 4);
@@ -785,6 +831,63 @@ public class VariableStateTest {
       assertPossibilities(copy, 9, 10);
    }
 
+   @Test
+   public void testCountUpdatedAfterCopy() {
+      VariableState original = new VariableState();
+      original.setMin(1);
+      original.setMax(9);
+      original.setNot(5);
+      assertEquals(original.count(), 8);
+
+      VariableState copy = original.copy();
+      assertEquals(copy.count(), 8);
+      copy.setNot(3);
+      copy.setMax(8);
+      assertEquals(copy.count(), 6);
+      assertEquals(original.count(), 8);
+      original.setMin(3);
+      assertEquals(original.count(), 6);
+      assertEquals(copy.count(), 6);
+   }
+
+   @Test
+   public void testCopy_of_copy_with_bitset() {
+      VariableState original = new VariableState();
+      original.setMin(5);
+      original.setMax(10);
+      original.setNot(8);
+      Possibilities p = original.getPossibilities();
+
+      VariableState copy1 = original.copy();
+      VariableState copy2 = copy1.copy();
+      VariableState copy3 = copy2.copy();
+
+      copy2.setNot(6);
+      copy1.setMin(6);
+      copy3.setMax(9);
+      assertPossibilities(original, 5, 6, 7, 9, 10);
+      assertPossibilities(copy1, 6, 7, 9, 10);
+      assertPossibilities(copy2, 5, 7, 9, 10);
+      assertPossibilities(copy3, 5, 6, 7, 9);
+
+      // reducing a copy to a single value does not alter the shared values
+      VariableState copy4 = original.copy();
+      copy4.setNot(5);
+      copy4.setNot(6);
+      copy4.setNot(9);
+      copy4.setNot(10);
+      assertTrue(copy4.isSingleValue());
+      assertEquals(copy4.getMin(), 7);
+      assertPossibilities(original, 5, 6, 7, 9, 10);
+
+      // possibilities obtained before the copies were altered are not affected
+      for (long v : new long[] {5, 6, 7, 9, 10}) {
+         assertTrue(p.hasNext());
+         assertEquals(p.next(), v);
+      }
+      assertFalse(p.hasNext());
+   }
+
    @Test
    public void testSetValue_outside_range() {
       VariableState v = new VariableState();
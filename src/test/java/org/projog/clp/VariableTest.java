@@ -21,6 +21,7 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 import java.util.function.Consumer;
@@ -65,6 +66,19 @@ public final class VariableTest {
       verifyNoMoreInteractions(e);
    }
 
+   @Test
+   public void testContains() {
+      Variable testObject = new Variable(1);
+      ConstraintStore e = mock(ConstraintStore.class);
+
+      when(e.contains(testObject, 7)).thenReturn(true);
+
+      assertTrue(testObject.contains(e, 7));
+
+      verify(e).contains(testObject, 7);
+      verifyNoMoreInteractions(e);
+   }
+
    @Test
    public void testSetValue() {
       Variable testObject = new Variable(1);
@@ -24,7 +24,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.projog.clp.ClpConstraintStore;
 import org.projog.clp.Variable;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 /**
@@ -33,9 +35,16 @@ import org.testng.annotations.Test;
  * See: https://en.wikipedia.org/wiki/Killer_sudoku
  */
 public class KillerSudokuTest {
-   @Test
-   public void test() {
-      Sudoku sudoku = new Sudoku();
+   @DataProvider
+   public static Object[] cacheBounds() {
+      return new Object[] {false, true};
+   }
+
+   @Test(dataProvider = "cacheBounds")
+   public void test(boolean cacheBounds) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setCacheBounds(cacheBounds);
+      Sudoku sudoku = new Sudoku(builder);
 
       // define groups of cells and the required total sum of the values in those cells
       Group aa = new Group(10);
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.projog.clp.ClpConstraintStore;
+import org.projog.clp.Constraint;
+import org.projog.clp.FixedValue;
+import org.projog.clp.Variable;
+import org.projog.clp.compare.NotEqualTo;
+import org.projog.clp.math.Subtract;
+
+/**
+ * Creates models of the N queens puzzle, for use by tests.
+ * <p>
+ * The value of each variable is the row of the queen in the column represented by that variable.
+ *
+ * @see QueensTest
+ */
+public final class Queens {
+   private Queens() {
+   }
+
+   /**
+    * Adds a model of the puzzle, of the given size, to the given builder.
+    *
+    * @return the variables representing the position of each queen
+    */
+   public static Variable[] addQueens(ClpConstraintStore.Builder builder, int numQueens) {
+      Variable[] variables = new Variable[numQueens];
+      for (int i = 0; i < variables.length; i++) {
+         variables[i] = builder.createVariable();
+      }
+      builder.enforce(variables).distinct().between(1, numQueens);
+      for (Constraint c : createDiagonalConstraints(variables)) {
+         builder.addConstraint(c);
+      }
+      return variables;
+   }
+
+   /** Returns constraints that prevent any of the queens represented by the given variables sharing a diagonal. */
+   public static List<Constraint> createDiagonalConstraints(Variable[] variables) {
+      List<Constraint> constraints = new ArrayList<>();
+      for (int i1 = 0; i1 < variables.length - 1; i1++) {
+         for (int i2 = i1 + 1; i2 < variables.length; i2++) {
+            FixedValue v = new FixedValue(i2 - i1);
+            Variable x = variables[i1];
+            Variable y = variables[i2];
+            constraints.add(new NotEqualTo(v, new Subtract(x, y)));
+            constraints.add(new NotEqualTo(v, new Subtract(y, x)));
+         }
+      }
+      return constraints;
+   }
+}
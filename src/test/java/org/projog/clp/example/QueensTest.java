@@ -21,10 +21,9 @@ import static org.testng.Assert.assertNull;
 
 import org.projog.clp.BruteForceSearch;
 import org.projog.clp.ClpConstraintStore;
-import org.projog.clp.FixedValue;
+import org.projog.clp.Scheduling;
 import org.projog.clp.Variable;
-import org.projog.clp.compare.NotEqualTo;
-import org.projog.clp.math.Subtract;
+import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 /**
@@ -36,25 +35,28 @@ public class QueensTest {
    private static final int NUM_QUEENS = 8;
    private static final int NUM_SOLUTIONS = 92;
 
-   @Test
-   public void test() {
+   @DataProvider
+   public static Object[] schedulings() {
+      return Scheduling.values();
+   }
+
+   @Test(dataProvider = "schedulings")
+   public void test(Scheduling scheduling) {
       ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
-      Variable[] variables = new Variable[NUM_QUEENS];
-      for (int i = 0; i < variables.length; i++) {
-         variables[i] = builder.createVariable();
-      }
+      builder.setScheduling(scheduling);
+      assertSolutions(builder);
+   }
 
-      builder.enforce(variables).distinct().between(1, NUM_QUEENS);
+   /** Each {@code x - y} and {@code y - x} pair is represented by the same auxiliary variable. */
+   @Test
+   public void testEliminateCommonSubexpressions() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setEliminateCommonSubexpressions(true);
+      assertSolutions(builder);
+   }
 
-      for (int i1 = 0; i1 < NUM_QUEENS - 1; i1++) {
-         for (int i2 = i1 + 1; i2 < NUM_QUEENS; i2++) {
-            FixedValue v = new FixedValue(i2 - i1);
-            Variable x = variables[i1];
-            Variable y = variables[i2];
-            builder.addConstraint(new NotEqualTo(v, new Subtract(x, y)));
-            builder.addConstraint(new NotEqualTo(v, new Subtract(y, x)));
-         }
-      }
+   private void assertSolutions(ClpConstraintStore.Builder builder) {
+      Variable[] variables = Queens.addQueens(builder, NUM_QUEENS);
 
       ClpConstraintStore environment = builder.build();
       environment.resolve();
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.example;
+
+import static org.projog.clp.example.ExpressionUtils.add;
+import static org.projog.clp.example.ExpressionUtils.multiply;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.projog.clp.BruteForceSearch;
+import org.projog.clp.ClpConstraintStore;
+import org.projog.clp.Expression;
+import org.projog.clp.Scheduling;
+import org.projog.clp.Variable;
+import org.projog.clp.compare.EqualTo;
+
+/**
+ * Compares the time taken to find every solution of the same problems using each {@link Scheduling}.
+ * <p>
+ * Not run as part of the build, as timings depend on the machine. To run, after {@code mvn test-compile}:
+ * </p>
+ *
+ * <pre>
+ * java -cp target/classes:target/test-classes org.projog.clp.example.SchedulingBenchmark [rounds]
+ * </pre>
+ * <p>
+ * Each round finds every solution of the 10 queens puzzle 3 times, and of SEND+MORE=MONEY 20 times, for each
+ * scheduling. The first round is a warm-up and is not reported. Defaults to 5 rounds.
+ * </p>
+ */
+public final class SchedulingBenchmark {
+   private static final int NUM_QUEENS = 10;
+   private static final int QUEENS_REPETITIONS = 3;
+   private static final int SEND_MORE_MONEY_REPETITIONS = 20;
+
+   public static void main(String[] args) {
+      int rounds = args.length == 0 ? 5 : Integer.parseInt(args[0]);
+      System.out.println("round scheduling queens(ms) send-more-money(ms)");
+      for (int round = 0; round < rounds; round++) {
+         for (Scheduling scheduling : Scheduling.values()) {
+            long queens = time(() -> {
+               for (int i = 0; i < QUEENS_REPETITIONS; i++) {
+                  findQueensSolutions(scheduling, NUM_QUEENS);
+               }
+            });
+            long sendMoreMoney = time(() -> {
+               for (int i = 0; i < SEND_MORE_MONEY_REPETITIONS; i++) {
+                  findSendMoreMoneySolutions(scheduling);
+               }
+            });
+            if (round > 0) {
+               System.out.println(round + " " + scheduling + " " + queens + " " + sendMoreMoney);
+            }
+         }
+      }
+   }
+
+   private static long time(Runnable r) {
+      long start = System.nanoTime();
+      r.run();
+      return (System.nanoTime() - start) / 1_000_000;
+   }
+
+   /** Returns, in the order they are found, the positions of the queens in every solution of the given size. */
+   static List<String> findQueensSolutions(Scheduling scheduling, int numQueens) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setScheduling(scheduling);
+      Variable[] variables = Queens.addQueens(builder, numQueens);
+      return findSolutions(builder.build(), variables);
+   }
+
+   /** Returns the values of S, E, N, D, M, O, R and Y in every solution of SEND+MORE=MONEY. */
+   static List<String> findSendMoreMoneySolutions(Scheduling scheduling) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setScheduling(scheduling);
+      Variable s = builder.createVariable();
+      Variable e = builder.createVariable();
+      Variable n = builder.createVariable();
+      Variable d = builder.createVariable();
+      Variable m = builder.createVariable();
+      Variable o = builder.createVariable();
+      Variable r = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(s, e, n, d, m, o, r, y).distinct().between(0, 9);
+      builder.enforce(s, m).notEqualTo(0);
+      Expression send = add(multiply(1000, s), multiply(100, e), multiply(10, n), d);
+      Expression more = add(multiply(1000, m), multiply(100, o), multiply(10, r), e);
+      Expression money = add(multiply(10000, m), multiply(1000, o), multiply(100, n), multiply(10, e), y);
+      builder.addConstraint(new EqualTo(add(send, more), money));
+      return findSolutions(builder.build(), s, e, n, d, m, o, r, y);
+   }
+
+   private static List<String> findSolutions(ClpConstraintStore environment, Variable... variables) {
+      List<String> solutions = new ArrayList<>();
+      if (!environment.resolve()) {
+         return solutions;
+      }
+      BruteForceSearch search = new BruteForceSearch(environment);
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         long[] values = new long[variables.length];
+         for (int i = 0; i < variables.length; i++) {
+            values[i] = solution.getValue(variables[i]);
+         }
+         solutions.add(Arrays.toString(values));
+      }
+      return solutions;
+   }
+}
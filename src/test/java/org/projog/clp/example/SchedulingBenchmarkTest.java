@@ -0,0 +1,49 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.example;
+
+import static org.testng.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.projog.clp.Scheduling;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+/** Confirms that every scheduling finds the same solutions to the problems timed by {@link SchedulingBenchmark}. */
+public class SchedulingBenchmarkTest {
+   @DataProvider
+   public static Object[] schedulings() {
+      return Scheduling.values();
+   }
+
+   @Test(dataProvider = "schedulings")
+   public void testQueens(Scheduling scheduling) {
+      List<String> expected = SchedulingBenchmark.findQueensSolutions(Scheduling.FIFO, 8);
+      List<String> actual = SchedulingBenchmark.findQueensSolutions(scheduling, 8);
+
+      assertEquals(actual.size(), 92);
+      assertEquals(new HashSet<>(actual), new HashSet<>(expected));
+   }
+
+   @Test(dataProvider = "schedulings")
+   public void testSendMoreMoney(Scheduling scheduling) {
+      // 9567 + 1085 = 10652
+      assertEquals(SchedulingBenchmark.findSendMoreMoneySolutions(scheduling), Arrays.asList("[9, 5, 6, 7, 1, 0, 8, 2]"));
+   }
+}
@@ -30,7 +30,23 @@ import org.projog.clp.compare.EqualTo;
 public class SendMoreMoneyTest {
    @Test
    public void test() {
+      assertSolution(false, false);
+   }
+
+   @Test
+   public void testCompiled() {
+      assertSolution(true, false);
+   }
+
+   @Test
+   public void testCachedBounds() {
+      assertSolution(false, true);
+   }
+
+   private void assertSolution(boolean compileExpressions, boolean cacheBounds) {
       ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setCompileExpressions(compileExpressions);
+      builder.setCacheBounds(cacheBounds);
       Variable s = builder.createVariable();
       Variable e = builder.createVariable();
       Variable n = builder.createVariable();
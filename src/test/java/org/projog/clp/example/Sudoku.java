@@ -21,7 +21,11 @@ import java.util.List;
 import org.projog.clp.BruteForceSearch;
 import org.projog.clp.ClpConstraintStore;
 import org.projog.clp.ClpConstraintStore.Enforce;
+import org.projog.clp.FixedValue;
+import org.projog.clp.Model;
 import org.projog.clp.Variable;
+import org.projog.clp.bool.Or;
+import org.projog.clp.compare.EqualTo;
 
 final class Sudoku {
    static final int MAX_VALUE = 9;
@@ -30,7 +34,11 @@ final class Sudoku {
    private final Variable[][] grid;
 
    Sudoku() {
-      this.builder = new ClpConstraintStore.Builder();
+      this(new ClpConstraintStore.Builder());
+   }
+
+   Sudoku(ClpConstraintStore.Builder builder) {
+      this.builder = builder;
       this.grid = new Variable[MAX_VALUE][MAX_VALUE];
 
       // create variable for each cell of grid
@@ -67,6 +75,24 @@ final class Sudoku {
       }
    }
 
+   /**
+    * Adds a parameter for each cell that specifies its initial value, where a value of 0 represents an empty cell.
+    * <p>
+    * Allows a single model to be used to solve any puzzle - see {@link #solve(Model, Integer[][])}.
+    */
+   void addClueParameters() {
+      for (int x = 0; x < MAX_VALUE; x++) {
+         for (int y = 0; y < MAX_VALUE; y++) {
+            Variable clue = builder.createParameter();
+            builder.addConstraint(new Or(new EqualTo(clue, new FixedValue(0)), new EqualTo(clue, grid[x][y])));
+         }
+      }
+   }
+
+   Model buildModel() {
+      return builder.buildModel();
+   }
+
    void set(int x, int y, int value) {
       builder.enforce(value).equalTo(grid[x][y]);
    }
@@ -80,8 +106,24 @@ final class Sudoku {
    }
 
    int[][] findSolution() {
+      return findSolution(builder.build());
+   }
+
+   /** Solves the given puzzle using a model created after calling {@link #addClueParameters()}. */
+   int[][] solve(Model model, Integer[][] input) {
+      long[] clues = new long[MAX_VALUE * MAX_VALUE];
+      for (int x = 0; x < MAX_VALUE; x++) {
+         for (int y = 0; y < MAX_VALUE; y++) {
+            if (input[x][y] != null) {
+               clues[x * MAX_VALUE + y] = input[x][y];
+            }
+         }
+      }
+      return findSolution(model.createStore(clues));
+   }
+
+   private int[][] findSolution(ClpConstraintStore environment) {
       // search for solution
-      ClpConstraintStore environment = builder.build();
       environment.resolve(); // TODO remove need to call resolve here?
       BruteForceSearch search = new BruteForceSearch(environment);
       ClpConstraintStore solution = search.next();
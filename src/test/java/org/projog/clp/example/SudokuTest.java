@@ -15,10 +15,12 @@
  */
 package org.projog.clp.example;
 
+import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertTrue;
 
 import java.util.Arrays;
 
+import org.projog.clp.Model;
 import org.testng.annotations.Test;
 
 /**
@@ -57,6 +59,46 @@ public class SudokuTest {
       assertArrayEquals(solution[8], new int[] {7, 6, 3, 4, 2, 1, 5, 8, 9});
    }
 
+   @Test
+   public void testReuseModel() {
+      // given
+      Integer x = null;
+      Integer[][] input = new Integer[][] {
+                  {3, 7, x, x, x, 6, x, 2, x},
+                  {x, 1, x, 9, x, x, x, x, x},
+                  {2, x, x, 7, x, x, 4, x, x},
+                  {4, x, x, x, x, x, x, 5, 3},
+                  {x, 2, 9, x, 1, x, 8, 7, x},
+                  {6, 3, x, x, x, x, x, x, 4},
+                  {x, x, 2, x, x, 8, x, x, 7},
+                  {x, x, x, x, x, 7, x, 4, x},
+                  {x, 6, x, 4, x, x, x, 8, 9}};
+      Integer[][] transposed = new Integer[Sudoku.MAX_VALUE][Sudoku.MAX_VALUE];
+      for (int row = 0; row < Sudoku.MAX_VALUE; row++) {
+         for (int column = 0; column < Sudoku.MAX_VALUE; column++) {
+            transposed[column][row] = input[row][column];
+         }
+      }
+      Sudoku sudoku = new Sudoku();
+      sudoku.addClueParameters();
+      Model model = sudoku.buildModel();
+
+      // when
+      int[][] solution1 = sudoku.solve(model, input);
+      int[][] solution2 = sudoku.solve(model, transposed);
+      int[][] solution3 = sudoku.solve(model, input);
+
+      // then
+      int[][] expected = Sudoku.solve(input);
+      for (int row = 0; row < Sudoku.MAX_VALUE; row++) {
+         assertArrayEquals(solution1[row], expected[row]);
+         assertArrayEquals(solution3[row], expected[row]);
+         for (int column = 0; column < Sudoku.MAX_VALUE; column++) {
+            assertEquals(solution2[column][row], expected[row][column]);
+         }
+      }
+   }
+
    private static void assertArrayEquals(int[] actual, int[] expected) {
       assertTrue(Arrays.equals(actual, expected));
    }
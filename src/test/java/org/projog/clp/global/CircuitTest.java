@@ -0,0 +1,208 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.global;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.projog.clp.BruteForceSearch;
+import org.projog.clp.ClpConstraintStore;
+import org.projog.clp.ConstraintResult;
+import org.projog.clp.Expression;
+import org.projog.clp.FixedValue;
+import org.projog.clp.Variable;
+import org.testng.annotations.Test;
+
+public class CircuitTest {
+   @Test
+   public void testNumberOfSolutions() {
+      int numNodes = 5;
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] successors = createVariables(builder, numNodes);
+      builder.addConstraint(new Circuit(successors));
+
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+      BruteForceSearch search = new BruteForceSearch(environment);
+
+      // (n-1)! distinct circuits visit all n nodes
+      int solutionCount = 0;
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         solutionCount++;
+         int node = 0;
+         for (int i = 0; i < numNodes; i++) {
+            node = (int) solution.getValue(successors[node]);
+            assertEquals(node == 0, i == numNodes - 1);
+         }
+      }
+      assertEquals(24, solutionCount);
+   }
+
+   @Test
+   public void testEnforceRestrictsDomains() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] successors = createVariables(builder, 3);
+      ClpConstraintStore environment = builder.build();
+      Circuit c = new Circuit(successors);
+
+      assertEquals(ConstraintResult.UNRESOLVED, c.enforce(environment));
+      for (int i = 0; i < successors.length; i++) {
+         assertEquals(i == 0 ? 1 : 0, successors[i].getMin(environment));
+         assertEquals(i == 2 ? 1 : 2, successors[i].getMax(environment));
+      }
+   }
+
+   @Test
+   public void testEnforcePreventsSubtour() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] successors = createVariables(builder, 4);
+      ClpConstraintStore environment = builder.build();
+      Circuit c = new Circuit(successors);
+      successors[0].setValue(environment, 1);
+      successors[1].setValue(environment, 2);
+
+      // 2 cannot link back to 0 as that would close the subtour 0->1->2->0
+      assertEquals(ConstraintResult.UNRESOLVED, c.enforce(environment));
+      assertEquals(3, successors[2].getMin(environment));
+      assertEquals(3, successors[2].getMax(environment));
+
+      // as 1 and 2 are already used then 3 has to link back to 0
+      assertEquals(0, successors[3].getMin(environment));
+      assertEquals(0, successors[3].getMax(environment));
+
+      assertEquals(ConstraintResult.MATCHED, c.enforce(environment));
+   }
+
+   @Test
+   public void testEnforceRemovesUsedSuccessors() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] successors = createVariables(builder, 7);
+      ClpConstraintStore environment = builder.build();
+      successors[0].setValue(environment, 2);
+      successors[1].setValue(environment, 3);
+      successors[4].setValue(environment, 6);
+
+      // 2, 3 and 6 are used - and the end of each path cannot link back to its start
+      assertEquals(ConstraintResult.UNRESOLVED, new Circuit(successors).enforce(environment));
+      assertEquals("{1, 4, 5}", environment.getVariableState(2).toString());
+      assertEquals("{0, 4, 5}", environment.getVariableState(3).toString());
+      assertEquals("{0, 1, 4}", environment.getVariableState(5).toString());
+      assertEquals("{0, 1, 5}", environment.getVariableState(6).toString());
+   }
+
+   @Test
+   public void testEnforceFailsOnClosedSubtour() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] successors = createVariables(builder, 4);
+      ClpConstraintStore environment = builder.build();
+      successors[0].setValue(environment, 1);
+      successors[1].setValue(environment, 0);
+
+      assertEquals(ConstraintResult.FAILED, new Circuit(successors).enforce(environment));
+   }
+
+   @Test
+   public void testEnforceFailsOnSharedSuccessor() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] successors = createVariables(builder, 4);
+      ClpConstraintStore environment = builder.build();
+      successors[0].setValue(environment, 2);
+      successors[1].setValue(environment, 2);
+
+      assertEquals(ConstraintResult.FAILED, new Circuit(successors).enforce(environment));
+   }
+
+   @Test
+   public void testReify() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] successors = createVariables(builder, 3);
+      ClpConstraintStore environment = builder.build();
+      Circuit c = new Circuit(successors);
+
+      assertEquals(ConstraintResult.UNRESOLVED, c.reify(environment));
+      assertEquals(ConstraintResult.UNRESOLVED, c.prevent(environment));
+
+      successors[0].setValue(environment, 1);
+      successors[1].setValue(environment, 2);
+      assertEquals(ConstraintResult.UNRESOLVED, c.reify(environment));
+
+      successors[2].setValue(environment, 0);
+      assertEquals(ConstraintResult.MATCHED, c.reify(environment));
+      assertEquals(ConstraintResult.FAILED, c.prevent(environment));
+   }
+
+   @Test
+   public void testReifySubtour() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] successors = createVariables(builder, 3);
+      ClpConstraintStore environment = builder.build();
+      Circuit c = new Circuit(successors);
+      successors[0].setValue(environment, 0);
+
+      assertEquals(ConstraintResult.FAILED, c.reify(environment));
+      assertEquals(ConstraintResult.MATCHED, c.prevent(environment));
+   }
+
+   @Test
+   public void testWalk() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] successors = createVariables(builder, 3);
+      List<Expression> expressions = new ArrayList<>();
+
+      new Circuit(successors).walk(expressions::add);
+
+      assertEquals(3, expressions.size());
+      for (int i = 0; i < successors.length; i++) {
+         assertEquals(successors[i], expressions.get(i));
+      }
+   }
+
+   @Test
+   public void testReplace() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] successors = createVariables(builder, 3);
+      Circuit c = new Circuit(successors);
+
+      Circuit replacement = c.replace(e -> e == successors[1] ? new FixedValue(2) : null);
+
+      assertEquals("Circuit [successors=[Variable [id=0], FixedValue [value=2], Variable [id=2]]]", replacement.toString());
+      assertEquals("Circuit [successors=[Variable [id=0], Variable [id=1], Variable [id=2]]]", c.toString());
+   }
+
+   @Test
+   public void testNoSolutions() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] successors = createVariables(builder, 4);
+      builder.addConstraint(new Circuit(successors));
+      builder.enforce(successors[0]).between(1, 1);
+      builder.enforce(successors[1]).between(0, 0);
+
+      assertFalse(builder.build().resolve());
+   }
+
+   private static Variable[] createVariables(ClpConstraintStore.Builder builder, int numNodes) {
+      Variable[] variables = new Variable[numNodes];
+      for (int i = 0; i < numNodes; i++) {
+         variables[i] = builder.createVariable();
+      }
+      return variables;
+   }
+}
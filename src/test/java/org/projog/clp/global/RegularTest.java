@@ -0,0 +1,233 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.global;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.projog.clp.BruteForceSearch;
+import org.projog.clp.ClpConstraintStore;
+import org.projog.clp.ConstraintResult;
+import org.projog.clp.Expression;
+import org.projog.clp.FixedValue;
+import org.projog.clp.Variable;
+import org.testng.annotations.Test;
+
+public class RegularTest {
+   private static final int DAY = 0;
+   private static final int NIGHT = 1;
+   private static final int MAX_CONSECUTIVE_NIGHTS = 3;
+
+   /** Accepts sequences of day and night shifts that contain no more than 3 night shifts in a row. */
+   private static Automaton createRosterAutomaton() {
+      Automaton.Builder b = new Automaton.Builder();
+      for (int consecutiveNights = 0; consecutiveNights <= MAX_CONSECUTIVE_NIGHTS; consecutiveNights++) {
+         b.transition(consecutiveNights, DAY, 0).accept(consecutiveNights);
+         if (consecutiveNights < MAX_CONSECUTIVE_NIGHTS) {
+            b.transition(consecutiveNights, NIGHT, consecutiveNights + 1);
+         }
+      }
+      return b.build();
+   }
+
+   @Test
+   public void testAutomaton() {
+      Automaton a = createRosterAutomaton();
+      assertTrue(a.accepts());
+      assertTrue(a.accepts(DAY, NIGHT, NIGHT, NIGHT, DAY, NIGHT));
+      assertFalse(a.accepts(DAY, NIGHT, NIGHT, NIGHT, NIGHT, DAY));
+      assertFalse(a.accepts(DAY, 2, DAY));
+   }
+
+   @Test
+   public void testAutomatonNonDeterministic() {
+      Automaton.Builder b = new Automaton.Builder().transition(0, 7, 1);
+      assertThrows(IllegalArgumentException.class, () -> b.transition(0, 7, 2));
+   }
+
+   @Test
+   public void testNumberOfSolutions() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] shifts = createVariables(builder, 6);
+      builder.addConstraint(new Regular(shifts, createRosterAutomaton()));
+
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+      BruteForceSearch search = new BruteForceSearch(environment);
+
+      // 56 of the 64 combinations of 6 shifts do not contain 4 night shifts in a row
+      int solutionCount = 0;
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         solutionCount++;
+         long[] values = new long[shifts.length];
+         for (int i = 0; i < shifts.length; i++) {
+            values[i] = solution.getValue(shifts[i]);
+         }
+         assertTrue(createRosterAutomaton().accepts(values));
+      }
+      assertEquals(56, solutionCount);
+   }
+
+   @Test
+   public void testEnforce() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] shifts = createVariables(builder, 5);
+      ClpConstraintStore environment = builder.build();
+      Regular r = new Regular(shifts, createRosterAutomaton());
+
+      assertEquals(ConstraintResult.UNRESOLVED, r.enforce(environment));
+      for (Variable v : shifts) {
+         assertEquals(DAY, v.getMin(environment));
+         assertEquals(NIGHT, v.getMax(environment));
+      }
+
+      shifts[1].setValue(environment, NIGHT);
+      shifts[2].setValue(environment, NIGHT);
+      shifts[3].setValue(environment, NIGHT);
+      assertEquals(ConstraintResult.MATCHED, r.enforce(environment));
+      assertEquals(DAY, shifts[0].getMax(environment));
+      assertEquals(DAY, shifts[4].getMax(environment));
+   }
+
+   @Test
+   public void testEnforceRemovesValuesWithinRange() {
+      // accepts "0 2 4" and "4 2 0"
+      Automaton a = new Automaton.Builder().transition(0, 0, 1).transition(1, 2, 2).transition(2, 4, 3).transition(0, 4, 4).transition(4, 2, 5)
+               .transition(5, 0, 3).accept(3).build();
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] sequence = createVariables(builder, 3);
+      ClpConstraintStore environment = builder.build();
+      Regular r = new Regular(sequence, a);
+
+      assertEquals(ConstraintResult.UNRESOLVED, r.enforce(environment));
+      assertEquals("{0, 4}", environment.getVariableState(0).toString());
+      assertEquals("2", environment.getVariableState(1).toString());
+      assertEquals("{0, 4}", environment.getVariableState(2).toString());
+
+      sequence[2].setMin(environment, 1);
+      assertEquals(ConstraintResult.MATCHED, r.enforce(environment));
+      assertEquals(0, environment.getValue(sequence[0]));
+   }
+
+   @Test
+   public void testEnforceRemovesWideGapBetweenSymbols() {
+      // accepts "0 10000000" and "10000000 0"
+      int gap = 10_000_000;
+      Automaton a = new Automaton.Builder().transition(0, 0, 1).transition(1, gap, 2).transition(0, gap, 3).transition(3, 0, 2).accept(2).build();
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] sequence = createVariables(builder, 2);
+      ClpConstraintStore environment = builder.build();
+      Regular r = new Regular(sequence, a);
+
+      assertEquals(ConstraintResult.UNRESOLVED, r.enforce(environment));
+      assertEquals("{0, 10000000}", environment.getVariableState(0).toString());
+      assertEquals("{0, 10000000}", environment.getVariableState(1).toString());
+
+      sequence[0].setValue(environment, gap);
+      assertEquals(ConstraintResult.MATCHED, r.enforce(environment));
+      assertEquals(0, environment.getValue(sequence[1]));
+   }
+
+   @Test
+   public void testEnforceFailed() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] shifts = createVariables(builder, 5);
+      ClpConstraintStore environment = builder.build();
+      for (int i = 1; i < shifts.length; i++) {
+         shifts[i].setValue(environment, NIGHT);
+      }
+
+      assertEquals(ConstraintResult.FAILED, new Regular(shifts, createRosterAutomaton()).enforce(environment));
+   }
+
+   @Test
+   public void testReify() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] shifts = createVariables(builder, 4);
+      ClpConstraintStore environment = builder.build();
+      Regular r = new Regular(shifts, createRosterAutomaton());
+      for (Variable v : shifts) {
+         v.setMin(environment, DAY);
+         v.setMax(environment, NIGHT);
+      }
+
+      assertEquals(ConstraintResult.UNRESOLVED, r.reify(environment));
+      assertEquals(ConstraintResult.UNRESOLVED, r.prevent(environment));
+
+      shifts[0].setValue(environment, NIGHT);
+      shifts[1].setValue(environment, NIGHT);
+      shifts[2].setValue(environment, NIGHT);
+      assertEquals(ConstraintResult.UNRESOLVED, r.reify(environment));
+
+      shifts[3].setValue(environment, DAY);
+      assertEquals(ConstraintResult.MATCHED, r.reify(environment));
+      assertEquals(ConstraintResult.FAILED, r.prevent(environment));
+   }
+
+   @Test
+   public void testReifyFailed() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] shifts = createVariables(builder, 4);
+      ClpConstraintStore environment = builder.build();
+      Regular r = new Regular(shifts, createRosterAutomaton());
+      for (Variable v : shifts) {
+         v.setValue(environment, NIGHT);
+      }
+
+      assertEquals(ConstraintResult.FAILED, r.reify(environment));
+      assertEquals(ConstraintResult.MATCHED, r.prevent(environment));
+   }
+
+   @Test
+   public void testWalk() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] shifts = createVariables(builder, 3);
+      List<Expression> expressions = new ArrayList<>();
+
+      new Regular(shifts, createRosterAutomaton()).walk(expressions::add);
+
+      assertEquals(3, expressions.size());
+      for (int i = 0; i < shifts.length; i++) {
+         assertEquals(shifts[i], expressions.get(i));
+      }
+   }
+
+   @Test
+   public void testReplace() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable[] shifts = createVariables(builder, 2);
+      Regular r = new Regular(shifts, new Automaton.Builder().transition(0, 1, 0).accept(0).build());
+
+      Regular replacement = r.replace(e -> e == shifts[0] ? new FixedValue(1) : null);
+
+      assertEquals("Regular [sequence=[FixedValue [value=1], Variable [id=1]], automaton=Automaton [start=0, symbols=[1], transitions=[[0]]]]",
+               replacement.toString());
+   }
+
+   private static Variable[] createVariables(ClpConstraintStore.Builder builder, int length) {
+      Variable[] variables = new Variable[length];
+      for (int i = 0; i < length; i++) {
+         variables[i] = builder.createVariable();
+      }
+      return variables;
+   }
+}
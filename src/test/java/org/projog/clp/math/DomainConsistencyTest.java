@@ -0,0 +1,197 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.math;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.projog.clp.BruteForceSearch;
+import org.projog.clp.ClpConstraintStore;
+import org.projog.clp.Consistency;
+import org.projog.clp.Expression;
+import org.projog.clp.ExpressionResult;
+import org.projog.clp.FixedValue;
+import org.projog.clp.Variable;
+import org.projog.clp.compare.EqualTo;
+import org.testng.annotations.Test;
+
+public class DomainConsistencyTest {
+   @Test
+   public void testAddRemovesUnsupportedValues() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      setValues(environment, x, 0, 2, 4);
+      setValues(environment, y, 0, 2);
+      setValues(environment, z, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+      assertEquals(DomainConsistency.enforceEqual(environment, new Add(x, y), z), ExpressionResult.VALID);
+
+      // x + y can only be even
+      assertValues(environment, x, 0, 2, 4);
+      assertValues(environment, y, 0, 2);
+      assertValues(environment, z, 0, 2, 4, 6);
+   }
+
+   @Test
+   public void testSubtractRemovesUnsupportedValues() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      setValues(environment, x, 1, 3, 5, 7);
+      setValues(environment, y, 0, 4);
+
+      assertEquals(DomainConsistency.enforceEqual(environment, new Subtract(x, y), new FixedValue(3)), ExpressionResult.VALID);
+
+      assertValues(environment, x, 3, 7);
+      assertValues(environment, y, 0, 4);
+   }
+
+   @Test
+   public void testCoefficients() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      setValues(environment, x, 0, 1, 2, 3, 4, 5);
+      setValues(environment, y, 0, 1, 2, 3, 4, 5);
+
+      // 3x - 2y == 1
+      Multiply threeX = new Multiply(new FixedValue(3), x);
+      Multiply twoY = new Multiply(y, new FixedValue(2));
+      assertEquals(DomainConsistency.enforceEqual(environment, new Subtract(threeX, twoY), new FixedValue(1)), ExpressionResult.VALID);
+
+      assertValues(environment, x, 1, 3);
+      assertValues(environment, y, 1, 4);
+   }
+
+   @Test
+   public void testLinearExpression() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      setValues(environment, x, 0, 1, 2, 3, 4, 5);
+      setValues(environment, y, 0, 1, 2, 3, 4, 5);
+
+      // 3x - 2y == 1
+      Expression e = new Subtract(new Multiply(new FixedValue(3), x), new Multiply(new FixedValue(2), y)).rewrite(LinearExpression::compile);
+      assertEquals(DomainConsistency.enforceEqual(environment, e, new FixedValue(1)), ExpressionResult.VALID);
+
+      assertValues(environment, x, 1, 3);
+      assertValues(environment, y, 1, 4);
+   }
+
+   @Test
+   public void testInvalid() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      setValues(environment, x, 0, 2, 4);
+      setValues(environment, y, 0, 2, 4);
+
+      // bounds consistency can not detect that the sum of two even numbers can not be odd
+      assertEquals(DomainConsistency.enforceEqual(environment, new Add(x, y), new FixedValue(5)), ExpressionResult.INVALID);
+   }
+
+   @Test
+   public void testUnsupported() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      Variable unbounded = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      setValues(environment, x, 0, 2, 4);
+      setValues(environment, y, 0, 2);
+      setValues(environment, z, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+      // non-linear
+      assertEquals(DomainConsistency.enforceEqual(environment, new Multiply(x, y), z), ExpressionResult.VALID);
+      assertValues(environment, z, 0, 1, 2, 3, 4, 5, 6, 7, 8, 9);
+
+      // too many possible values
+      assertEquals(DomainConsistency.enforceEqual(environment, new Add(x, y), unbounded), ExpressionResult.VALID);
+      assertValues(environment, x, 0, 2, 4);
+   }
+
+   @Test
+   public void testSameSolutionsAsBoundsConsistency() {
+      Set<String> expected = findSolutions(Consistency.BOUNDS);
+      Set<String> actual = findSolutions(Consistency.DOMAIN);
+
+      assertEquals(actual, expected);
+      assertFalse(actual.isEmpty());
+   }
+
+   private static Set<String> findSolutions(Consistency consistency) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+      builder.enforce(x, y, z).between(0, 9);
+      builder.addConstraint(new EqualTo(new Add(new Multiply(new FixedValue(2), x), y), new Subtract(new FixedValue(12), z), consistency));
+      builder.addConstraint(new EqualTo(new Multiply(new FixedValue(3), z), new Add(x, new FixedValue(6)), consistency));
+
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+
+      Set<String> solutions = new HashSet<>();
+      BruteForceSearch search = new BruteForceSearch(environment);
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         solutions.add(solution.getValue(x) + " " + solution.getValue(y) + " " + solution.getValue(z));
+      }
+      return solutions;
+   }
+
+   /** Restricts the variable to the given values, which must be in ascending order. */
+   private static void setValues(ClpConstraintStore environment, Variable v, long... values) {
+      v.setMin(environment, values[0]);
+      v.setMax(environment, values[values.length - 1]);
+      for (long i = values[0]; i < values[values.length - 1]; i++) {
+         boolean found = false;
+         for (long value : values) {
+            found |= value == i;
+         }
+         if (!found) {
+            v.setNot(environment, i);
+         }
+      }
+   }
+
+   private static void assertValues(ClpConstraintStore environment, Variable v, long... values) {
+      Set<Long> expected = new HashSet<>();
+      for (long value : values) {
+         expected.add(value);
+      }
+      Set<Long> actual = new HashSet<>();
+      for (long i = v.getMin(environment); i <= v.getMax(environment); i++) {
+         if (v.contains(environment, i)) {
+            actual.add(i);
+         }
+      }
+      assertEquals(actual, expected);
+   }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.math;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.projog.clp.ClpConstraintStore;
+import org.projog.clp.Constraint;
+import org.projog.clp.Expression;
+import org.projog.clp.ExpressionResult;
+import org.projog.clp.FixedValue;
+import org.projog.clp.Variable;
+import org.projog.clp.compare.EqualTo;
+import org.projog.clp.compare.LessThan;
+import org.testng.annotations.Test;
+
+public class LinearExpressionTest {
+   @Test
+   public void testCompileAdd() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+
+      Expression e = new Add(x, new Multiply(new FixedValue(3), y)).rewrite(LinearExpression::compile);
+
+      assertEquals(e.toString(), "LinearExpression [terms=[Variable [id=0], Variable [id=1]], coefficients=[1, 3], constant=0]");
+   }
+
+   @Test
+   public void testCompileFlattensNestedExpressions() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Variable z = builder.createVariable();
+
+      // (x - (2 * y)) + -(z - 7) + (y * 5)
+      Expression tree = new Add(new Add(new Subtract(x, new Multiply(new FixedValue(2), y)), new Minus(new Subtract(z, new FixedValue(7)))),
+               new Multiply(y, new FixedValue(5)));
+      Expression e = tree.rewrite(LinearExpression::compile);
+
+      assertEquals(e.toString(), "LinearExpression [terms=[Variable [id=0], Variable [id=1], Variable [id=2]], coefficients=[1, 3, -1], constant=7]");
+   }
+
+   @Test
+   public void testCompileCancelledTerms() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+
+      assertEquals(new Subtract(new Add(x, new FixedValue(4)), x).rewrite(LinearExpression::compile).toString(), "FixedValue [value=4]");
+      assertSame(new Subtract(new Add(x, y), y).rewrite(LinearExpression::compile), x);
+   }
+
+   @Test
+   public void testCompileNonLinear() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+
+      Multiply m = new Multiply(x, y);
+      assertNull(LinearExpression.compile(m));
+      assertSame(m.rewrite(LinearExpression::compile), m);
+
+      // arguments of non-linear expressions are still compiled
+      Expression e = new Absolute(new Add(x, y)).rewrite(LinearExpression::compile);
+      assertEquals(e.toString(), "Absolute [e=LinearExpression [terms=[Variable [id=0], Variable [id=1]], coefficients=[1, 1], constant=0]]");
+   }
+
+   @Test
+   public void testCompileOverflow() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+
+      Add a = new Add(new Multiply(x, new FixedValue(Long.MAX_VALUE)), x);
+      assertSame(a.rewrite(LinearExpression::compile).getClass(), Add.class);
+   }
+
+   @Test
+   public void testRewriteConstraint() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+
+      Constraint unchanged = new LessThan(x, y);
+      assertSame(unchanged.rewrite(LinearExpression::compile), unchanged);
+
+      Constraint c = new EqualTo(new Subtract(x, y), new FixedValue(1)).rewrite(LinearExpression::compile);
+      assertEquals(c.toString(),
+               "EqualTo [left=LinearExpression [terms=[Variable [id=0], Variable [id=1]], coefficients=[1, -1], constant=0], right=FixedValue [value=1]]");
+   }
+
+   @Test
+   public void testGetMinMax() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      x.setMin(environment, 1);
+      x.setMax(environment, 4);
+      y.setMin(environment, -2);
+      y.setMax(environment, 3);
+
+      // 2x - 3y + 5
+      Expression e = compile(new Add(new Subtract(new Multiply(new FixedValue(2), x), new Multiply(new FixedValue(3), y)), new FixedValue(5)));
+
+      assertEquals(e.getMin(environment), 2 - 9 + 5);
+      assertEquals(e.getMax(environment), 8 + 6 + 5);
+   }
+
+   @Test
+   public void testGetMinMaxUnbounded() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      y.setMin(environment, 0);
+      y.setMax(environment, 10);
+
+      Expression e = compile(new Subtract(x, y));
+
+      assertEquals(e.getMin(environment), Long.MIN_VALUE);
+      assertEquals(e.getMax(environment), Long.MAX_VALUE);
+      assertEquals(e.setMin(environment, 7), ExpressionResult.VALID);
+      assertEquals(e.setMax(environment, 7), ExpressionResult.VALID);
+      assertEquals(y.getMin(environment), 0);
+      assertEquals(y.getMax(environment), 10);
+   }
+
+   @Test
+   public void testSetMin() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      x.setMin(environment, 0);
+      x.setMax(environment, 10);
+      y.setMin(environment, 0);
+      y.setMax(environment, 10);
+
+      // 3x - 2y >= 25
+      Expression e = compile(new Subtract(new Multiply(new FixedValue(3), x), new Multiply(new FixedValue(2), y)));
+
+      assertEquals(e.setMin(environment, 25), ExpressionResult.VALID);
+      assertEquals(x.getMin(environment), 9); // 3x >= 25
+      assertEquals(x.getMax(environment), 10);
+      assertEquals(y.getMin(environment), 0);
+      assertEquals(y.getMax(environment), 2); // -2y >= -5
+
+      assertEquals(e.setMin(environment, 31), ExpressionResult.INVALID);
+   }
+
+   @Test
+   public void testSetMax() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      x.setMin(environment, 0);
+      x.setMax(environment, 10);
+      y.setMin(environment, 0);
+      y.setMax(environment, 10);
+
+      // 3x - 2y <= -15
+      Expression e = compile(new Subtract(new Multiply(new FixedValue(3), x), new Multiply(new FixedValue(2), y)));
+
+      assertEquals(e.setMax(environment, -15), ExpressionResult.VALID);
+      assertEquals(x.getMin(environment), 0);
+      assertEquals(x.getMax(environment), 1); // 3x <= 5
+      assertEquals(y.getMin(environment), 8); // -2y <= -15
+      assertEquals(y.getMax(environment), 10);
+
+      assertEquals(e.setMax(environment, -21), ExpressionResult.INVALID);
+   }
+
+   @Test
+   public void testWalk() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Expression e = compile(new Add(x, y));
+      List<Expression> expressions = new ArrayList<>();
+
+      e.walk(expressions::add);
+
+      assertEquals(expressions.size(), 3);
+      assertSame(expressions.get(0), e);
+      assertSame(expressions.get(1), x);
+      assertSame(expressions.get(2), y);
+   }
+
+   @Test
+   public void testReplace() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Expression e = compile(new Add(x, new Minus(y)));
+
+      Expression replacement = e.replace(l -> l == x ? new FixedValue(8) : null);
+
+      assertEquals(replacement.toString(), "LinearExpression [terms=[FixedValue [value=8], Variable [id=1]], coefficients=[1, -1], constant=0]");
+   }
+
+   private static Expression compile(Expression e) {
+      Expression result = e.rewrite(LinearExpression::compile);
+      assertSame(result.getClass(), LinearExpression.class);
+      return result;
+   }
+}
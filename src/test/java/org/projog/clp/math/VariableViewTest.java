@@ -0,0 +1,218 @@
+/*
+ * Copyright 2023 S. Webber
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.projog.clp.math;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import org.projog.clp.BruteForceSearch;
+import org.projog.clp.ClpConstraintStore;
+import org.projog.clp.Expression;
+import org.projog.clp.ExpressionResult;
+import org.projog.clp.FixedValue;
+import org.projog.clp.LeafExpression;
+import org.projog.clp.Variable;
+import org.projog.clp.compare.EqualTo;
+import org.projog.clp.compare.LessThan;
+import org.projog.clp.compare.NotEqualTo;
+import org.testng.annotations.Test;
+
+public class VariableViewTest {
+   @Test
+   public void testCreate() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+
+      assertEquals(VariableView.create(new Add(x, new FixedValue(3))).toString(), "VariableView [e=Variable [id=0], scale=1, offset=3]");
+      assertEquals(VariableView.create(new Add(new FixedValue(3), x)).toString(), "VariableView [e=Variable [id=0], scale=1, offset=3]");
+      assertEquals(VariableView.create(new Subtract(x, new FixedValue(3))).toString(), "VariableView [e=Variable [id=0], scale=1, offset=-3]");
+      assertEquals(VariableView.create(new Subtract(new FixedValue(3), x)).toString(), "VariableView [e=Variable [id=0], scale=-1, offset=3]");
+      assertEquals(VariableView.create(new Multiply(x, new FixedValue(4))).toString(), "VariableView [e=Variable [id=0], scale=4, offset=0]");
+      assertEquals(VariableView.create(new Multiply(new FixedValue(4), x)).toString(), "VariableView [e=Variable [id=0], scale=4, offset=0]");
+      assertEquals(VariableView.create(new Minus(x)).toString(), "VariableView [e=Variable [id=0], scale=-1, offset=0]");
+   }
+
+   @Test
+   public void testCreateNotSupported() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+
+      assertNull(VariableView.create(new Add(x, y)));
+      assertNull(VariableView.create(new Multiply(x, new FixedValue(0))));
+      assertNull(VariableView.create(new Add(new Absolute(x), new FixedValue(1))));
+      assertNull(VariableView.create(new Subtract(x, new FixedValue(Long.MIN_VALUE))));
+      assertNull(VariableView.create(new Absolute(x)));
+      assertNull(VariableView.create(x));
+   }
+
+   @Test
+   public void testRewriteCombinesViews() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+
+      // 5 - (2 * (x + 1))
+      Expression e = new Subtract(new FixedValue(5), new Multiply(new FixedValue(2), new Add(x, new FixedValue(1)))).rewrite(VariableView::create);
+      assertEquals(e.toString(), "VariableView [e=Variable [id=0], scale=-2, offset=3]");
+
+      // views that cancel each other out are replaced by the variable
+      assertSame(new Minus(new Minus(x)).rewrite(VariableView::create), x);
+      assertSame(new Subtract(new Add(x, new FixedValue(7)), new FixedValue(7)).rewrite(VariableView::create), x);
+   }
+
+   @Test
+   public void testGetMinMax() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      x.setMin(environment, -2);
+      x.setMax(environment, 5);
+
+      Expression positive = new Add(new Multiply(new FixedValue(3), x), new FixedValue(1)).rewrite(VariableView::create);
+      assertEquals(positive.getMin(environment), -5);
+      assertEquals(positive.getMax(environment), 16);
+
+      Expression negative = new Subtract(new FixedValue(1), new Multiply(new FixedValue(3), x)).rewrite(VariableView::create);
+      assertEquals(negative.getMin(environment), -14);
+      assertEquals(negative.getMax(environment), 7);
+   }
+
+   @Test
+   public void testGetMinMaxUnbounded() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+
+      Expression e = VariableView.create(new Multiply(new FixedValue(-2), x));
+      assertEquals(e.getMin(environment), Long.MIN_VALUE);
+      assertEquals(e.getMax(environment), Long.MAX_VALUE);
+   }
+
+   @Test
+   public void testSetMinMax() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      x.setMin(environment, 0);
+      x.setMax(environment, 10);
+
+      // 3x + 1
+      Expression positive = new Add(new Multiply(new FixedValue(3), x), new FixedValue(1)).rewrite(VariableView::create);
+      assertEquals(positive.setMin(environment, 5), ExpressionResult.VALID);
+      assertEquals(x.getMin(environment), 2);
+      assertEquals(positive.setMax(environment, 27), ExpressionResult.VALID);
+      assertEquals(x.getMax(environment), 8);
+
+      // 1 - 3x
+      Expression negative = new Subtract(new FixedValue(1), new Multiply(new FixedValue(3), x)).rewrite(VariableView::create);
+      assertEquals(negative.setMin(environment, -19), ExpressionResult.VALID);
+      assertEquals(x.getMax(environment), 6);
+      assertEquals(negative.setMax(environment, -10), ExpressionResult.VALID);
+      assertEquals(x.getMin(environment), 4);
+
+      assertEquals(positive.setMin(environment, 20), ExpressionResult.INVALID);
+   }
+
+   @Test
+   public void testContainsAndSetNot() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      x.setMin(environment, 0);
+      x.setMax(environment, 5);
+      x.setNot(environment, 2);
+
+      // 2x + 1
+      Expression e = new Add(new Multiply(new FixedValue(2), x), new FixedValue(1)).rewrite(VariableView::create);
+      assertTrue(e.contains(environment, 3));
+      assertFalse(e.contains(environment, 4));
+      assertFalse(e.contains(environment, 5));
+      assertTrue(e.contains(environment, 7));
+
+      assertEquals(e.setNot(environment, 8), ExpressionResult.VALID);
+      assertTrue(x.contains(environment, 4));
+      assertEquals(e.setNot(environment, 9), ExpressionResult.VALID);
+      assertFalse(x.contains(environment, 4));
+   }
+
+   @Test
+   public void testSetNotRange() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      ClpConstraintStore environment = builder.build();
+      x.setMin(environment, 0);
+      x.setMax(environment, 9);
+
+      // 2x + 1 - removes 7, 9 and 11
+      LeafExpression e = (LeafExpression) new Add(new Multiply(new FixedValue(2), x), new FixedValue(1)).rewrite(VariableView::create);
+      assertEquals(e.setNot(environment, 6, 12), ExpressionResult.VALID);
+      assertEquals(environment.getVariableState(0).toString(), "{0, 1, 2, 6, 7, 8, 9}");
+
+      // 10 - x - removes 6, 7 and 8
+      LeafExpression m = (LeafExpression) new Subtract(new FixedValue(10), x).rewrite(VariableView::create);
+      assertEquals(m.setNot(environment, 2, 4), ExpressionResult.VALID);
+      assertEquals(environment.getVariableState(0).toString(), "{0, 1, 2, 9}");
+   }
+
+   @Test
+   public void testReplace() {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      Expression e = VariableView.create(new Subtract(new FixedValue(10), x));
+
+      assertSame(e.replace(l -> null), e);
+      assertEquals(e.replace(l -> l == x ? new FixedValue(4) : null).toString(), "FixedValue [value=6]");
+      assertEquals(e.replace(l -> l == x ? y : null).toString(), "VariableView [e=Variable [id=1], scale=-1, offset=10]");
+   }
+
+   @Test
+   public void testBuilder() {
+      Set<String> expected = findSolutions(false);
+      Set<String> actual = findSolutions(true);
+
+      assertEquals(actual, expected);
+      assertEquals(actual.size(), 4);
+   }
+
+   private static Set<String> findSolutions(boolean createViews) {
+      ClpConstraintStore.Builder builder = new ClpConstraintStore.Builder();
+      builder.setCreateViews(createViews);
+      Variable x = builder.createVariable();
+      Variable y = builder.createVariable();
+      builder.enforce(x, y).between(0, 9);
+      builder.addConstraint(new EqualTo(new Multiply(new FixedValue(2), x), new Add(y, new FixedValue(1))));
+      builder.addConstraint(new NotEqualTo(new Minus(x), new FixedValue(-3)));
+      builder.addConstraint(new LessThan(new Subtract(y, new FixedValue(4)), new FixedValue(10)));
+
+      ClpConstraintStore environment = builder.build();
+      assertTrue(environment.resolve());
+
+      Set<String> solutions = new HashSet<>();
+      BruteForceSearch search = new BruteForceSearch(environment);
+      ClpConstraintStore solution;
+      while ((solution = search.next()) != null) {
+         solutions.add(solution.getValue(x) + " " + solution.getValue(y));
+      }
+      return solutions;
+   }
+}